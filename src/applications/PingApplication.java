@@ -46,6 +46,16 @@ public class PingApplication extends Application {
 
 	/** Application ID */
 	public static final String APP_ID = "fi.tkk.netlab.PingApplication";
+	/** Key of the typed int message property telling the message type */
+	public static final String MSG_TYPE_PROPERTY = APP_ID + ".type";
+	/** Message type property value for ping messages */
+	public static final int TYPE_PING = 1;
+	/** Message type property value for pong messages */
+	public static final int TYPE_PONG = 2;
+
+	/** Message property slot of the message type */
+	private static final int TYPE_SLOT =
+		Message.registerIntProperty(MSG_TYPE_PROPERTY);
 
 	// Private vars
 	private double	lastPing = 0;
@@ -119,15 +129,15 @@ public class PingApplication extends Application {
 	 */
 	@Override
 	public Message handle(Message msg, DTNHost host) {
-		String type = (String)msg.getProperty("type");
-		if (type==null) return msg; // Not a ping/pong message
+		int type = msg.getIntProperty(TYPE_SLOT);
+		if (type == Message.UNSET_INT) return msg; // Not a ping/pong message
 
 		// Respond with pong if we're the recipient
-		if (msg.getTo()==host && type.equalsIgnoreCase("ping")) {
+		if (msg.getTo()==host && type == TYPE_PING) {
 			String id = "pong" + SimClock.getIntTime() + "-" +
 				host.getAddress();
 			Message m = new Message(host, msg.getFrom(), id, getPongSize());
-			m.addProperty("type", "pong");
+			m.setIntProperty(TYPE_SLOT, TYPE_PONG);
 			m.setAppID(APP_ID);
 			host.createNewMessage(m);
 
@@ -137,7 +147,7 @@ public class PingApplication extends Application {
 		}
 
 		// Received a pong reply
-		if (msg.getTo()==host && type.equalsIgnoreCase("pong")) {
+		if (msg.getTo()==host && type == TYPE_PONG) {
 			// Send event to listeners
 			super.sendEventToListeners("GotPong", null, host);
 		}
@@ -179,7 +189,7 @@ public class PingApplication extends Application {
 			Message m = new Message(host, randomHost(), "ping" +
 					SimClock.getIntTime() + "-" + host.getAddress(),
 					getPingSize());
-			m.addProperty("type", "ping");
+			m.setIntProperty(TYPE_SLOT, TYPE_PING);
 			m.setAppID(APP_ID);
 			host.createNewMessage(m);
 
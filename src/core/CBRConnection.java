@@ -12,6 +12,8 @@ import routing.MessageRouter;
 public class CBRConnection extends Connection {
 	private int speed;
 	private double transferDoneTime;
+	/** time when the connection came up or the last transfer ended */
+	private double idleSince;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -28,7 +30,7 @@ public class CBRConnection extends Connection {
 		super(fromNode, fromInterface, toNode, toInterface);
 		this.speed = connectionSpeed;
 		this.transferDoneTime = 0;
-
+		this.idleSince = SimClock.getTime();
 	}
 
 	/**
@@ -43,6 +45,22 @@ public class CBRConnection extends Connection {
 	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}
 	 */
 	public int startTransfer(DTNHost from, Message m) {
+		return startTransfer(from, m, SimClock.getTime());
+	}
+
+	/**
+	 * Sets a message that this connection is currently transferring. The
+	 * transfer is considered to have started at the given time so it is
+	 * ready when the message would have been transferred with the
+	 * connection's speed after that time.
+	 * @param from The host sending the message
+	 * @param m The message
+	 * @param startTime The time when the transfer started
+	 * @return The value returned by
+	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}
+	 */
+	@Override
+	public int startTransfer(DTNHost from, Message m, double startTime) {
 		assert this.msgOnFly == null : "Already transferring " +
 			this.msgOnFly + " from " + this.msgFromNode + " to " +
 			this.getOtherNode(this.msgFromNode) + ". Can't " +
@@ -54,8 +72,9 @@ public class CBRConnection extends Connection {
 
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
-			this.transferDoneTime = SimClock.getTime() +
+			this.transferDoneTime = startTime +
 			(1.0*m.getSize()) / this.speed;
+			scheduleTransferDone(this.transferDoneTime);
 		}
 
 		return retVal;
@@ -70,6 +89,18 @@ public class CBRConnection extends Connection {
 				msgFromNode,getRemainingByteCount());
 		clearMsgOnFly();
 		this.transferDoneTime = 0;
+		this.idleSince = SimClock.getTime();
+	}
+
+	@Override
+	public void finalizeTransfer() {
+		this.idleSince = this.transferDoneTime;
+		super.finalizeTransfer();
+	}
+
+	@Override
+	public double getIdleSince() {
+		return this.idleSince;
 	}
 
 	/**
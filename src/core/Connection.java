@@ -20,6 +20,9 @@ public abstract class Connection {
 	protected Message msgOnFly;
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** world where transfer completions are scheduled (null if they are
+	 * not scheduled) */
+	private static World world = null;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -40,6 +43,28 @@ public abstract class Connection {
 	}
 
 
+	/**
+	 * Sets the world where the connections schedule an update for the
+	 * sending host when a transfer is due to finish
+	 * @param w The world or null if the completions should not be scheduled
+	 * @see World#SCHEDULE_TRANSFERS_S
+	 */
+	public static void setWorld(World w) {
+		world = w;
+	}
+
+	/**
+	 * Schedules an update for the sending host of the current transfer to
+	 * happen when the transfer finishes, if the completions are scheduled.
+	 * Transfers that have already finished are not scheduled.
+	 * @param doneTime The time when the transfer finishes
+	 */
+	protected void scheduleTransferDone(double doneTime) {
+		if (world != null && doneTime > SimClock.getTime()) {
+			world.scheduleUpdate(doneTime, this.msgFromNode);
+		}
+	}
+
 	/**
 	 * Returns true if the connection is up
 	 * @return state of the connection
@@ -87,6 +112,31 @@ public abstract class Connection {
 	 */
 	public abstract int startTransfer(DTNHost from, Message m);
 
+	/**
+	 * Sets a message that this connection is currently transferring like
+	 * {@link #startTransfer(DTNHost, Message)} but the transfer is
+	 * considered to have started at the given (past) time. Connections that
+	 * can't calculate transfers from a past start time ignore the time.
+	 * @param from The host sending the message
+	 * @param m The message
+	 * @param startTime The time when the transfer started
+	 * @return The value returned by
+	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}
+	 */
+	public int startTransfer(DTNHost from, Message m, double startTime) {
+		return startTransfer(from, m);
+	}
+
+	/**
+	 * Returns the time since when the connection has been idle, i.e., when
+	 * it came up or its last transfer ended. Connections that don't know
+	 * the exact time return the current time.
+	 * @return The time since when the connection has been idle
+	 */
+	public double getIdleSince() {
+		return SimClock.getTime();
+	}
+
 	/**
 	 * Calculate the current transmission speed from the information
 	 * given by the interfaces, and calculate the missing data amount.
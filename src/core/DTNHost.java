@@ -10,6 +10,7 @@ import java.util.List;
 
 import movement.MovementModel;
 import movement.Path;
+import movement.PathPipeline;
 import routing.MessageRouter;
 import routing.util.RoutingInfo;
 
@@ -24,10 +25,12 @@ public class DTNHost implements Comparable<DTNHost> {
 
 	private Coord location; 	// where is the host
 	private Coord destination;	// where is it going
+	private Coord waypoint;	// reused for the destinations of the path
 
 	private MessageRouter router;
 	private MovementModel movement;
 	private Path path;
+	private PathPipeline pathPipeline; // null if paths are not precomputed
 	private double speed;
 	private double nextTimeToMove;
 	private String name;
@@ -57,6 +60,7 @@ public class DTNHost implements Comparable<DTNHost> {
 			MovementModel mmProto, MessageRouter mRouterProto) {
 		this.comBus = comBus;
 		this.location = new Coord(0,0);
+		this.waypoint = new Coord(0,0);
 		this.address = getNextAddress();
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
@@ -77,12 +81,16 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.movement = mmProto.replicate();
 		this.movement.setComBus(comBus);
 		this.movement.setHost(this);
+		this.pathPipeline = PathPipeline.create(this.movement, this.address);
 		setRouter(mRouterProto.replicate());
 
 		this.location = movement.getInitialLocation();
 
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
+		if (this.pathPipeline != null) {
+			this.pathPipeline.start();
+		}
 
 		if (movLs != null) { // inform movement listeners about the location
 			for (MovementListener l : movLs) {
@@ -344,6 +352,11 @@ public class DTNHost implements Comparable<DTNHost> {
 			}
 		}
 		this.router.update();
+
+		/* continue sending if the router wants to chain transfers */
+		while (this.router.hasFinishedTransfers()) {
+			this.router.update();
+		}
 	}
 
 	/**
@@ -416,21 +429,27 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	private boolean setNextWaypoint() {
 		if (path == null) {
-			path = movement.getPath();
+			path = (pathPipeline != null ? pathPipeline.getPath() :
+				movement.getPath());
 		}
 
 		if (path == null || !path.hasNext()) {
-			this.nextTimeToMove = movement.nextPathAvailable();
+			this.nextTimeToMove = (pathPipeline != null ?
+					pathPipeline.nextPathAvailable() :
+					movement.nextPathAvailable());
 			this.path = null;
 			return false;
 		}
 
-		this.destination = path.getNextWaypoint();
+		path.nextWaypoint();
+		this.waypoint.setLocation(path.getWaypointX(), path.getWaypointY());
+		this.destination = this.waypoint;
 		this.speed = path.getSpeed();
 
 		if (this.movListeners != null) {
 			for (MovementListener l : this.movListeners) {
-				l.newDestination(this, this.destination, this.speed);
+				// the waypoint object is reused -> give listeners a copy
+				l.newDestination(this, this.destination.clone(), this.speed);
 			}
 		}
 
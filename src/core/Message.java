@@ -4,11 +4,11 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -16,22 +16,18 @@ import java.util.Set;
 public class Message implements Comparable<Message> {
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
-	private DTNHost from;
-	private DTNHost to;
-	/** Identifier of the message */
-	private String id;
-	/** Size of the message (bytes) */
-	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path;
+	/** The data shared by all replicates of the original message */
+	private MessageCore core;
+	/** The last node this message has passed (head of the hop path) */
+	private PathNode pathTail;
+	/** List view of the hop path; built lazily and dropped on changes */
+	private List<DTNHost> hopsView;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
 	private double timeReceived;
-	/** The time when this message was created */
-	private double timeCreated;
 	/** Initial TTL of the message */
 	private int initTtl;
 
@@ -41,13 +37,82 @@ public class Message implements Comparable<Message> {
 	/** if this message is a response message, this is set to the request msg*/
 	private Message requestMsg;
 
-	/** Container for generic message properties. Note that all values
+	/** Generic message properties that may be shared with other replicates
+	 * of this message. This map is never modified after it has been set;
+	 * new values go to {@link #propertiesDelta}. Note that all values
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
-	private Map<String, Object> properties;
+	private Map<String, Object> sharedProperties;
+	/** Properties set to this replicate after it was created */
+	private Map<String, Object> propertiesDelta;
+
+	/** Value of a typed int property that hasn't been set ({@value}) */
+	public static final int UNSET_INT = -1;
+	/** Value of a typed long property that hasn't been set ({@value}) */
+	public static final long UNSET_LONG = -1;
+	/** Value of a typed double property that hasn't been set ({@value}) */
+	public static final double UNSET_DOUBLE = -1;
+
+	/** Values of the typed int properties (indexed by slot) or null */
+	private int[] intValues;
+	/** Values of the typed long properties (indexed by slot) or null */
+	private long[] longValues;
+	/** Values of the typed double properties (indexed by slot) or null */
+	private double[] doubleValues;
+
+	/** Slot indexes of the registered typed int properties by key */
+	private static Map<String, Integer> intSlots =
+		new HashMap<String, Integer>();
+	/** Slot indexes of the registered typed long properties by key */
+	private static Map<String, Integer> longSlots =
+		new HashMap<String, Integer>();
+	/** Slot indexes of the registered typed double properties by key */
+	private static Map<String, Integer> doubleSlots =
+		new HashMap<String, Integer>();
 
-	/** Application ID of the application that created the message */
-	private String	appID;
+	/**
+	 * Immutable part of a message that all the replicates of the same
+	 * original message share.
+	 */
+	private static final class MessageCore {
+		private final DTNHost from;
+		private final DTNHost to;
+		/** Identifier of the message */
+		private final String id;
+		/** Size of the message (bytes) */
+		private final int size;
+		/** The time when this message was created */
+		private final double timeCreated;
+		/** Application ID of the application that created the message */
+		private final String appID;
+
+		private MessageCore(DTNHost from, DTNHost to, String id, int size,
+				double timeCreated, String appID) {
+			this.from = from;
+			this.to = to;
+			this.id = id;
+			this.size = size;
+			this.timeCreated = timeCreated;
+			this.appID = appID;
+		}
+	}
+
+	/**
+	 * Persistent node of a hop path. Replicates share the common prefix of
+	 * their paths and only add new nodes to the end.
+	 */
+	private static final class PathNode {
+		private final DTNHost host;
+		private final PathNode parent;
+		/** Number of nodes on the path up to and including this one */
+		private final int length;
+
+		private PathNode(DTNHost host, PathNode parent) {
+			this.host = host;
+			this.parent = parent;
+			this.length = (parent == null ? 1 : parent.length + 1);
+		}
+	}
 
 	static {
 		reset();
@@ -63,23 +128,29 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
-		this.from = from;
-		this.to = to;
-		this.id = id;
-		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this(new MessageCore(from, to, id, size, SimClock.getTime(), null));
+		addNodeOnPath(from);
+	}
+
+	/**
+	 * Creates a new Message instance that uses the given shared core.
+	 * The hop path is left empty.
+	 * @param core The core of the message
+	 */
+	private Message(MessageCore core) {
+		this.core = core;
+		this.pathTail = null;
+		this.hopsView = null;
 		this.uniqueId = nextUniqueId;
 
-		this.timeCreated = SimClock.getTime();
-		this.timeReceived = this.timeCreated;
+		this.timeReceived = core.timeCreated;
 		this.initTtl = INFINITE_TTL;
 		this.responseSize = 0;
 		this.requestMsg = null;
-		this.properties = null;
-		this.appID = null;
+		this.sharedProperties = null;
+		this.propertiesDelta = null;
 
 		Message.nextUniqueId++;
-		addNodeOnPath(from);
 	}
 
 	/**
@@ -87,7 +158,7 @@ public class Message implements Comparable<Message> {
 	 * @return the node this message is originally from
 	 */
 	public DTNHost getFrom() {
-		return this.from;
+		return this.core.from;
 	}
 
 	/**
@@ -95,7 +166,7 @@ public class Message implements Comparable<Message> {
 	 * @return the node this message is originally to
 	 */
 	public DTNHost getTo() {
-		return this.to;
+		return this.core.to;
 	}
 
 	/**
@@ -103,7 +174,7 @@ public class Message implements Comparable<Message> {
 	 * @return The message id
 	 */
 	public String getId() {
-		return this.id;
+		return this.core.id;
 	}
 
 	/**
@@ -120,7 +191,7 @@ public class Message implements Comparable<Message> {
 	 * @return the size of the message
 	 */
 	public int getSize() {
-		return this.size;
+		return this.core.size;
 	}
 
 	/**
@@ -128,15 +199,39 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.pathTail = new PathNode(node, this.pathTail);
+		this.hopsView = null;
 	}
 
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The list as an unmodifiable vector
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.hopsView == null) {
+			int length = (pathTail == null ? 0 : pathTail.length);
+			DTNHost[] hosts = new DTNHost[length];
+			for (PathNode n = pathTail; n != null; n = n.parent) {
+				hosts[n.length - 1] = n.host;
+			}
+			this.hopsView = Collections.unmodifiableList(Arrays.asList(hosts));
+		}
+		return this.hopsView;
+	}
+
+	/**
+	 * Returns true if the given node is on the list of nodes this message
+	 * has passed. Doesn't create the list of {@link #getHops()}.
+	 * @param node The node to look for
+	 * @return true if the message has passed the node
+	 */
+	public boolean hasPassed(DTNHost node) {
+		for (PathNode n = pathTail; n != null; n = n.parent) {
+			if (n.host == node) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -144,7 +239,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return (pathTail == null ? 0 : pathTail.length) -1;
 	}
 
 	/**
@@ -159,7 +254,7 @@ public class Message implements Comparable<Message> {
 		}
 		else {
 			return (int)( ((this.initTtl * 60) -
-					(SimClock.getTime()-this.timeCreated)) /60.0 );
+					(SimClock.getTime()-this.core.timeCreated)) /60.0 );
 		}
 	}
 
@@ -195,7 +290,7 @@ public class Message implements Comparable<Message> {
 	 * @return the time when this message was created
 	 */
 	public double getCreationTime() {
-		return this.timeCreated;
+		return this.core.timeCreated;
 	}
 
 	/**
@@ -246,29 +341,44 @@ public class Message implements Comparable<Message> {
 	 * @return a string representation of the message
 	 */
 	public String toString () {
-		return id;
+		return this.core.id;
 	}
 
 	/**
-	 * Deep copies message data from other message. If new fields are
+	 * Copies message data from other message. The immutable core and the hop
+	 * path are shared with the other message and the properties are shared
+	 * until either of the messages modifies them. If new fields are
 	 * introduced to this class, most likely they should be copied here too
 	 * (unless done in constructor).
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
-		this.timeCreated = m.timeCreated;
+		this.core = m.core;
+		this.pathTail = m.pathTail;
+		this.hopsView = m.hopsView;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
 		this.initTtl = m.initTtl;
-		this.appID = m.appID;
 
-		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
+		if (m.propertiesDelta != null) {
+			/* freeze the other message's properties so both can share them */
+			Map<String, Object> merged;
+			if (m.sharedProperties == null) {
+				merged = m.propertiesDelta;
+			} else {
+				merged = new HashMap<String, Object>(m.sharedProperties);
+				merged.putAll(m.propertiesDelta);
 			}
+			m.sharedProperties = merged;
+			m.propertiesDelta = null;
 		}
+		this.sharedProperties = m.sharedProperties;
+		this.propertiesDelta = null;
+
+		this.intValues = (m.intValues == null ? null : m.intValues.clone());
+		this.longValues = (m.longValues == null ? null : m.longValues.clone());
+		this.doubleValues = (m.doubleValues == null ? null :
+			m.doubleValues.clone());
 	}
 
 	/**
@@ -282,7 +392,10 @@ public class Message implements Comparable<Message> {
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
+		if ((this.propertiesDelta != null &&
+				this.propertiesDelta.containsKey(key)) ||
+				(this.sharedProperties != null &&
+				this.sharedProperties.containsKey(key))) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("Message " + this + " already contains value " +
 					"for a key " + key);
@@ -298,10 +411,16 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.properties == null) {
+		if (this.propertiesDelta != null) {
+			Object value = this.propertiesDelta.get(key);
+			if (value != null || this.propertiesDelta.containsKey(key)) {
+				return value;
+			}
+		}
+		if (this.sharedProperties == null) {
 			return null;
 		}
-		return this.properties.get(key);
+		return this.sharedProperties.get(key);
 	}
 
 	/**
@@ -312,21 +431,168 @@ public class Message implements Comparable<Message> {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.properties == null) {
+		if (this.propertiesDelta == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
-			this.properties = new HashMap<String, Object>();
+			this.propertiesDelta = new HashMap<String, Object>(4);
 		}
 
-		this.properties.put(key, value);
+		this.propertiesDelta.put(key, value);
+	}
+
+	/**
+	 * Registers a typed int property and returns its slot index. The slot
+	 * can be used with {@link #getIntProperty(int)} and
+	 * {@link #setIntProperty(int, int)}, which don't box the value or hash
+	 * the key. Registering the same key again returns the same slot, so
+	 * e.g. routers can claim their slots when they are initialized.
+	 * @param key The key of the property (same rules as with
+	 * {@link #addProperty(String, Object)})
+	 * @return The slot index of the property
+	 */
+	public static int registerIntProperty(String key) {
+		return registerSlot(intSlots, key);
+	}
+
+	/**
+	 * Registers a typed long property and returns its slot index.
+	 * @param key The key of the property
+	 * @return The slot index of the property
+	 * @see #registerIntProperty(String)
+	 */
+	public static int registerLongProperty(String key) {
+		return registerSlot(longSlots, key);
+	}
+
+	/**
+	 * Registers a typed double property and returns its slot index.
+	 * @param key The key of the property
+	 * @return The slot index of the property
+	 * @see #registerIntProperty(String)
+	 */
+	public static int registerDoubleProperty(String key) {
+		return registerSlot(doubleSlots, key);
+	}
+
+	/**
+	 * Returns the slot of the key from the slot map, registering a new slot
+	 * if the key wasn't registered yet.
+	 * @param slots The slot map
+	 * @param key The key
+	 * @return The slot index
+	 */
+	private static synchronized int registerSlot(Map<String, Integer> slots,
+			String key) {
+		Integer slot = slots.get(key);
+		if (slot == null) {
+			slot = slots.size();
+			slots.put(key, slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the value of a typed int property
+	 * @param slot Slot of the property (see
+	 * {@link #registerIntProperty(String)})
+	 * @return The value of the property or {@link #UNSET_INT} if it hasn't
+	 * been set
+	 */
+	public int getIntProperty(int slot) {
+		if (this.intValues == null || slot >= this.intValues.length) {
+			return UNSET_INT;
+		}
+		return this.intValues[slot];
+	}
+
+	/**
+	 * Sets the value of a typed int property
+	 * @param slot Slot of the property (see
+	 * {@link #registerIntProperty(String)})
+	 * @param value The new value
+	 */
+	public void setIntProperty(int slot, int value) {
+		if (this.intValues == null || slot >= this.intValues.length) {
+			int oldLength = (this.intValues == null ? 0 :
+				this.intValues.length);
+			this.intValues = (this.intValues == null ? new int[slot + 1] :
+				Arrays.copyOf(this.intValues, slot + 1));
+			Arrays.fill(this.intValues, oldLength, slot, UNSET_INT);
+		}
+		this.intValues[slot] = value;
+	}
+
+	/**
+	 * Returns the value of a typed long property
+	 * @param slot Slot of the property (see
+	 * {@link #registerLongProperty(String)})
+	 * @return The value of the property or {@link #UNSET_LONG} if it hasn't
+	 * been set
+	 */
+	public long getLongProperty(int slot) {
+		if (this.longValues == null || slot >= this.longValues.length) {
+			return UNSET_LONG;
+		}
+		return this.longValues[slot];
+	}
+
+	/**
+	 * Sets the value of a typed long property
+	 * @param slot Slot of the property (see
+	 * {@link #registerLongProperty(String)})
+	 * @param value The new value
+	 */
+	public void setLongProperty(int slot, long value) {
+		if (this.longValues == null || slot >= this.longValues.length) {
+			int oldLength = (this.longValues == null ? 0 :
+				this.longValues.length);
+			this.longValues = (this.longValues == null ? new long[slot + 1] :
+				Arrays.copyOf(this.longValues, slot + 1));
+			Arrays.fill(this.longValues, oldLength, slot, UNSET_LONG);
+		}
+		this.longValues[slot] = value;
+	}
+
+	/**
+	 * Returns the value of a typed double property
+	 * @param slot Slot of the property (see
+	 * {@link #registerDoubleProperty(String)})
+	 * @return The value of the property or {@link #UNSET_DOUBLE} if it
+	 * hasn't been set
+	 */
+	public double getDoubleProperty(int slot) {
+		if (this.doubleValues == null || slot >= this.doubleValues.length) {
+			return UNSET_DOUBLE;
+		}
+		return this.doubleValues[slot];
+	}
+
+	/**
+	 * Sets the value of a typed double property
+	 * @param slot Slot of the property (see
+	 * {@link #registerDoubleProperty(String)})
+	 * @param value The new value
+	 */
+	public void setDoubleProperty(int slot, double value) {
+		if (this.doubleValues == null || slot >= this.doubleValues.length) {
+			int oldLength = (this.doubleValues == null ? 0 :
+				this.doubleValues.length);
+			this.doubleValues = (this.doubleValues == null ?
+				new double[slot + 1] :
+				Arrays.copyOf(this.doubleValues, slot + 1));
+			Arrays.fill(this.doubleValues, oldLength, slot, UNSET_DOUBLE);
+		}
+		this.doubleValues[slot] = value;
 	}
 
 	/**
-	 * Returns a replicate of this message (identical except for the unique id)
+	 * Returns a replicate of this message (identical except for the unique id).
+	 * The replicate shares all the immutable data with this message so
+	 * replicating is cheap.
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
+		Message m = new Message(this.core);
 		m.copyFrom(this);
 		return m;
 	}
@@ -350,14 +616,18 @@ public class Message implements Comparable<Message> {
 	 * @return the appID
 	 */
 	public String getAppID() {
-		return appID;
+		return this.core.appID;
 	}
 
 	/**
+	 * Sets the application ID of this message. Other replicates of the
+	 * message are not affected.
 	 * @param appID the appID to set
 	 */
 	public void setAppID(String appID) {
-		this.appID = appID;
+		MessageCore c = this.core;
+		this.core = new MessageCore(c.from, c.to, c.id, c.size,
+				c.timeCreated, appID);
 	}
 
 }
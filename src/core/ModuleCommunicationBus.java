@@ -4,30 +4,90 @@
  */
 package core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.lang.reflect.Array;
+import java.util.Arrays;
 
 /**
  * Intermodule communication bus. Works as a blackboard where modules can
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
+ * <P>The variables are identified by {@link ModuleCommunicationKey}s whose
+ * index tells the variable's slot in the bus. Double values are stored
+ * unboxed and their changes can be listened without boxing using
+ * {@link ModuleCommunicationDoubleListener}s. The methods that take the
+ * variable name as a String look up the key first.</P>
  */
 public class ModuleCommunicationBus {
-	/** Initial capacity for the listener lists (instead of 10) */
-	private static int INIT_CAPACITY = 3;
-	/** The values in the blackboard (or null if none)*/
-	private HashMap<String, Object> values;
-	/** Subscribed listeners (or null if none)*/
-	private HashMap<String, List<ModuleCommunicationListener>> listeners;
+	/** Type of an empty slot */
+	private static final byte NO_VALUE = 0;
+	/** Type of a slot with a (primitive) double value */
+	private static final byte DOUBLE_VALUE = 1;
+	/** Type of a slot with an object value */
+	private static final byte OBJECT_VALUE = 2;
+
+	/** Types of the values in the slots (or null if none) */
+	private byte[] types;
+	/** Double values by the slot */
+	private double[] doubles;
+	/** Object values by the slot */
+	private Object[] objects;
+	/** Subscribed listeners by the slot (or null if none)*/
+	private ModuleCommunicationListener[][] listeners;
+	/** Subscribed double listeners by the slot (or null if none)*/
+	private ModuleCommunicationDoubleListener[][] doubleListeners;
 
 	/**
 	 * Constructor.
 	 */
 	public ModuleCommunicationBus() {
-		this.values = null; /* use lazy creation  */
+		this.types = null; /* use lazy creation  */
 		this.listeners = null;
+		this.doubleListeners = null;
+	}
+
+	/**
+	 * Returns the key for a variable name
+	 * @param name The name of the variable
+	 * @return The key
+	 */
+	private static ModuleCommunicationKey key(String name) {
+		return ModuleCommunicationKey.getKey(name);
+	}
+
+	/**
+	 * Makes sure that the value slots exist up to the given key's slot
+	 * @param key The key
+	 */
+	private void ensureCapacity(ModuleCommunicationKey key) {
+		int index = key.getIndex();
+		if (this.types == null) {
+			/* lazy creation to prevent performance overhead for classes
+			   that don't use the property feature  */
+			int size = index + 1;
+			this.types = new byte[size];
+			this.doubles = new double[size];
+			this.objects = new Object[size];
+		}
+		else if (index >= this.types.length) {
+			int size = Math.max(index + 1, this.types.length * 2);
+			this.types = Arrays.copyOf(this.types, size);
+			this.doubles = Arrays.copyOf(this.doubles, size);
+			this.objects = Arrays.copyOf(this.objects, size);
+		}
+	}
+
+	/**
+	 * Returns the type of the value in a slot
+	 * @param key The key of the slot
+	 * @return The type of the value
+	 */
+	private byte typeOf(ModuleCommunicationKey key) {
+		int index = key.getIndex();
+		if (this.types == null || index >= this.types.length) {
+			return NO_VALUE;
+		}
+		return this.types[index];
 	}
 
 	/**
@@ -40,13 +100,45 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
+		addProperty(key(key), value);
+	}
+
+	/**
+	 * Adds a new property for this node.
+	 * @param key The key which is used to lookup the value
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the given key
+	 * @see #addProperty(String, Object)
+	 */
+	public void addProperty(ModuleCommunicationKey key, Object value)
+			throws SimError {
+		checkNoValue(key);
+		this.updateProperty(key, value);
+	}
+
+	/**
+	 * Adds a new double property for this node.
+	 * @param key The key which is used to lookup the value
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the given key
+	 */
+	public void addDouble(ModuleCommunicationKey key, double value)
+			throws SimError {
+		checkNoValue(key);
+		this.setDouble(key, value);
+	}
+
+	/**
+	 * Checks that there is no value for the given key
+	 * @param key The key
+	 * @throws SimError if there is already a value for the given key
+	 */
+	private void checkNoValue(ModuleCommunicationKey key) throws SimError {
+		if (typeOf(key) != NO_VALUE) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("A value for the key " + key +
 					" already exists");
 		}
-
-		this.updateProperty(key, value);
 	}
 
 	/**
@@ -56,10 +148,24 @@ public class ModuleCommunicationBus {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.values == null) {
+		return getProperty(key(key));
+	}
+
+	/**
+	 * Returns an object that was stored using the given key. Double values
+	 * are returned as Double objects.
+	 * @param key The key used to lookup the object
+	 * @return The stored object or null if it isn't found
+	 */
+	public Object getProperty(ModuleCommunicationKey key) {
+		switch (typeOf(key)) {
+		case DOUBLE_VALUE:
+			return this.doubles[key.getIndex()];
+		case OBJECT_VALUE:
+			return this.objects[key.getIndex()];
+		default:
 			return null;
 		}
-		return this.values.get(key);
 	}
 
 	/**
@@ -68,10 +174,16 @@ public class ModuleCommunicationBus {
 	 * @return true if the value exists, false if not
 	 */
 	public boolean containsProperty(String key) {
-		if (this.values == null) {
-			return false;
-		}
-		return this.values.containsKey(key);
+		return containsProperty(key(key));
+	}
+
+	/**
+	 * Returns true if the bus contains a value for the given key
+	 * @param key The key for which a value's existence is checked
+	 * @return true if the value exists, false if not
+	 */
+	public boolean containsProperty(ModuleCommunicationKey key) {
+		return typeOf(key) != NO_VALUE;
 	}
 
 	/**
@@ -82,16 +194,44 @@ public class ModuleCommunicationBus {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.values == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.values = new HashMap<String, Object>();
+		updateProperty(key(key), value);
+	}
+
+	/**
+	 * Updates a value for an existing property. Double values are stored
+	 * as primitive values.
+	 * @param key The key which is used to lookup the value
+	 * @param value The new value to store
+	 * @see #updateProperty(String, Object)
+	 */
+	public void updateProperty(ModuleCommunicationKey key, Object value)
+			throws SimError {
+		if (value instanceof Double) {
+			setDouble(key, (Double)value);
+			return;
 		}
 
-		this.values.put(key, value);
+		ensureCapacity(key);
+		int index = key.getIndex();
+		this.types[index] = (value != null ? OBJECT_VALUE : NO_VALUE);
+		this.objects[index] = value;
 		notifyListeners(key, value);
 	}
 
+	/**
+	 * Sets the value of a double property
+	 * @param key The key of the variable
+	 * @param value The new value
+	 */
+	public void setDouble(ModuleCommunicationKey key, double value) {
+		ensureCapacity(key);
+		int index = key.getIndex();
+		this.types[index] = DOUBLE_VALUE;
+		this.objects[index] = null;
+		this.doubles[index] = value;
+		notifyDoubleListeners(key, value);
+	}
+
 	/**
 	 * Changes the Double value with given key with the value delta
 	 * @param key The key of variable to update
@@ -100,19 +240,27 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double updateDouble(String key, double delta) throws SimError {
-		double current;
-		try {
-			current = (Double)getProperty(key);
-			updateProperty(key, current + delta);
-		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
-		}
-		catch (NullPointerException npe) {
-			throw new SimError("No value for key " + key);
+		return updateDouble(key(key), delta);
+	}
+
+	/**
+	 * Changes the double value with given key with the value delta
+	 * @param key The key of variable to update
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if the value with the given key was not a double
+	 */
+	public double updateDouble(ModuleCommunicationKey key, double delta)
+			throws SimError {
+		byte type = typeOf(key);
+		if (type != DOUBLE_VALUE) {
+			throw new SimError((type == NO_VALUE ? "No value" :
+				"No Double value") + " for key " + key);
 		}
 
-		return current + delta;
+		double value = this.doubles[key.getIndex()] + delta;
+		setDouble(key, value);
+		return value;
 	}
 
 	/**
@@ -123,15 +271,25 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double getDouble(String key, double naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
-			return naValue;
-		}
-		try {
-			return (Double)value;
-		}
-		catch (ClassCastException cce) {
+		return getDouble(key(key), naValue);
+	}
+
+	/**
+	 * Returns a double value from the communication bus.
+	 * @param key The key of the variable
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not a double
+	 */
+	public double getDouble(ModuleCommunicationKey key, double naValue)
+			throws SimError {
+		switch (typeOf(key)) {
+		case DOUBLE_VALUE:
+			return this.doubles[key.getIndex()];
+		case OBJECT_VALUE:
 			throw new SimError("No Double value for key " + key);
+		default:
+			return naValue;
 		}
 	}
 
@@ -143,6 +301,18 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not an Integer
 	 */
 	public int getInt(String key, int naValue) throws SimError {
+		return getInt(key(key), naValue);
+	}
+
+	/**
+	 * Returns an integer value from the communication bus.
+	 * @param key The key of the variable
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not an Integer
+	 */
+	public int getInt(ModuleCommunicationKey key, int naValue)
+			throws SimError {
 		Object value = this.getProperty(key);
 		if (value == null) {
 			return naValue;
@@ -161,20 +331,36 @@ public class ModuleCommunicationBus {
 	 * @param module The module to subscribe.
 	 */
 	public void subscribe(String key, ModuleCommunicationListener module) {
+		subscribe(key(key), module);
+	}
+
+	/**
+	 * Subscribes a module to changes of a certain value.
+	 * @param key The key of the value whose changes the module is interested of
+	 * @param module The module to subscribe.
+	 */
+	public void subscribe(ModuleCommunicationKey key,
+			ModuleCommunicationListener module) {
 		if (this.listeners == null) {
 			/* first listener for the whole node */
-			this.listeners =
-				new HashMap<String, List<ModuleCommunicationListener>>();
+			this.listeners = new ModuleCommunicationListener[0][];
 		}
+		this.listeners = added(this.listeners, key.getIndex(), module);
+	}
 
-		List<ModuleCommunicationListener> list = this.listeners.get(key);
-		if (list == null) {
-			/* first listener for this key */
-			list = new ArrayList<ModuleCommunicationListener>(INIT_CAPACITY);
-			this.listeners.put(key, list);
+	/**
+	 * Subscribes a module to changes of a certain double value. The module
+	 * is notified only when the value is set to a double value.
+	 * @param key The key of the value whose changes the module is interested of
+	 * @param module The module to subscribe.
+	 */
+	public void subscribeDouble(ModuleCommunicationKey key,
+			ModuleCommunicationDoubleListener module) {
+		if (this.doubleListeners == null) {
+			this.doubleListeners = new ModuleCommunicationDoubleListener[0][];
 		}
-
-		list.add(module);
+		this.doubleListeners =
+			added(this.doubleListeners, key.getIndex(), module);
 	}
 
 	/**
@@ -183,47 +369,151 @@ public class ModuleCommunicationBus {
 	 * @param module The module to whose subscription is removed
 	 */
 	public void unsubscribe(String key, ModuleCommunicationListener module) {
-		List<ModuleCommunicationListener> list;
+		unsubscribe(key(key), module);
+	}
 
-		if (this.listeners == null) {
-			return; /* no subscriptions */
+	/**
+	 * Removes a notification subscription
+	 * @param key The key for which the subscription should be removed
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribe(ModuleCommunicationKey key,
+			ModuleCommunicationListener module) {
+		if (this.listeners != null) {
+			removed(this.listeners, key.getIndex(), module);
+		}
+	}
+
+	/**
+	 * Removes a notification subscription made with
+	 * {@link #subscribeDouble(ModuleCommunicationKey,
+	 * ModuleCommunicationDoubleListener)}
+	 * @param key The key for which the subscription should be removed
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribeDouble(ModuleCommunicationKey key,
+			ModuleCommunicationDoubleListener module) {
+		if (this.doubleListeners != null) {
+			removed(this.doubleListeners, key.getIndex(), module);
+		}
+	}
+
+	/**
+	 * Adds a listener to the listener array of a slot
+	 * @param all The listener arrays of all slots
+	 * @param index The index of the slot
+	 * @param listener The listener to add
+	 * @return The listener arrays (a new array if the old one was too short)
+	 */
+	private static <T> T[][] added(T[][] all, int index, T listener) {
+		if (index >= all.length) {
+			all = Arrays.copyOf(all, index + 1);
 		}
 
-		list = this.listeners.get(key);
+		T[] list = all[index];
 		if (list == null) {
-			return; /* no subscriptions for the key */
+			/* first listener for this key */
+			@SuppressWarnings("unchecked")
+			T[] first = (T[])Array.newInstance(
+					all.getClass().getComponentType().getComponentType(), 1);
+			first[0] = listener;
+			all[index] = first;
+		}
+		else {
+			list = Arrays.copyOf(list, list.length + 1);
+			list[list.length - 1] = listener;
+			all[index] = list;
 		}
 
-		list.remove(module);
+		return all;
 	}
 
+	/**
+	 * Removes (the first occurrence of) a listener from the listener array
+	 * of a slot
+	 * @param all The listener arrays of all slots
+	 * @param index The index of the slot
+	 * @param listener The listener to remove
+	 */
+	private static <T> void removed(T[][] all, int index, T listener) {
+		if (index >= all.length || all[index] == null) {
+			return; /* no subscriptions for the key */
+		}
+
+		T[] list = all[index];
+		for (int i=0; i<list.length; i++) {
+			if (list[i] == listener) {
+				T[] newList = Arrays.copyOf(list, list.length - 1);
+				System.arraycopy(list, i + 1, newList, i,
+						list.length - i - 1);
+				all[index] = newList;
+				return;
+			}
+		}
+	}
 
 	/**
 	 * Notifies all listeners that have subscribed to the given key
 	 * @param key The key which got new value
 	 * @param newValue The new value for the key
 	 */
-	private void notifyListeners(String key, Object newValue) {
-		List<ModuleCommunicationListener> list;
+	private void notifyListeners(ModuleCommunicationKey key, Object newValue) {
+		int index = key.getIndex();
 
-		if (this.listeners == null) {
+		if (this.listeners == null || index >= this.listeners.length ||
+				this.listeners[index] == null) {
 			return;
 		}
-		list = this.listeners.get(key);
 
-		if (list == null) {
-			return;
+		for (ModuleCommunicationListener mcl : this.listeners[index]) {
+			mcl.moduleValueChanged(key.getName(), newValue);
+		}
+	}
+
+	/**
+	 * Notifies all double and object listeners that have subscribed to the
+	 * given key. The value is boxed only if there are object listeners.
+	 * @param key The key which got new value
+	 * @param newValue The new value for the key
+	 */
+	private void notifyDoubleListeners(ModuleCommunicationKey key,
+			double newValue) {
+		int index = key.getIndex();
+
+		if (this.doubleListeners != null &&
+				index < this.doubleListeners.length &&
+				this.doubleListeners[index] != null) {
+			for (ModuleCommunicationDoubleListener mcl :
+					this.doubleListeners[index]) {
+				mcl.moduleValueChanged(key, newValue);
+			}
 		}
 
-		for (ModuleCommunicationListener mcl : list) {
-			mcl.moduleValueChanged(key, newValue);
+		if (this.listeners != null && index < this.listeners.length &&
+				this.listeners[index] != null) {
+			notifyListeners(key, newValue); /* boxes the value */
 		}
 	}
 
 
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ?
-				this.values.toString() : "n/a");
+		if (this.types == null) {
+			return "ComBus with mapping: n/a";
+		}
+
+		StringBuilder sb = new StringBuilder("ComBus with mapping: {");
+		String separator = "";
+		for (int i=0; i<this.types.length; i++) {
+			if (this.types[i] == NO_VALUE) {
+				continue;
+			}
+			sb.append(separator);
+			sb.append(ModuleCommunicationKey.getKey(i)).append('=');
+			sb.append(this.types[i] == DOUBLE_VALUE ? this.doubles[i] :
+				this.objects[i]);
+			separator = ", ";
+		}
+		return sb.append('}').toString();
 	}
 }
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * This interface should be implemented by classes that want to be notified
+ * of double value changes in ModuleCommunicationBuses without boxing the
+ * values.
+ */
+public interface ModuleCommunicationDoubleListener {
+
+	/**
+	 * This method is called whenever a double variable, whose changes the
+	 * module has registered to, changes.
+	 * @param key The key of the variable
+	 * @param newValue New value for the variable
+	 */
+	public void moduleValueChanged(ModuleCommunicationKey key,
+			double newValue);
+
+}
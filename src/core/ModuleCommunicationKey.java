@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handle of a {@link ModuleCommunicationBus} variable. Every variable name
+ * is registered once and gets a unique index that the buses use to find
+ * the variable's value and listeners without hashing the name.
+ * The keys should be stored in static fields (e.g., next to the
+ * variable's name constant) and reused.
+ */
+public final class ModuleCommunicationKey {
+	/** All registered keys by their names */
+	private static Map<String, ModuleCommunicationKey> keys =
+		new HashMap<String, ModuleCommunicationKey>();
+	/** All registered keys by their indexes */
+	private static List<ModuleCommunicationKey> keysByIndex =
+		new ArrayList<ModuleCommunicationKey>();
+
+	/** Name of the variable */
+	private final String name;
+	/** Index of the variable in the buses */
+	private final int index;
+
+	/**
+	 * Constructor.
+	 * @param name Name of the variable
+	 * @param index Index of the variable
+	 */
+	private ModuleCommunicationKey(String name, int index) {
+		this.name = name;
+		this.index = index;
+	}
+
+	/**
+	 * Returns the key of a variable. The key is registered if it hasn't
+	 * been requested before.
+	 * @param name Name of the variable
+	 * @return The key of the variable
+	 */
+	public static synchronized ModuleCommunicationKey getKey(String name) {
+		ModuleCommunicationKey key = keys.get(name);
+		if (key == null) {
+			key = new ModuleCommunicationKey(name, keys.size());
+			keys.put(name, key);
+			keysByIndex.add(key);
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the key with the given index
+	 * @param index Index of the key
+	 * @return The key
+	 */
+	static synchronized ModuleCommunicationKey getKey(int index) {
+		return keysByIndex.get(index);
+	}
+
+	/**
+	 * Returns the name of the variable
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the index of the variable in the buses
+	 * @return the index
+	 */
+	int getIndex() {
+		return this.index;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
@@ -18,7 +18,8 @@ import util.ActivenessHandler;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener,
+	ModuleCommunicationDoubleListener {
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -45,6 +46,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "transmission speed"
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
+	/** Key of the {@link #SCAN_INTERVAL_ID} variable */
+	public static final ModuleCommunicationKey SCAN_INTERVAL_KEY =
+		ModuleCommunicationKey.getKey(SCAN_INTERVAL_ID);
+	/** Key of the {@link #RANGE_ID} variable */
+	public static final ModuleCommunicationKey RANGE_KEY =
+		ModuleCommunicationKey.getKey(RANGE_ID);
+	/** Key of the {@link #SPEED_ID} variable */
+	public static final ModuleCommunicationKey SPEED_KEY =
+		ModuleCommunicationKey.getKey(SPEED_ID);
 
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
@@ -142,16 +152,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
 
-		if (!comBus.containsProperty(SCAN_INTERVAL_ID) &&
-		    !comBus.containsProperty(RANGE_ID)) {
+		if (!comBus.containsProperty(SCAN_INTERVAL_KEY) &&
+		    !comBus.containsProperty(RANGE_KEY)) {
 			/* add properties and subscriptions only for the 1st interface */
 			/* TODO: support for multiple interfaces */
-			comBus.addProperty(SCAN_INTERVAL_ID, this.scanInterval);
-			comBus.addProperty(RANGE_ID, this.transmitRange);
-			comBus.addProperty(SPEED_ID, this.transmitSpeed);
-			comBus.subscribe(SCAN_INTERVAL_ID, this);
-			comBus.subscribe(RANGE_ID, this);
-			comBus.subscribe(SPEED_ID, this);
+			comBus.addDouble(SCAN_INTERVAL_KEY, this.scanInterval);
+			comBus.addDouble(RANGE_KEY, this.transmitRange);
+			comBus.addProperty(SPEED_KEY, this.transmitSpeed);
+			comBus.subscribeDouble(SCAN_INTERVAL_KEY, this);
+			comBus.subscribeDouble(RANGE_KEY, this);
+			comBus.subscribe(SPEED_KEY, this);
 		}
 
 		if (transmitRange > 0) {
@@ -237,7 +247,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 		active = ah.isActive(this.activenessJitterValue);
 
-		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_ID,
+		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_KEY,
 					1) <= 0) {
 			/* TODO: better way to check battery level */
 			/* no battery -> inactive */
@@ -247,10 +257,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		if (active == false && this.transmitRange > 0) {
 			/* not active -> make range 0 */
 			this.oldTransmitRange = this.transmitRange;
-			host.getComBus().updateProperty(RANGE_ID, 0.0);
+			host.getComBus().setDouble(RANGE_KEY, 0.0);
 		} else if (active == true && this.transmitRange == 0.0) {
 			/* active, but range == 0 -> restore range  */
-			host.getComBus().updateProperty(RANGE_ID,
+			host.getComBus().setDouble(RANGE_KEY,
 					this.oldTransmitRange);
 		}
 		return active;
@@ -423,19 +433,32 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	/**
 	 * This method is called by the {@link ModuleCommunicationBus} when/if
-	 * someone changes the scanning interval, transmit speed, or range
+	 * someone changes the transmit speed
 	 * @param key Identifier of the changed value
 	 * @param newValue New value for the variable
 	 */
 	public void moduleValueChanged(String key, Object newValue) {
-		if (key.equals(SCAN_INTERVAL_ID)) {
-			this.scanInterval = (Double)newValue;
-		}
-		else if (key.equals(SPEED_ID)) {
+		if (key.equals(SPEED_ID)) {
 			this.transmitSpeed = (Integer)newValue;
 		}
-		else if (key.equals(RANGE_ID)) {
-			this.transmitRange = (Double)newValue;
+		else {
+			throw new SimError("Unexpected combus ID " + key);
+		}
+	}
+
+	/**
+	 * This method is called by the {@link ModuleCommunicationBus} when/if
+	 * someone changes the scanning interval or range
+	 * @param key Key of the changed value
+	 * @param newValue New value for the variable
+	 */
+	public void moduleValueChanged(ModuleCommunicationKey key,
+			double newValue) {
+		if (key == SCAN_INTERVAL_KEY) {
+			this.scanInterval = newValue;
+		}
+		else if (key == RANGE_KEY) {
+			this.transmitRange = newValue;
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -48,6 +48,16 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should the connections schedule an update for the sending host when
+	 * their message transfer is due to finish -setting id ({@value}).
+	 * Boolean (true/false) variable. If true, the transfers are finalized
+	 * (and the sender can start the next one) at their exact finishing time
+	 * instead of the next update interval. Only the sending host is updated
+	 * at that time. Default = false.
+	 */
+	public static final String SCHEDULE_TRANSFERS_S = "scheduleTransfers";
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
@@ -107,6 +117,9 @@ public class World {
 		
 		this.realtimeSimulation = s.getBoolean(REALTIME_SIM_S ,false);
 
+		Connection.setWorld(s.getBoolean(SCHEDULE_TRANSFERS_S, false) ?
+				this : null);
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -190,7 +203,9 @@ public class World {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (ee.updatesAllHosts()) {
+				updateHosts(); // update all hosts after (almost) every event
+			}
 			setNextEventQueue();
 		}
 
@@ -306,4 +321,14 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Schedules an update request to a single node to happen at the
+	 * specified simulation time. Other nodes are not updated at that time.
+	 * @param simTime The time of the update
+	 * @param host The node to update
+	 */
+	public void scheduleUpdate(double simTime, DTNHost host) {
+		scheduledUpdates.addUpdate(simTime, host.getAddress());
+	}
 }
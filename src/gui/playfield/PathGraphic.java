@@ -6,10 +6,8 @@ package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.List;
 
 import movement.Path;
-import core.Coord;
 
 /**
  * Visualization of a Path
@@ -17,17 +15,12 @@ import core.Coord;
  */
 public class PathGraphic extends PlayFieldGraphic {
 	private final static Color PATH_COLOR = Color.RED;
-	private List<Coord> coords;
+	private Path path;
 
 	public PathGraphic(Path path) {
-		if (path == null) {
-			this.coords = null;
-		}
-		else {
-			this.coords = path.getCoords();
-			assert this.coords != null && this.coords.size() > 0 :
+		this.path = path;
+		assert path == null || path.getNrofWaypoints() > 0 :
 			"No coordinates in the path (" + path + ")";
-		}
 	}
 
 	/**
@@ -36,18 +29,14 @@ public class PathGraphic extends PlayFieldGraphic {
 	 */
 	@Override
 	public void draw(Graphics2D g2) {
-		if (coords == null) {
+		if (path == null) {
 			return;
 		}
 
 		g2.setColor(PATH_COLOR);
-		Coord prev = coords.get(0);
-
-		for (int i=1, n=coords.size(); i < n; i++) {
-			Coord next = coords.get(i);
-			g2.drawLine(scale(prev.getX()), scale(prev.getY()),
-					scale(next.getX()), scale(next.getY()));
-			prev = next;
+		for (int i=1, n=path.getNrofWaypoints(); i < n; i++) {
+			g2.drawLine(scale(path.getX(i-1)), scale(path.getY(i-1)),
+					scale(path.getX(i)), scale(path.getY(i)));
 		}
 	}
 
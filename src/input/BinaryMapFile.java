@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+
+/**
+ * Compiled (binary) map file that can be used as a cache for maps read
+ * from WKT files. The file contains the map exactly as it was after the
+ * reading and processing (e.g., mirroring and translating): the node
+ * coordinates, types and neighbors in the same order, and the offset of the
+ * map. The file also contains a key string that identifies the source of
+ * the map (e.g., the names, sizes and modification times of the map files)
+ * and the file is used only if the key matches.
+ * <P>The file is read through a memory-mapped buffer.</P>
+ */
+public class BinaryMapFile {
+	/** Identifier in the beginning of the file */
+	private static final int MAGIC = 0x4f4e454d; // "ONEM"
+	/** Version of the file format */
+	private static final int VERSION = 1;
+
+	/**
+	 * Reads a map from a binary map file
+	 * @param file The file to read
+	 * @param key The key that the file must have
+	 * @return The map, or null if the file doesn't exist, is not a valid
+	 * binary map file, or has a different key
+	 * @throws IOException if the file can't be read
+	 */
+	public static SimMap read(File file, String key) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				return null;
+			}
+			byte[] keyBytes = new byte[buf.getInt()];
+			buf.get(keyBytes);
+			if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8))) {
+				return null;
+			}
+
+			boolean mirrored = buf.get() != 0;
+			Coord offset = new Coord(buf.getDouble(), buf.getDouble());
+			int nrofNodes = buf.getInt();
+
+			List<MapNode> nodes = new ArrayList<MapNode>(nrofNodes);
+			int[] types = new int[nrofNodes];
+			for (int i=0; i<nrofNodes; i++) {
+				nodes.add(new MapNode(new Coord(buf.getDouble(),
+						buf.getDouble())));
+				types[i] = buf.getInt();
+			}
+
+			for (int i=0; i<nrofNodes; i++) {
+				MapNode node = nodes.get(i);
+				for (int t=MapNode.MIN_TYPE; t<=MapNode.MAX_TYPE; t++) {
+					if ((types[i] & (1 << t)) != 0) {
+						node.addType(t);
+					}
+				}
+				for (int j=0, n=buf.getInt(); j<n; j++) {
+					node.addNeighbor(nodes.get(buf.getInt()));
+				}
+			}
+
+			return new SimMap(nodes, offset, mirrored);
+		} catch (BufferUnderflowException e) {
+			return null; // truncated file
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes a map to a binary map file. The file is first written to a
+	 * temporary file that then replaces the old file (if any).
+	 * @param file The file to write
+	 * @param key The key of the map
+	 * @param map The map to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(File file, String key, SimMap map)
+		throws IOException {
+		MapGraph graph = map.getGraph();
+		int nrofNodes = graph.getNrofNodes();
+		File dir = file.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(keyBytes.length);
+			out.write(keyBytes);
+
+			out.writeBoolean(map.isMirrored());
+			out.writeDouble(map.getOffset().getX());
+			out.writeDouble(map.getOffset().getY());
+			out.writeInt(nrofNodes);
+
+			for (int i=0; i<nrofNodes; i++) {
+				out.writeDouble(graph.getX(i));
+				out.writeDouble(graph.getY(i));
+				out.writeInt(graph.getTypes(i));
+			}
+			for (int i=0; i<nrofNodes; i++) {
+				out.writeInt(graph.getLastEdge(i) - graph.getFirstEdge(i));
+				for (int e = graph.getFirstEdge(i); e < graph.getLastEdge(i);
+						e++) {
+					out.writeInt(graph.getTarget(e));
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmp.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete(); // if the move failed
+		}
+	}
+}
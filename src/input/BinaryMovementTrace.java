@@ -0,0 +1,504 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.Tuple;
+import core.Coord;
+
+/**
+ * Binary format for the time-location traces of
+ * {@link movement.ExternalMovement}. A trace in the text format (see
+ * {@link ExternalMovementReader}) can be converted to the binary format with
+ * {@link #convert(File, File)} or from the command line:<BR>
+ * <CODE>java -cp target input.BinaryMovementTrace textTrace binaryTrace
+ * </CODE>
+ * <P>The file starts with a header that has the offsets (bounds) of the
+ * trace. It is followed by fixed-width (time, id, x, y) records in the
+ * order of the text trace (i.e., sorted by time), where the ids are
+ * integers that index a table of the original (string) ids. At the end of
+ * the file there is the id table and an index with the time stamp and the
+ * first record of every time instance (block). The records are read
+ * through memory-mapped windows of the file, and reading can be started
+ * from any time instance with {@link #seek(double)}, which takes constant
+ * time with a constant sampling interval.</P>
+ */
+public class BinaryMovementTrace {
+	/** Identifier in the beginning of the file */
+	private static final int MAGIC = 0x4f4e4554; // "ONET"
+	/** Version of the file format */
+	private static final int VERSION = 1;
+	/** Size of the header in bytes */
+	private static final int HEADER_SIZE = 88;
+	/** Size of a (time, id, x, y) record in bytes */
+	private static final int RECORD_SIZE = 28;
+	/** Maximum number of records in a memory-mapped window */
+	private static final int WINDOW_RECORDS = 1 << 21;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	/** Memory-mapped window of the records */
+	private MappedByteBuffer window;
+	/** Index of the first record in the window */
+	private long windowStart;
+	/** Number of records in the window */
+	private int windowSize;
+
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private long nrofRecords;
+	/** Original ids by their index */
+	private String[] idNames;
+	/** Time stamps of the blocks */
+	private double[] blockTimes;
+	/** Index of the first record of each block */
+	private long[] blockStarts;
+
+	/** Index of the next block to read */
+	private int nextBlock;
+	private boolean normalize;
+	private double lastTimeStamp = -1;
+	/** Ids of the records in the latest read block */
+	private int[] ids;
+	/** X coordinates of the records in the latest read block */
+	private double[] xs;
+	/** Y coordinates of the records in the latest read block */
+	private double[] ys;
+	/** Number of records in the latest read block */
+	private int nrofMovements;
+
+	/**
+	 * Constructor. Opens a binary trace file for reading.
+	 * @param traceFile The file
+	 * @throws IOException if the file couldn't be read or it is not a
+	 * binary trace file
+	 */
+	public BinaryMovementTrace(File traceFile) throws IOException {
+		this.normalize = true;
+		this.file = new RandomAccessFile(traceFile, "r");
+		this.channel = file.getChannel();
+
+		MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				Math.min(HEADER_SIZE, channel.size()));
+		if (buf.limit() < HEADER_SIZE || buf.getInt() != MAGIC ||
+				buf.getInt() != VERSION) {
+			close();
+			throw new IOException(traceFile + " is not a binary movement " +
+					"trace file (version " + VERSION + ")");
+		}
+		minTime = buf.getDouble();
+		maxTime = buf.getDouble();
+		minX = buf.getDouble();
+		maxX = buf.getDouble();
+		minY = buf.getDouble();
+		maxY = buf.getDouble();
+		nrofRecords = buf.getLong();
+		long idTableOffset = buf.getLong();
+		int nrofIds = buf.getInt();
+		long indexOffset = buf.getLong();
+		int nrofBlocks = buf.getInt();
+
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, idTableOffset,
+				channel.size() - idTableOffset);
+		idNames = new String[nrofIds];
+		for (int i=0; i<nrofIds; i++) {
+			byte[] name = new byte[buf.getInt()];
+			buf.get(name);
+			idNames[i] = new String(name, StandardCharsets.UTF_8);
+		}
+
+		buf.position((int)(indexOffset - idTableOffset));
+		blockTimes = new double[nrofBlocks];
+		blockStarts = new long[nrofBlocks];
+		for (int i=0; i<nrofBlocks; i++) {
+			blockTimes[i] = buf.getDouble();
+			blockStarts[i] = buf.getLong();
+		}
+
+		ids = new int[16];
+		xs = new double[16];
+		ys = new double[16];
+	}
+
+	/**
+	 * Returns true if the file is a binary trace file
+	 * @param traceFile The file to check
+	 * @return true if the file starts with the binary trace identifier
+	 */
+	public static boolean isBinary(File traceFile) {
+		if (!traceFile.isFile() || traceFile.length() < HEADER_SIZE) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(
+					new FileInputStream(traceFile));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Converts a text trace to a binary trace
+	 * @param textFile The text trace file (see {@link ExternalMovementReader})
+	 * @param binaryFile The binary trace file to write
+	 * @throws IOException if the binary file couldn't be written
+	 */
+	public static void convert(File textFile, File binaryFile)
+		throws IOException {
+		ExternalMovementReader reader = new ExternalMovementReader(
+				textFile.getPath());
+		reader.setNormalize(false);
+
+		Map<String, Integer> idIndexes = new HashMap<String, Integer>();
+		List<String> idNames = new ArrayList<String>();
+		double[] blockTimes = new double[1024];
+		long[] blockStarts = new long[1024];
+		int nrofBlocks = 0;
+		long nrofRecords = 0;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(binaryFile), 1 << 16));
+		try {
+			out.write(new byte[HEADER_SIZE]); // written when all is known
+
+			List<Tuple<String, Coord>> moves = reader.readNextMovements();
+			while (moves.size() > 0) {
+				double time = reader.getLastTimeStamp();
+				if (nrofBlocks == blockTimes.length) {
+					blockTimes = Arrays.copyOf(blockTimes, nrofBlocks * 2);
+					blockStarts = Arrays.copyOf(blockStarts, nrofBlocks * 2);
+				}
+				blockTimes[nrofBlocks] = time;
+				blockStarts[nrofBlocks] = nrofRecords;
+				nrofBlocks++;
+
+				for (Tuple<String, Coord> t : moves) {
+					Integer id = idIndexes.get(t.getKey());
+					if (id == null) {
+						id = idNames.size();
+						idIndexes.put(t.getKey(), id);
+						idNames.add(t.getKey());
+					}
+					out.writeDouble(time);
+					out.writeInt(id);
+					out.writeDouble(t.getValue().getX());
+					out.writeDouble(t.getValue().getY());
+					nrofRecords++;
+				}
+				moves = reader.readNextMovements();
+			}
+
+			for (String name : idNames) {
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			for (int i=0; i<nrofBlocks; i++) {
+				out.writeDouble(blockTimes[i]);
+				out.writeLong(blockStarts[i]);
+			}
+		} finally {
+			out.close();
+		}
+
+		long idTableOffset = HEADER_SIZE + nrofRecords * RECORD_SIZE;
+		long indexOffset = binaryFile.length() - nrofBlocks * 16L;
+		RandomAccessFile raf = new RandomAccessFile(binaryFile, "rw");
+		try {
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeDouble(reader.getMinTime());
+			raf.writeDouble(reader.getMaxTime());
+			raf.writeDouble(reader.getMinX());
+			raf.writeDouble(reader.getMaxX());
+			raf.writeDouble(reader.getMinY());
+			raf.writeDouble(reader.getMaxY());
+			raf.writeLong(nrofRecords);
+			raf.writeLong(idTableOffset);
+			raf.writeInt(idNames.size());
+			raf.writeLong(indexOffset);
+			raf.writeInt(nrofBlocks);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Sets normalizing of read values on/off. If on, the time stamps and
+	 * coordinates are decremented by minimum values of the offsets (also
+	 * the time given to {@link #seek(double)} is relative to the minimum
+	 * time). Default is on (normalize).
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	/**
+	 * Moves the reading position to the first time instance that is at or
+	 * after the given time.
+	 * @param time The time
+	 */
+	public void seek(double time) {
+		int n = blockTimes.length;
+		if (normalize) {
+			time += minTime;
+		}
+		if (n == 0) {
+			return;
+		}
+
+		/* estimate the block from the (average) sampling interval... */
+		double interval = n > 1 ?
+				(blockTimes[n-1] - blockTimes[0]) / (n - 1) : 1;
+		double estimate = Math.ceil((time - blockTimes[0]) / interval);
+		int b = (int)Math.max(0, Math.min(n, estimate));
+		/* ...and correct it if the interval wasn't constant */
+		while (b > 0 && blockTimes[b-1] >= time) {
+			b--;
+		}
+		while (b < n && blockTimes[b] < time) {
+			b++;
+		}
+		nextBlock = b;
+	}
+
+	/**
+	 * Reads the movements of the next time instance. The time stamp of the
+	 * movements can be asked with {@link #getLastTimeStamp()} and the
+	 * movements with {@link #getId(int)}, {@link #getX(int)} and
+	 * {@link #getY(int)}.
+	 * @return The number of movements that were read (0 if there were no
+	 * more movements)
+	 * @throws IOException if the file couldn't be read
+	 */
+	public int readNextBlock() throws IOException {
+		if (nextBlock >= blockTimes.length) {
+			nrofMovements = 0;
+			return 0;
+		}
+
+		long start = blockStarts[nextBlock];
+		long end = nextBlock + 1 < blockTimes.length ?
+				blockStarts[nextBlock + 1] : nrofRecords;
+		int size = (int)(end - start);
+		if (size > ids.length) {
+			ids = new int[size];
+			xs = new double[size];
+			ys = new double[size];
+		}
+
+		for (int i=0; i<size; i++) {
+			int pos = mapRecord(start + i) + 8; // skip the time
+			ids[i] = window.getInt(pos);
+			xs[i] = window.getDouble(pos + 4);
+			ys[i] = window.getDouble(pos + 12);
+			if (normalize) {
+				xs[i] -= minX;
+				ys[i] -= minY;
+			}
+		}
+
+		lastTimeStamp = blockTimes[nextBlock];
+		if (normalize) {
+			lastTimeStamp -= minTime;
+		}
+		nextBlock++;
+		nrofMovements = size;
+		return size;
+	}
+
+	/**
+	 * Reads the movements of the next time instance in the same format as
+	 * {@link ExternalMovementReader#readNextMovements()}
+	 * @return A list of id-location tuples or empty list if there were no
+	 * more moves
+	 * @throws IOException if the file couldn't be read
+	 */
+	public List<Tuple<String, Coord>> readNextMovements() throws IOException {
+		int n = readNextBlock();
+		List<Tuple<String, Coord>> moves =
+			new ArrayList<Tuple<String, Coord>>(n);
+		for (int i=0; i<n; i++) {
+			moves.add(new Tuple<String, Coord>(idNames[ids[i]],
+					new Coord(xs[i], ys[i])));
+		}
+		return moves;
+	}
+
+	/**
+	 * Makes sure a record is in the memory-mapped window
+	 * @param record Index of the record
+	 * @return Position of the record in the window
+	 * @throws IOException if the file couldn't be mapped
+	 */
+	private int mapRecord(long record) throws IOException {
+		if (window == null || record < windowStart ||
+				record >= windowStart + windowSize) {
+			windowStart = record;
+			windowSize = (int)Math.min(WINDOW_RECORDS, nrofRecords - record);
+			window = channel.map(FileChannel.MapMode.READ_ONLY,
+					HEADER_SIZE + record * RECORD_SIZE,
+					(long)windowSize * RECORD_SIZE);
+		}
+		return (int)(record - windowStart) * RECORD_SIZE;
+	}
+
+	/**
+	 * Closes the file
+	 * @throws IOException if closing failed
+	 */
+	public void close() throws IOException {
+		window = null;
+		file.close();
+	}
+
+	/**
+	 * Returns the time stamp of the movements read with the latest
+	 * {@link #readNextBlock()} call
+	 * @return The time stamp
+	 */
+	public double getLastTimeStamp() {
+		return lastTimeStamp;
+	}
+
+	/**
+	 * Returns the id of a movement read with the latest
+	 * {@link #readNextBlock()} call
+	 * @param index Index of the movement
+	 * @return The id (index of the original id)
+	 * @see #getIdName(int)
+	 */
+	public int getId(int index) {
+		assert index < nrofMovements;
+		return ids[index];
+	}
+
+	/**
+	 * Returns the x coordinate of a movement read with the latest
+	 * {@link #readNextBlock()} call
+	 * @param index Index of the movement
+	 * @return The x coordinate
+	 */
+	public double getX(int index) {
+		assert index < nrofMovements;
+		return xs[index];
+	}
+
+	/**
+	 * Returns the y coordinate of a movement read with the latest
+	 * {@link #readNextBlock()} call
+	 * @param index Index of the movement
+	 * @return The y coordinate
+	 */
+	public double getY(int index) {
+		assert index < nrofMovements;
+		return ys[index];
+	}
+
+	/**
+	 * Returns the number of different ids in the trace
+	 * @return The number of ids
+	 */
+	public int getNrofIds() {
+		return idNames.length;
+	}
+
+	/**
+	 * Returns the original (text trace) id of an id
+	 * @param id The id
+	 * @return The original id
+	 */
+	public String getIdName(int id) {
+		return idNames[id];
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Converts a text trace to a binary trace
+	 * @param args The text trace file and the binary trace file
+	 * @throws IOException if the conversion failed
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: BinaryMovementTrace textTrace " +
+					"binaryTrace");
+			System.exit(1);
+		}
+		convert(new File(args[0]), new File(args[1]));
+	}
+}
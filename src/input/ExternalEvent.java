@@ -29,6 +29,15 @@ public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
 		// this is just a dummy event
 	}
 
+	/**
+	 * Returns true if all hosts should be updated after this event has been
+	 * processed. The default implementation always returns true.
+	 * @return true if all hosts should be updated
+	 */
+	public boolean updatesAllHosts() {
+		return true;
+	}
+
 	/**
 	 * Returns the time when this event should happen.
 	 * @return Event's time
@@ -7,20 +7,25 @@ package input;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
+import core.Coord;
+import core.DTNSim;
 import core.SettingsError;
+import core.SimError;
 
 
 /**
@@ -47,7 +52,18 @@ import core.SettingsError;
  *
  * <p>Trace and activity files ending in .zip are assumed to be
  * compressed and will be automatically uncompressed during reading. The whole
- * trace is loaded into memory at once.</p>
+ * trace is loaded into memory at once, unless the reader is created with
+ * a lookahead time. In that windowed mode the paths are read from the trace
+ * file as the simulation advances (see {@link #advance(double)}), and only
+ * the paths that start before the lookahead time has passed (and the paths
+ * the nodes haven't used yet) are kept in memory in {@link PathWindow}s.
+ * Paths are kept only for the nodes that have a window (see
+ * {@link #createPathWindow(int)}). If dropping replaced paths is enabled
+ * (see {@link #setDropReplacedPaths(boolean)}), a path is also dropped when
+ * a later path of the same node has already started. Otherwise the paths
+ * that nodes haven't used, e.g., because they were inactive, stay in the
+ * windows until the nodes use them.
+ * The paths must be sorted by their start times in the windowed mode.</p>
  *
  * @author teemuk
  *
@@ -56,6 +72,14 @@ public class ExternalPathMovementReader {
 	 // Singletons are evil, but I'm lazy
 	private static Map<String, ExternalPathMovementReader> singletons =
 		new HashMap<String, ExternalPathMovementReader>();
+	// Windowed readers are used up during a run so they're not kept over resets
+	private static Map<String, ExternalPathMovementReader> windowedSingletons;
+
+	static {
+		DTNSim.registerForReset(
+				ExternalPathMovementReader.class.getCanonicalName());
+		reset();
+	}
 
 	/**
 	 * Represents a point on the path.
@@ -74,6 +98,129 @@ public class ExternalPathMovementReader {
 		public double end;
 	}
 
+	/**
+	 * The read but not yet used paths of a node in the windowed mode. The
+	 * points of the paths are stored in primitive arrays.
+	 */
+	public static class PathWindow {
+		private double[] times = new double[16];
+		private double[] xs = new double[16];
+		private double[] ys = new double[16];
+		// index of the first point of the first path
+		private int start = 0;
+		// number of points in the arrays (including the used ones)
+		private int size = 0;
+		// end indexes (exclusive) of the paths
+		private int[] pathEnds = new int[4];
+		private int firstPath = 0;
+		private int nrofPaths = 0;
+
+		/**
+		 * Adds a path to the end of the window.
+		 */
+		private void addPath(double[] t, double[] x, double[] y, int n) {
+			if (this.size + n > this.times.length ||
+					this.nrofPaths == this.pathEnds.length) {
+				compact(n);
+			}
+			System.arraycopy(t, 0, this.times, this.size, n);
+			System.arraycopy(x, 0, this.xs, this.size, n);
+			System.arraycopy(y, 0, this.ys, this.size, n);
+			this.size += n;
+			this.pathEnds[this.nrofPaths++] = this.size;
+		}
+
+		/**
+		 * Drops the used points and paths from the beginning of the arrays
+		 * and grows the arrays if there's no room for a path of n points.
+		 */
+		private void compact(int n) {
+			int points = this.size - this.start;
+			int paths = this.nrofPaths - this.firstPath;
+			if (points + n > this.times.length) {
+				int len = Math.max(this.times.length * 2, points + n);
+				this.times = Arrays.copyOfRange(this.times, this.start,
+						this.start + len);
+				this.xs = Arrays.copyOfRange(this.xs, this.start,
+						this.start + len);
+				this.ys = Arrays.copyOfRange(this.ys, this.start,
+						this.start + len);
+			} else {
+				System.arraycopy(this.times, this.start, this.times, 0, points);
+				System.arraycopy(this.xs, this.start, this.xs, 0, points);
+				System.arraycopy(this.ys, this.start, this.ys, 0, points);
+			}
+			if (paths == this.pathEnds.length) {
+				this.pathEnds = Arrays.copyOf(this.pathEnds, paths * 2);
+			}
+			for (int i=0; i<paths; i++) {
+				this.pathEnds[i] = this.pathEnds[this.firstPath + i] -
+					this.start;
+			}
+			this.start = 0;
+			this.size = points;
+			this.firstPath = 0;
+			this.nrofPaths = paths;
+		}
+
+		/**
+		 * Returns true if there are paths in the window.
+		 */
+		public boolean hasPath() {
+			return this.firstPath < this.nrofPaths;
+		}
+
+		/**
+		 * Returns the number of points in the first path of the window.
+		 */
+		public int getPathSize() {
+			return this.pathEnds[this.firstPath] - this.start;
+		}
+
+		/**
+		 * Returns the time of a point in the first path of the window.
+		 */
+		public double getTime(int index) {
+			return this.times[this.start + index];
+		}
+
+		/**
+		 * Returns the x coordinate of a point in the first path of the window.
+		 */
+		public double getX(int index) {
+			return this.xs[this.start + index];
+		}
+
+		/**
+		 * Returns the y coordinate of a point in the first path of the window.
+		 */
+		public double getY(int index) {
+			return this.ys[this.start + index];
+		}
+
+		/**
+		 * Removes the first path of the window.
+		 */
+		public void removePath() {
+			this.start = this.pathEnds[this.firstPath++];
+			if (this.firstPath == this.nrofPaths) {
+				// all used; start from the beginning of the arrays
+				this.start = this.size = this.firstPath = this.nrofPaths = 0;
+			}
+		}
+
+		/**
+		 * Removes the paths that ended before the given time because the
+		 * next path of the node has already started by then.
+		 */
+		public void removeReplacedPaths(double time) {
+			while (this.nrofPaths - this.firstPath > 1 &&
+					this.times[this.pathEnds[this.firstPath]] <= time) {
+				removePath();
+			}
+		}
+	}
+
 	// Path cache
 	private List<List<List<Entry>>> paths = null;
 	// Activity cache
@@ -88,6 +235,25 @@ public class ExternalPathMovementReader {
 	private double minY;
 	private double maxY;
 	private int	maxID;
+	private String traceFilePath;
+
+	// Windowed mode
+	private double lookahead;
+	// Drop the paths that have been replaced by a later started path
+	private boolean dropReplaced = false;
+	// Reader of the trace file (null when all paths have been read)
+	private BufferedReader traceReader = null;
+	private PathWindow[] windows = null;
+	// Initial locations of the nodes (NaN if there are no paths for a node)
+	private double[] initXs = null;
+	private double[] initYs = null;
+
+	// The latest parsed path line
+	private int lineId;
+	private int lineSize;
+	private double[] lineTimes;
+	private double[] lineXs;
+	private double[] lineYs;
 
 	/**
 	 * Creates a new reader by parsing the given files and building the internal
@@ -95,9 +261,17 @@ public class ExternalPathMovementReader {
 	 *
 	 * @param traceFilePath		path to the trace file
 	 * @param activityFilePath	path to the activity file
+	 * @param lookahead how far ahead of the sim time the paths are read in
+	 * the windowed mode (0 = whole trace is read)
 	 */
 	private ExternalPathMovementReader(String traceFilePath,
-			String activityFilePath) throws IOException {
+			String activityFilePath, double lookahead) throws IOException {
+		this.traceFilePath = traceFilePath;
+		this.lookahead = lookahead;
+		this.lineTimes = new double[16];
+		this.lineXs = new double[16];
+		this.lineYs = new double[16];
+
 		// Open the trace file for reading
 		File inFile = new File(traceFilePath);
 		long traceSize = inFile.length();
@@ -105,38 +279,11 @@ public class ExternalPathMovementReader {
 		long readSize = 0;
 		long printSize = 5*1024*1024;
 
-		BufferedReader reader = null;
-		ZipFile zf = null;
-		try {
-			if (traceFilePath.endsWith(".zip")) {
-				// Grab the first entry from the zip file
-				// TODO: try to find the correct entry based on file name
-				zf = new ZipFile(traceFilePath);
-				ZipEntry ze = zf.entries().nextElement();
-				reader = new BufferedReader(
-						new InputStreamReader(zf.getInputStream(ze)));
-				traceSize = ze.getSize();
-			} else {
-				reader = new BufferedReader(
-					new FileReader(traceFilePath));
-			}
-		} catch (FileNotFoundException e1) {
-			throw new SettingsError("Couldn't find external movement input " +
-					"file " + inFile);
-		} finally {
-			if (zf != null) {
-				zf.close();
-			}
+		BufferedReader reader = openReader(traceFilePath, "movement");
+		if (traceFilePath.endsWith(".zip")) {
+			traceSize = uncompressedSize(traceFilePath);
 		}
 
-		/*Scanner scanner = null;
-		try {
-			scanner = new Scanner(inFile);
-		} catch (FileNotFoundException e) {
-			throw new SettingsError("Couldn't find external movement input " +
-					"file " + inFile);
-		}*/
-
 		// Parse header
 		String offsets = reader.readLine();
 		if (offsets == null) {
@@ -161,81 +308,55 @@ public class ExternalPathMovementReader {
 			}
 		}
 
-		// Initialize path cache
-		this.paths = new ArrayList<List<List<Entry>>>(this.maxID + 1);
-		for (int i=0; i<=this.maxID; i++) {
-			this.paths.add(i, new LinkedList<List<Entry>>());
-		}
-
-		// Parse traces
-		String line = reader.readLine();
-		while (line != null) {
-
-			readSize += line.length() + 1;
-			if (readSize >= printSize) {
-				totalRead += readSize;
-				readSize = 0;
-				System.out.println("Processed " + (totalRead/1024) + "KB out" +
-						" of " + (traceSize/1024) + "KB (" +
-						Math.round(100.0*totalRead/traceSize) + "%)");
+		if (lookahead > 0) {
+			// Windowed mode: only the upcoming paths are read when needed
+			reader.close();
+			prescan();
+			this.windows = new PathWindow[this.maxID + 1];
+			this.traceReader = openReader(traceFilePath, "movement");
+			this.traceReader.readLine(); // skip the header
+			readNextLine();
+		} else {
+			// Initialize path cache
+			this.paths = new ArrayList<List<List<Entry>>>(this.maxID + 1);
+			for (int i=0; i<=this.maxID; i++) {
+				this.paths.add(i, new LinkedList<List<Entry>>());
 			}
 
-			if (line.equals("")) {
-				line = reader.readLine();
-				continue; // Skip empty lines
-			}
-			Scanner traceScan = new Scanner(line);
-			int id = traceScan.nextInt();
-			List<List<Entry>> paths = this.paths.get(id);
-			List<Entry> path = new LinkedList<Entry>();
-			while (traceScan.hasNext()) {
-				String dataPoint = traceScan.next();
-				int d1 = dataPoint.indexOf(',');
-				int d2 = dataPoint.indexOf(',', d1+1);
-
-				Entry e = new Entry();
-				e.time = Double.parseDouble(dataPoint.substring(0, d1));
-				e.x = Double.parseDouble(dataPoint.substring(d1+1, d2));
-				e.y = Double.parseDouble(dataPoint.substring(d2+1));
-
-				if (this.normalize) {
-					e.time -= this.minTime;
-					e.x -= this.minX;
-					e.y -= this.minY;
+			// Parse traces
+			String line = reader.readLine();
+			while (line != null) {
+
+				readSize += line.length() + 1;
+				if (readSize >= printSize) {
+					totalRead += readSize;
+					readSize = 0;
+					System.out.println("Processed " + (totalRead/1024) +
+							"KB out of " + (traceSize/1024) + "KB (" +
+							Math.round(100.0*totalRead/traceSize) + "%)");
 				}
 
-				path.add(e);
-			}
-			paths.add(path);
-			traceScan.close();
+				if (!parseLine(line)) {
+					line = reader.readLine();
+					continue; // Skip empty lines
+				}
+				List<Entry> path = new LinkedList<Entry>();
+				for (int i=0; i<this.lineSize; i++) {
+					Entry e = new Entry();
+					e.time = this.lineTimes[i];
+					e.x = this.lineXs[i];
+					e.y = this.lineYs[i];
+					path.add(e);
+				}
+				this.paths.get(this.lineId).add(path);
 
-			line = reader.readLine();
+				line = reader.readLine();
+			}
+			reader.close();
 		}
 
 		// Parse activity times
-		inFile = new File(activityFilePath);
-		reader = null;
-		zf = null;
-		try {
-			if (activityFilePath.endsWith(".zip")) {
-				// Grab the first entry from the zip file
-				// TODO: try to find the correct entry based on file name
-				zf = new ZipFile(activityFilePath);
-				ZipEntry ze = zf.entries().nextElement();
-				reader = new BufferedReader(
-						new InputStreamReader(zf.getInputStream(ze)));
-			} else {
-				reader = new BufferedReader(
-					new FileReader(activityFilePath));
-			}
-		} catch (FileNotFoundException e) {
-			throw new SettingsError("Couldn't find external activity input " +
-					"file " + inFile);
-		} finally {
-			if (zf != null) {
-				zf.close();
-			}
-		}
+		reader = openReader(activityFilePath, "activity");
 
 		// Init activity cache
 		this.activeTimes = new ArrayList<List<ActiveTime>>(this.maxID + 1);
@@ -244,7 +365,7 @@ public class ExternalPathMovementReader {
 		}
 
 		// Parse the file
-		line = reader.readLine();
+		String line = reader.readLine();
 		while (line != null) {
 			Scanner traceScan = new Scanner(line);
 			int id = traceScan.nextInt();
@@ -263,6 +384,284 @@ public class ExternalPathMovementReader {
 
 			line = reader.readLine();
 		}
+		reader.close();
+	}
+
+	/**
+	 * Opens a reader for a trace or activity file. Files ending in .zip are
+	 * uncompressed while reading and the first entry of the zip file is read.
+	 *
+	 * @param filePath	path to the file
+	 * @param type		type of the file for error messages
+	 * @return			reader for the file
+	 */
+	private static BufferedReader openReader(String filePath, String type)
+		throws IOException {
+		try {
+			if (filePath.endsWith(".zip")) {
+				// Grab the first entry from the zip file
+				// TODO: try to find the correct entry based on file name
+				ZipInputStream zin = new ZipInputStream(
+						new FileInputStream(filePath));
+				if (zin.getNextEntry() == null) {
+					zin.close();
+					throw new SettingsError("No entries in external " + type +
+							" input file " + filePath);
+				}
+				return new BufferedReader(new InputStreamReader(zin));
+			} else {
+				return new BufferedReader(new FileReader(filePath));
+			}
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find external " + type +
+					" input file " + filePath);
+		}
+	}
+
+	/**
+	 * Returns the uncompressed size of the first entry of a zip file
+	 *
+	 * @param filePath	path to the zip file
+	 * @return			size of the entry or -1 if not known
+	 */
+	private static long uncompressedSize(String filePath) throws IOException {
+		ZipFile zf = new ZipFile(filePath);
+		try {
+			return zf.entries().nextElement().getSize();
+		} finally {
+			zf.close();
+		}
+	}
+
+	/**
+	 * Parses a path line of the trace file to the line buffers.
+	 *
+	 * @param line	the line
+	 * @return		false if the line was empty, true if not
+	 */
+	private boolean parseLine(String line) {
+		int len = line.length();
+		int pos = skipWhitespace(line, 0);
+		if (pos == len) {
+			return false;
+		}
+
+		int end = skipToken(line, pos);
+		this.lineId = Integer.parseInt(line.substring(pos, end));
+		if (this.lineId < 0 || this.lineId > this.maxID) {
+			throw new SettingsError("Invalid ID " + this.lineId + " in " +
+					"external movement input file " + this.traceFilePath +
+					" (maxID is " + this.maxID + ")");
+		}
+
+		this.lineSize = 0;
+		pos = skipWhitespace(line, end);
+		while (pos < len) {
+			end = skipToken(line, pos);
+			int d1 = line.indexOf(',', pos);
+			int d2 = line.indexOf(',', d1+1);
+
+			if (this.lineSize == this.lineTimes.length) {
+				int n = this.lineSize * 2;
+				this.lineTimes = Arrays.copyOf(this.lineTimes, n);
+				this.lineXs = Arrays.copyOf(this.lineXs, n);
+				this.lineYs = Arrays.copyOf(this.lineYs, n);
+			}
+			double time = Double.parseDouble(line.substring(pos, d1));
+			double x = Double.parseDouble(line.substring(d1+1, d2));
+			double y = Double.parseDouble(line.substring(d2+1, end));
+
+			if (this.normalize) {
+				time -= this.minTime;
+				x -= this.minX;
+				y -= this.minY;
+			}
+			this.lineTimes[this.lineSize] = time;
+			this.lineXs[this.lineSize] = x;
+			this.lineYs[this.lineSize] = y;
+			this.lineSize++;
+
+			pos = skipWhitespace(line, end);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the first non-whitespace character at or after
+	 * the given index (or the length of the string)
+	 */
+	private static int skipWhitespace(String s, int pos) {
+		while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Returns the index of the first whitespace character at or after
+	 * the given index (or the length of the string)
+	 */
+	private static int skipToken(String s, int pos) {
+		while (pos < s.length() && !Character.isWhitespace(s.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Reads through the trace file once in the windowed mode to find the
+	 * initial locations of the nodes, and checks that the paths are sorted
+	 * by their start times.
+	 */
+	private void prescan() throws IOException {
+		this.initXs = new double[this.maxID + 1];
+		this.initYs = new double[this.maxID + 1];
+		Arrays.fill(this.initXs, Double.NaN);
+		Arrays.fill(this.initYs, Double.NaN);
+
+		BufferedReader reader = openReader(this.traceFilePath, "movement");
+		reader.readLine(); // skip the header
+		double lastStart = Double.NEGATIVE_INFINITY;
+		int lineNr = 1;
+		try {
+			for (String line = reader.readLine(); line != null;
+					line = reader.readLine()) {
+				lineNr++;
+				if (!parseLine(line) || this.lineSize == 0) {
+					continue;
+				}
+				if (this.lineTimes[0] < lastStart) {
+					throw new SettingsError("Paths of the external movement " +
+							"input file " + this.traceFilePath + " must be " +
+							"sorted by their start times when the trace is " +
+							"read in a window (line " + lineNr + ")");
+				}
+				lastStart = this.lineTimes[0];
+				if (Double.isNaN(this.initXs[this.lineId])) {
+					this.initXs[this.lineId] = this.lineXs[0];
+					this.initYs[this.lineId] = this.lineYs[0];
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the next non-empty path line in the windowed mode to the line
+	 * buffers. Closes the trace file when there are no more lines.
+	 */
+	private void readNextLine() throws IOException {
+		String line = this.traceReader.readLine();
+		while (line != null && (!parseLine(line) || this.lineSize == 0)) {
+			line = this.traceReader.readLine();
+		}
+		if (line == null) {
+			this.traceReader.close();
+			this.traceReader = null;
+		}
+	}
+
+	/**
+	 * Reads the paths that start at latest <code>lookahead</code> seconds
+	 * after the given time to the nodes' path windows. The paths of nodes
+	 * without a window are skipped. If dropping replaced paths is enabled,
+	 * the paths that a later path of the same node has replaced by the
+	 * given time are dropped. Only for the windowed mode.
+	 *
+	 * @param time	the current time
+	 */
+	public void advance(double time) {
+		try {
+			while (this.traceReader != null &&
+					this.lineTimes[0] <= time + this.lookahead) {
+				PathWindow w = this.windows[this.lineId];
+				if (w != null) { // skip the paths of nodes not in simulation
+					w.addPath(this.lineTimes, this.lineXs, this.lineYs,
+							this.lineSize);
+					if (this.dropReplaced) {
+						w.removeReplacedPaths(time);
+					}
+				}
+				readNextLine();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read external movement input " +
+					"file " + this.traceFilePath, e);
+		}
+	}
+
+	/**
+	 * Returns the start time of the next path that has not been read to the
+	 * path windows yet. Only for the windowed mode.
+	 *
+	 * @return	start time of the next unread path or Double.MAX_VALUE if
+	 * 			all the paths have been read
+	 */
+	public double getNextPathTime() {
+		return this.traceReader != null ? this.lineTimes[0] : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Creates a window for the read but not yet used paths of a node (or
+	 * returns the existing one). The paths are read only for the nodes that
+	 * have a window, so the windows must be created before the reader is
+	 * advanced. Only for the windowed mode.
+	 *
+	 * @param ID	ID of the node
+	 * @return		the path window of the node
+	 */
+	public PathWindow createPathWindow(int ID) {
+		if (this.windows[ID] == null) {
+			this.windows[ID] = new PathWindow();
+		}
+		return this.windows[ID];
+	}
+
+	/**
+	 * Returns the window of the read but not yet used paths of a node. Only
+	 * for the windowed mode.
+	 *
+	 * @param ID	ID of the node
+	 * @return		the path window of the node or null if the node has none
+	 */
+	public PathWindow getPathWindow(int ID) {
+		return this.windows[ID];
+	}
+
+	/**
+	 * Returns the first point of the first path of a node. Only for the
+	 * windowed mode.
+	 *
+	 * @param ID	ID of the node
+	 * @return		the initial location or null if there are no paths for
+	 * 				the node
+	 */
+	public Coord getInitialLocation(int ID) {
+		if (Double.isNaN(this.initXs[ID])) {
+			return null;
+		}
+		return new Coord(this.initXs[ID], this.initYs[ID]);
+	}
+
+	/**
+	 * Sets dropping of the paths that have been replaced by a later, already
+	 * started, path of the same node on/off. Applies to all the windows of
+	 * this reader. Default is off (all paths are kept until used).
+	 *
+	 * @param drop	If true, replaced paths are dropped
+	 */
+	public void setDropReplacedPaths(boolean drop) {
+		this.dropReplaced = drop;
+	}
+
+	/**
+	 * Returns true if the reader reads the trace in a window
+	 *
+	 * @return	true in the windowed mode, false if the whole trace is loaded
+	 */
+	public boolean isWindowed() {
+		return this.lookahead > 0;
 	}
 
 	/**
@@ -357,15 +756,51 @@ public class ExternalPathMovementReader {
 	 */
 	public static ExternalPathMovementReader getInstance(String traceFilePath,
 			String activeFilePath) {
-		if (!ExternalPathMovementReader.singletons.containsKey(traceFilePath)) {
+		return getInstance(traceFilePath, activeFilePath, 0);
+	}
+
+	/**
+	 * Get an instance of the reader for the given file path. With a positive
+	 * lookahead, the reader is in the windowed mode and the same instance is
+	 * returned until the simulation is reset.
+	 *
+	 * @param traceFilePath path where the trace file is read from
+	 * @param activeFilePath path where the activity file is read from
+	 * @param lookahead how far ahead of the sim time the paths are read in
+	 * 			the windowed mode (0 = the whole trace is loaded)
+	 * @return instance of the reader for the given trace file.
+	 */
+	public static ExternalPathMovementReader getInstance(String traceFilePath,
+			String activeFilePath, double lookahead) {
+		Map<String, ExternalPathMovementReader> readers = lookahead > 0 ?
+				windowedSingletons : singletons;
+		if (!readers.containsKey(traceFilePath)) {
 			try {
-				ExternalPathMovementReader.singletons.put(traceFilePath,
+				readers.put(traceFilePath,
 						new ExternalPathMovementReader(traceFilePath,
-								activeFilePath));
+								activeFilePath, lookahead));
 			} catch (IOException e) {
 				System.exit(1);
 			}
 		}
-		return ExternalPathMovementReader.singletons.get(traceFilePath);
+		return readers.get(traceFilePath);
+	}
+
+	/**
+	 * Closes and forgets the readers of the windowed mode.
+	 */
+	public static void reset() {
+		if (windowedSingletons != null) {
+			for (ExternalPathMovementReader r : windowedSingletons.values()) {
+				if (r.traceReader != null) {
+					try {
+						r.traceReader.close();
+					} catch (IOException e) {
+						// nothing to do; the reader is not used anymore
+					}
+				}
+			}
+		}
+		windowedSingletons = new HashMap<String, ExternalPathMovementReader>();
 	}
 }
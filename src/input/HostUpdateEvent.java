@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.World;
+
+/**
+ * A scheduled update request for a single host (e.g., when its message
+ * transfer is due to finish). Unlike other external events, only the
+ * host itself is updated.
+ */
+public class HostUpdateEvent extends ExternalEvent {
+	/** address of the node to update */
+	protected int address;
+
+	/**
+	 * Creates a new host update event
+	 * @param address Address of the node to update
+	 * @param time Time of the update
+	 */
+	public HostUpdateEvent(int address, double time) {
+		super(time);
+		this.address = address;
+	}
+
+	/**
+	 * Returns the address of the node to update
+	 * @return the address of the node
+	 */
+	public int getAddress() {
+		return this.address;
+	}
+
+	/**
+	 * Updates the node (without simulating its connections)
+	 */
+	@Override
+	public void processEvent(World world) {
+		world.getNodeByAddress(this.address).update(false);
+	}
+
+	@Override
+	public boolean updatesAllHosts() {
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "HOST_UPDATE @" + this.time + " " + this.address;
+	}
+}
@@ -5,39 +5,73 @@
 package input;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Event queue where simulation objects can request an update to happen
- * at the specified simulation time. Multiple updates at the same time
- * are merged to a single update.
+ * at the specified simulation time. The update can be for all hosts or
+ * for a single host (see {@link HostUpdateEvent}). Multiple updates at the
+ * same time are merged to a single update. The requests are kept in a
+ * binary heap so adding and removing them takes logarithmic time.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	/** Order of the requests: by time, updates for all hosts before the
+	 * updates of single hosts, and the single hosts by their address */
+	private static final Comparator<ExternalEvent> ORDER =
+		new Comparator<ExternalEvent>() {
+		public int compare(ExternalEvent e1, ExternalEvent e2) {
+			int c = e1.compareTo(e2);
+			if (c != 0) {
+				return c;
+			}
+			return Integer.compare(address(e1), address(e2));
+		}
+	};
+
+	/** The update requests */
+	private PriorityQueue<ExternalEvent> updates;
 
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.updates = new PriorityQueue<ExternalEvent>(11, ORDER);
+	}
+
+	/**
+	 * Returns the address of the host an update request is for
+	 * @param ee The update request
+	 * @return the address of the host or -1 if the request is for all hosts
+	 */
+	private static int address(ExternalEvent ee) {
+		return ee instanceof HostUpdateEvent ?
+				((HostUpdateEvent)ee).getAddress() : -1;
 	}
 
 	/**
 	 * Returns the next scheduled event or event with time Double.MAX_VALUE
-	 * if there aren't any.
+	 * if there aren't any. Requests that the returned event covers (same
+	 * time and same host or the event is for all hosts) are removed.
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
+		ExternalEvent event = this.updates.poll();
 
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
+		if (event == null) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+
+		boolean forAll = address(event) == -1;
+		while (!this.updates.isEmpty()) {
+			ExternalEvent next = this.updates.peek();
+			if (next.compareTo(event) != 0 ||
+					!(forAll || address(next) == address(event))) {
+				break;
+			}
+			this.updates.poll(); // merged to the returned event
 		}
 
 		return event;
@@ -49,55 +83,34 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		ExternalEvent next = this.updates.peek();
+		return next != null ? next.getTime() : Double.MAX_VALUE;
 	}
 
 	/**
-	 * Add a new update request for the given time
+	 * Add a new update request (for all hosts) for the given time
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
-		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
-		}
-		else { // given event happens later..
-			putToQueue(ee);
-		}
+		this.updates.add(new ExternalEvent(simTime));
 	}
 
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Add a new update request for a single host
+	 * @param simTime The time when the update should happen
+	 * @param address Address of the host to update
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
-			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
-			}
-		}
-
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);
+	public void addUpdate(double simTime, int address) {
+		this.updates.add(new HostUpdateEvent(address, simTime));
 	}
 
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(updates);
+		Collections.sort(events, ORDER);
+		String times = "updates @ " + nextEventsTime();
 
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i=1; i<events.size(); i++) {
+			times += ", " + events.get(i).getTime();
 		}
 
 		return times;
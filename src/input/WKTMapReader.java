@@ -5,13 +5,19 @@
 package input;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import movement.map.MapNode;
 import movement.map.SimMap;
@@ -22,6 +28,8 @@ import core.Coord;
  * <STRONG>Note</STRONG>: Understands only <CODE>LINESTRING</CODE>s and
  * <CODE>MULTILINESTRING</CODE>s. Skips all <CODE>POINT</CODE> data.
  * Other data causes IOException.
+ * Multiple files can be parsed in parallel with
+ * {@link #addPaths(List, int)}.
  */
 public class WKTMapReader extends WKTReader {
 	private Hashtable<Coord, MapNode> nodes;
@@ -78,9 +86,55 @@ public class WKTMapReader extends WKTReader {
 	 * @throws IOException If something went wrong while reading the file
 	 */
 	public void addPaths(File file, int type) throws IOException {
-		addPaths(new FileReader(file), type);
+		updateMap(parsePaths(WKTParser.open(file)), type);
 	}
 
+	/**
+	 * Adds paths from multiple files to the map. The files are parsed in
+	 * parallel but the paths are added to the map in the order of the files,
+	 * so the result is the same as calling {@link #addPaths(File, int)} for
+	 * each file in order.
+	 * @param files The files where the WKT data is read from
+	 * @param firstType The type to use for the nodes of the first file; the
+	 * nodes of the following files get the following types
+	 * @throws IOException If something went wrong while reading the files
+	 */
+	public void addPaths(List<File> files, int firstType) throws IOException {
+		List<Future<PathData>> results = new ArrayList<Future<PathData>>();
+		int nrofThreads = Math.min(files.size(),
+				Runtime.getRuntime().availableProcessors());
+
+		if (nrofThreads <= 1) {
+			for (int i=0; i<files.size(); i++) {
+				addPaths(files.get(i), firstType + i);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		try {
+			for (final File file : files) {
+				results.add(executor.submit(new Callable<PathData>() {
+					public PathData call() throws IOException {
+						return parsePaths(WKTParser.open(file));
+					}
+				}));
+			}
+
+			for (int i=0; i<results.size(); i++) {
+				updateMap(results.get(i).get(), firstType + i);
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while reading map files", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
 	/**
 	 * Add paths to current path set. Adding paths multiple times
@@ -91,37 +145,50 @@ public class WKTMapReader extends WKTReader {
 	 * @throws IOException if something went wrong with reading from the input
 	 */
 	public void addPaths(Reader input, int nodeType) throws IOException {
-		this.nodeType = nodeType;
-		String type;
-		String contents;
+		updateMap(parsePaths(WKTParser.open(input)), nodeType);
+	}
 
-		init(input);
+	/**
+	 * Parses all the LINESTRING and MULTILINESTRING paths of the data
+	 * @param parser The parser of the data
+	 * @return The paths that were parsed
+	 * @throws IOException if something went wrong with parsing the data
+	 */
+	private static PathData parsePaths(WKTParser parser) throws IOException {
+		PathData paths = new PathData();
+		String type;
 
-		while((type = nextType()) != null) {
-			if (type.equals(LINESTRING)) {
-				contents = readNestedContents();
-				updateMap(parseLineString(contents));
-			}
-			else if (type.equals(MULTILINESTRING)) {
-				for (List<Coord> list : parseMultilinestring()) {
-					updateMap(list);
+		while((type = parser.nextType()) != null) {
+			if (type.equals(LINESTRING) || type.equals(MULTILINESTRING)) {
+				parser.readContents();
+				for (int i=0, n=parser.getNrofLines(); i<n; i++) {
+					paths.addPath(parser, parser.getLineStart(i),
+							parser.getLineEnd(i));
 				}
 			}
 			else {
 				// known type but not interesting -> skip
-				readNestedContents();
+				parser.skipContents();
 			}
 		}
+
+		return paths;
 	}
 
 	/**
-	 * Updates simulation map with coordinates in the list
-	 * @param coords The list of coordinates
+	 * Updates simulation map with the paths
+	 * @param paths The paths
+	 * @param nodeType The type to use for the nodes
 	 */
-	private void updateMap(List<Coord> coords) {
-		MapNode previousNode = null;
-		for (Coord c : coords) {
-			previousNode = createOrUpdateNode(c, previousNode);
+	private void updateMap(PathData paths, int nodeType) {
+		this.nodeType = nodeType;
+		for (int i=0; i<paths.nrofPaths; i++) {
+			MapNode previousNode = null;
+			for (int j = i == 0 ? 0 : paths.pathEnds[i-1];
+					j < paths.pathEnds[i]; j++) {
+				previousNode = createOrUpdateNode(
+						new Coord(paths.xs[j], paths.ys[j]), previousNode);
+			}
 		}
 	}
 
@@ -156,4 +223,41 @@ public class WKTMapReader extends WKTReader {
 		return n;
 	}
 
+	/**
+	 * Coordinates of the paths parsed from WKT data
+	 */
+	private static class PathData {
+		private double[] xs = new double[64];
+		private double[] ys = new double[64];
+		private int nrofCoords;
+		/** End indexes (exclusive) of the paths' coordinates */
+		private int[] pathEnds = new int[8];
+		private int nrofPaths;
+
+		/**
+		 * Adds a path from the latest contents read by a parser
+		 * @param parser The parser
+		 * @param start Index of the path's first coordinate in the parser
+		 * @param end Index after the path's last coordinate in the parser
+		 */
+		private void addPath(WKTParser parser, int start, int end) {
+			int length = end - start;
+			if (nrofCoords + length > xs.length) {
+				int size = Math.max(xs.length * 2, nrofCoords + length);
+				xs = Arrays.copyOf(xs, size);
+				ys = Arrays.copyOf(ys, size);
+			}
+			for (int i=start; i<end; i++) {
+				xs[nrofCoords] = parser.getX(i);
+				ys[nrofCoords] = parser.getY(i);
+				nrofCoords++;
+			}
+
+			if (nrofPaths == pathEnds.length) {
+				pathEnds = Arrays.copyOf(pathEnds, nrofPaths * 2);
+			}
+			pathEnds[nrofPaths++] = nrofCoords;
+		}
+	}
+
 }
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for "Well-known text syntax" data. The data is read
+ * from a byte buffer (e.g., a memory-mapped file) without creating
+ * intermediate strings, and the coordinates are parsed directly into
+ * primitive arrays. Numbers are parsed with a fast path for decimal
+ * numbers that are exactly representable as a ratio of two doubles; other
+ * numbers are parsed with {@link Double#parseDouble(String)} so the values
+ * are always the same as with it.
+ * <P>Usage: call {@link #nextType()} to get the type of the next statement
+ * and then either {@link #readContents()} to parse its coordinates or
+ * {@link #skipContents()} to skip it.</P>
+ */
+public class WKTParser {
+	/** Exactly representable powers of ten */
+	private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6,
+		1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+		1e19, 1e20, 1e21, 1e22};
+	/** Maximum number of significant digits for the fast path */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	/** The data */
+	private final ByteBuffer buf;
+	/** Current position in the data */
+	private int pos;
+	/** End of the data */
+	private final int limit;
+
+	/** X coordinates of the latest read contents */
+	private double[] xs;
+	/** Y coordinates of the latest read contents */
+	private double[] ys;
+	/** Number of coordinates read */
+	private int nrofCoords;
+	/** End indexes (exclusive) of the coordinate lists (lines) read */
+	private int[] lineEnds;
+	/** Number of coordinate lists read */
+	private int nrofLines;
+
+	/**
+	 * Creates a parser for the data in a buffer
+	 * @param buf The buffer with the data between its position and limit
+	 */
+	public WKTParser(ByteBuffer buf) {
+		this.buf = buf;
+		this.pos = buf.position();
+		this.limit = buf.limit();
+		this.xs = new double[64];
+		this.ys = new double[64];
+		this.lineEnds = new int[8];
+	}
+
+	/**
+	 * Creates a parser for the data in a file. The file is memory-mapped.
+	 * @param file The file
+	 * @return A parser for the file's data
+	 * @throws IOException if the file couldn't be read
+	 */
+	public static WKTParser open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			return new WKTParser(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		} finally {
+			raf.close(); // the mapping stays valid after closing
+		}
+	}
+
+	/**
+	 * Creates a parser for all the data in a reader. The reader is read
+	 * until its end but it is not closed.
+	 * @param input The reader
+	 * @return A parser for the data
+	 * @throws IOException if the data couldn't be read
+	 */
+	public static WKTParser open(Reader input) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] chars = new char[8192];
+		int n;
+		while ((n = input.read(chars)) > 0) {
+			sb.append(chars, 0, n);
+		}
+		return new WKTParser(ByteBuffer.wrap(
+				sb.toString().getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	/**
+	 * Returns the next type (whitespace delimited word) of the data
+	 * @return The type or null if there are no more types
+	 */
+	public String nextType() {
+		skipWhitespace();
+		int start = pos;
+		while (pos < limit && !isWhitespace(buf.get(pos))) {
+			pos++;
+		}
+
+		if (start == pos) {
+			return null;
+		}
+		byte[] word = new byte[pos - start];
+		for (int i=0; i<word.length; i++) {
+			word[i] = buf.get(start + i);
+		}
+		return new String(word, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Skips the (nested) contents between the next opening parenthesis and
+	 * the matching closing parenthesis
+	 */
+	public void skipContents() {
+		if (!skipUntil('(')) {
+			return;
+		}
+		int parOpen = 1;
+		while (pos < limit && parOpen > 0) {
+			byte c = buf.get(pos++);
+			if (c == '(') {
+				parOpen++;
+			}
+			else if (c == ')') {
+				parOpen--;
+			}
+		}
+	}
+
+	/**
+	 * Parses the coordinates of the contents between the next opening
+	 * parenthesis and the matching closing parenthesis. The coordinates are
+	 * comma separated tuples whose first two numbers are the x and y
+	 * coordinates. Each parenthesized list of tuples (e.g., the lines of a
+	 * MULTILINESTRING) is a separate line; if there are no nested lists,
+	 * all the coordinates are on one line.
+	 * @throws IOException if the contents couldn't be parsed
+	 */
+	public void readContents() throws IOException {
+		nrofCoords = 0;
+		nrofLines = 0;
+
+		if (!skipUntil('(')) {
+			return;
+		}
+		skipWhitespace();
+		if (pos < limit && buf.get(pos) == '(') { // nested lists
+			while (skipUntil('(')) {
+				readCoordList();
+				skipWhitespace();
+				if (pos < limit && buf.get(pos) == ',') {
+					pos++; // more lists follow
+				}
+				else {
+					skipUntil(')'); // end of the outer list
+					break;
+				}
+			}
+		}
+		else {
+			readCoordList();
+		}
+	}
+
+	/**
+	 * Parses a list of coordinate tuples until the closing parenthesis
+	 * @throws IOException if the coordinates couldn't be parsed
+	 */
+	private void readCoordList() throws IOException {
+		while (true) {
+			double x = parseNumber();
+			double y = parseNumber();
+			addCoord(x, y);
+
+			// skip any extra values of the tuple
+			while (pos < limit && buf.get(pos) != ',' && buf.get(pos) != ')') {
+				pos++;
+			}
+			if (pos >= limit) {
+				throw new IOException("Unexpected end of coordinate data");
+			}
+			if (buf.get(pos++) == ')') {
+				break;
+			}
+		}
+
+		if (nrofLines == lineEnds.length) {
+			lineEnds = Arrays.copyOf(lineEnds, nrofLines * 2);
+		}
+		lineEnds[nrofLines++] = nrofCoords;
+	}
+
+	/**
+	 * Adds a coordinate to the coordinate arrays
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	private void addCoord(double x, double y) {
+		if (nrofCoords == xs.length) {
+			xs = Arrays.copyOf(xs, nrofCoords * 2);
+			ys = Arrays.copyOf(ys, nrofCoords * 2);
+		}
+		xs[nrofCoords] = x;
+		ys[nrofCoords] = y;
+		nrofCoords++;
+	}
+
+	/**
+	 * Parses the next number
+	 * @return The number
+	 * @throws IOException if there was no valid number
+	 */
+	private double parseNumber() throws IOException {
+		skipWhitespace();
+		int start = pos;
+		boolean negative = false;
+		long significand = 0;
+		int digits = 0; // significant digits (without leading zeros)
+		int exponent = 0;
+		boolean fast = true;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+
+		if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+			negative = buf.get(pos) == '-';
+			pos++;
+		}
+
+		for (; pos < limit; pos++) {
+			byte c = buf.get(pos);
+			if (c >= '0' && c <= '9') {
+				seenDigit = true;
+				if (digits > 0 || c != '0') {
+					if (++digits > MAX_FAST_DIGITS) {
+						fast = false;
+					}
+					significand = significand * 10 + (c - '0');
+				}
+				if (seenPoint) {
+					exponent--;
+				}
+			}
+			else if (c == '.' && !seenPoint) {
+				seenPoint = true;
+			}
+			else {
+				break;
+			}
+		}
+
+		if (pos < limit && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+			pos++;
+			boolean negExp = false;
+			if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+				negExp = buf.get(pos) == '-';
+				pos++;
+			}
+			int exp = 0;
+			int expStart = pos;
+			while (pos < limit && buf.get(pos) >= '0' && buf.get(pos) <= '9') {
+				exp = Math.min(exp * 10 + (buf.get(pos) - '0'), 100000);
+				pos++;
+			}
+			if (expStart == pos) {
+				fast = false;
+			}
+			exponent += negExp ? -exp : exp;
+		}
+
+		// anything else than a delimiter after the number -> slow path
+		while (pos < limit && !isWhitespace(buf.get(pos)) &&
+				buf.get(pos) != ',' && buf.get(pos) != ')') {
+			fast = false;
+			pos++;
+		}
+
+		if (fast && seenDigit && exponent >= -22 && exponent <= 22) {
+			/* both values are exact -> the result is correctly rounded */
+			double value = (double)significand;
+			value = exponent < 0 ? value / POW10[-exponent] :
+				value * POW10[exponent];
+			return negative ? -value : value;
+		}
+
+		byte[] token = new byte[pos - start];
+		for (int i=0; i<token.length; i++) {
+			token[i] = buf.get(start + i);
+		}
+		String s = new String(token, StandardCharsets.ISO_8859_1);
+		try {
+			return Double.parseDouble(s);
+		} catch (NumberFormatException e) {
+			throw new IOException("Bad coordinate value: '" + s + "'");
+		}
+	}
+
+	/**
+	 * Skips data until the given character (which is also skipped)
+	 * @param c The character
+	 * @return true if the character was found, false if the end of data was
+	 * reached
+	 */
+	private boolean skipUntil(char c) {
+		while (pos < limit) {
+			if (buf.get(pos++) == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skips all whitespace characters at the current position
+	 */
+	private void skipWhitespace() {
+		while (pos < limit && isWhitespace(buf.get(pos))) {
+			pos++;
+		}
+	}
+
+	/**
+	 * Returns true if the character is whitespace
+	 * @param c The character
+	 * @return true for whitespace characters
+	 */
+	private static boolean isWhitespace(byte c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' ||
+			c == '\f' || c == 0x0b || (c >= 0x1c && c <= 0x1f);
+	}
+
+	/**
+	 * Returns the number of coordinate lists (lines) read by the latest
+	 * {@link #readContents()} call
+	 * @return The number of lines
+	 */
+	public int getNrofLines() {
+		return nrofLines;
+	}
+
+	/**
+	 * Returns the index of the first coordinate of a line
+	 * @param line Index of the line
+	 * @return Index of the first coordinate
+	 */
+	public int getLineStart(int line) {
+		return line == 0 ? 0 : lineEnds[line - 1];
+	}
+
+	/**
+	 * Returns the index after the last coordinate of a line
+	 * @param line Index of the line
+	 * @return Index after the last coordinate
+	 */
+	public int getLineEnd(int line) {
+		return lineEnds[line];
+	}
+
+	/**
+	 * Returns the number of coordinates read by the latest
+	 * {@link #readContents()} call
+	 * @return The number of coordinates
+	 */
+	public int getNrofCoords() {
+		return nrofCoords;
+	}
+
+	/**
+	 * Returns an x coordinate read by the latest {@link #readContents()} call
+	 * @param index Index of the coordinate
+	 * @return The x coordinate
+	 */
+	public double getX(int index) {
+		return xs[index];
+	}
+
+	/**
+	 * Returns a y coordinate read by the latest {@link #readContents()} call
+	 * @param index Index of the coordinate
+	 * @return The y coordinate
+	 */
+	public double getY(int index) {
+		return ys[index];
+	}
+}
@@ -73,6 +73,11 @@ public class BusMovement extends MapRouteMovement {
 		return path;
 	}
 
+	@Override
+	public boolean canPrecomputePaths() {
+		return false; // depends on the bus control system
+	}
+
 	@Override
 	public BusMovement replicate() {
 		return new BusMovement(this);
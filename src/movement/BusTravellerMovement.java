@@ -7,8 +7,8 @@ package movement;
 import java.util.List;
 import java.util.Random;
 
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.ShortestPathCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -45,7 +45,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	private ContinueBusTripDecider cbtd;
 	private double[] probabilities;
 	private double probTakeOtherBus;
-	private DijkstraPathFinder pathFinder;
+	private ShortestPathCache pathFinder;
 
 	private Coord startBusStop;
 	private Coord endBusStop;
@@ -73,7 +73,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			probTakeOtherBus = settings.getDouble(PROBABILITY_TAKE_OTHER_BUS);
 		}
 		cbtd = new ContinueBusTripDecider(rng, probabilities);
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = getPathFinder(null, false);
 		takeBus = true;
 	}
 
@@ -122,8 +122,8 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			return null;
 		} else if (state == STATE_DECIDED_TO_ENTER_A_BUS) {
 			state = STATE_TRAVELLING_ON_BUS;
-			List<Coord> coords = nextPath.getCoords();
-			location = (coords.get(coords.size() - 1)).clone();
+			int last = nextPath.getNrofWaypoints() - 1;
+			location = new Coord(nextPath.getX(last), nextPath.getY(last));
 			return nextPath;
 		} else if (state == STATE_WALKING_ELSEWHERE) {
 			// Try to find back to the bus stop
@@ -162,6 +162,11 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return 0;
 	}
 
+	@Override
+	public boolean canPrecomputePaths() {
+		return false; // depends on the bus control system
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new BusTravellerMovement(this);
@@ -6,8 +6,8 @@ package movement;
 
 import java.util.List;
 
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.ShortestPathCache;
 import core.Coord;
 import core.Settings;
 
@@ -22,7 +22,7 @@ public class CarMovement extends MapBasedMovement implements
 	private Coord from;
 	private Coord to;
 
-	private DijkstraPathFinder pathFinder;
+	private ShortestPathCache pathFinder;
 
 	/**
 	 * Car movement constructor
@@ -30,7 +30,7 @@ public class CarMovement extends MapBasedMovement implements
 	 */
 	public CarMovement(Settings settings) {
 		super(settings);
-		pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		pathFinder = getPathFinder(getOkMapNodeTypes(), false);
 	}
 
 	/**
@@ -70,6 +70,11 @@ public class CarMovement extends MapBasedMovement implements
 		return path;
 	}
 
+	@Override
+	public boolean canPrecomputePaths() {
+		return false; // the destinations are set by the controlling model
+	}
+
 	/**
 	 * @see SwitchableMovement
 	 * @return true
@@ -10,8 +10,8 @@ import java.io.File;
 import java.util.LinkedList;
 import java.util.List;
 
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.ShortestPathCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -48,7 +48,7 @@ public class EveningActivityMovement extends MapBasedMovement
 
 	private int mode;
 	private boolean ready;
-	private DijkstraPathFinder pathFinder;
+	private ShortestPathCache pathFinder;
 
 	private Coord lastWaypoint;
 	private Coord startAtLocation;
@@ -72,7 +72,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	public EveningActivityMovement(Settings settings) {
 		super(settings);
 		super.backAllowed = false;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = getPathFinder(null, false);
 		mode = WALKING_TO_MEETING_SPOT_MODE;
 
 		nrOfMeetingSpots = settings.getInt(NR_OF_MEETING_SPOTS_SETTING);
@@ -222,6 +222,11 @@ public class EveningActivityMovement extends MapBasedMovement
 		}
 	}
 
+	@Override
+	public boolean canPrecomputePaths() {
+		return false; // depends on the other members of the group
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new EveningActivityMovement(this);
@@ -4,8 +4,11 @@
  */
 package movement;
 
+import input.BinaryMovementTrace;
 import input.ExternalMovementReader;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,10 +20,16 @@ import util.Tuple;
 import core.Coord;
 import core.DTNSim;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
+import core.SimError;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The data can be
+ * in the text format of {@link ExternalMovementReader} or in the binary
+ * format of {@link BinaryMovementTrace} (detected from the file's content).
+ * With a binary file, reading starts directly from the time instance where
+ * the simulation (or its movement warmup) starts.
  */
 public class ExternalMovement extends MovementModel {
 	/** Namespace for settings */
@@ -29,14 +38,27 @@ public class ExternalMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** trace time of simulation time 0 -setting id ({@value}). Location data
+	 * before this time (and the movement warmup period) is skipped.
+	 * Default = 0 */
+	public static final String START_TIME_S = "startTime";
 
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
+	/** reader of a binary trace (null if the trace is in text format) */
+	private static BinaryMovementTrace binaryReader;
 	private static String inputFileName;
 
 	/** mapping of external id to movement model */
 	private static Map<String, ExternalMovement> idMapping;
+	/** movement models by the ids of the binary trace (null if not mapped) */
+	private static ExternalMovement[] idModels;
+	/** trace time of simulation time 0 */
+	private static double startTime;
+	/** size of the trace area */
+	private static double sizeX;
+	private static double sizeY;
 	/** initial locations for nodes */
 	private static List<Tuple<String, Coord>> initLocations;
 	/** time of the very first location data */
@@ -82,10 +104,24 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			startTime = s.getDouble(START_TIME_S, 0);
+			/* skip the data before the start (of the warmup, if any) */
+			double seekTime = startTime + SimClock.getTime();
 
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
+			if (BinaryMovementTrace.isBinary(new File(inputFileName))) {
+				openBinaryTrace(seekTime);
+			}
+			else {
+				reader = new ExternalMovementReader(inputFileName);
+				initLocations = reader.readNextMovements();
+				while (initLocations.size() > 0 &&
+						reader.getLastTimeStamp() < seekTime) {
+					initLocations = reader.readNextMovements();
+				}
+				initTime = reader.getLastTimeStamp() - startTime;
+				sizeX = reader.getMaxX() - reader.getMinX();
+				sizeY = reader.getMaxY() - reader.getMinY();
+			}
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 
@@ -99,6 +135,25 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 
+	/**
+	 * Opens the binary trace file and reads the initial locations from the
+	 * first time instance at or after the seek time.
+	 * @param seekTime The (normalized) trace time to start reading from
+	 */
+	private static void openBinaryTrace(double seekTime) {
+		try {
+			binaryReader = new BinaryMovementTrace(new File(inputFileName));
+			binaryReader.seek(seekTime);
+			initLocations = binaryReader.readNextMovements();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read external movement " +
+					"data from " + inputFileName, e);
+		}
+		initTime = binaryReader.getLastTimeStamp() - startTime;
+		sizeX = binaryReader.getMaxX() - binaryReader.getMinX();
+		sizeY = binaryReader.getMaxY() - binaryReader.getMinY();
+	}
+
 	/**
 	 * Copy constructor. Gives out location data for the new node from
 	 * location queue.
@@ -224,12 +279,12 @@ public class ExternalMovement extends MovementModel {
 
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return (int)sizeX + 1;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return (int)sizeY + 1;
 	}
 
 
@@ -244,8 +299,12 @@ public class ExternalMovement extends MovementModel {
 	 * were read.
 	 */
 	private static double readMorePaths() {
+		if (binaryReader != null) {
+			return readMoreBinaryPaths();
+		}
+
 		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		double time = reader.getLastTimeStamp() - startTime;
 
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
@@ -267,11 +326,62 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 
+	/**
+	 * Reads paths for the next time instance from the binary trace. The
+	 * models are looked up by the integer ids of the trace.
+	 * @return The time stamp of the reading or Double.NaN if no movements
+	 * were read.
+	 */
+	private static double readMoreBinaryPaths() {
+		int n;
+		try {
+			n = binaryReader.readNextBlock();
+		} catch (IOException e) {
+			throw new SimError("Couldn't read external movement data from " +
+					inputFileName, e);
+		}
+		double time = binaryReader.getLastTimeStamp() - startTime;
+
+		if (samplingInterval == -1) {
+			samplingInterval = time - initTime;
+		}
+		if (idModels == null) {
+			idModels = new ExternalMovement[binaryReader.getNrofIds()];
+			for (int i=0; i<idModels.length; i++) {
+				idModels[i] = idMapping.get(binaryReader.getIdName(i));
+			}
+		}
+
+		for (int i=0; i<n; i++) {
+			ExternalMovement em = idModels[binaryReader.getId(i)];
+			if (em != null) { // skip unknown IDs
+				em.addLocation(new Coord(binaryReader.getX(i),
+						binaryReader.getY(i)), time);
+			}
+		}
+
+		if (n > 0) {
+			return time;
+		}
+		else {
+			return Double.NaN;
+		}
+	}
+
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
 		idMapping = null;
+		idModels = null;
+		if (binaryReader != null) {
+			try {
+				binaryReader.close();
+			} catch (IOException e) {
+				// nothing to do; the trace is not used anymore
+			}
+			binaryReader = null;
+		}
 	}
 
 }
@@ -25,19 +25,42 @@ public class ExternalPathMovement extends MovementModel {
 	public static final String MOVEMENT_FILE_S = "traceFile";
 	/** activity file's path -setting id ({@value})*/
 	public static final String ACTIVITY_FILE_S = "activeFile";
+	/** how many seconds of upcoming paths are read at a time -setting id
+	 * ({@value}). If set, the trace is read in a window as the simulation
+	 * advances instead of loading it all at once (see
+	 * <code>ExternalPathMovementReader</code>). Default = 0 (whole trace
+	 * is loaded). */
+	public static final String LOOKAHEAD_S = "traceLookahead";
+	/** drop paths that a later, already started, path has replaced -setting
+	 * id ({@value}). Boolean. If true, a node that falls behind its trace
+	 * (e.g., because it was inactive) skips to its latest started path
+	 * instead of following all the paths in order, and the windowed mode
+	 * doesn't keep the skipped paths in memory. Default = false. */
+	public static final String DROP_REPLACED_S = "dropReplacedPaths";
 
 	// Settings
 	private String traceFile;
 	private String activeFile;
+	private double lookahead;
+	private boolean dropReplaced;
 
 	// Node's paths
 	private List<List<ExternalPathMovementReader.Entry>> paths;
 	private int curPath=0;
 	private List<ExternalPathMovementReader.ActiveTime> active;
+	// Reader and the node's upcoming paths in the windowed mode
+	private ExternalPathMovementReader reader;
+	private ExternalPathMovementReader.PathWindow window;
+	// Points of the path that is started next
+	private double[] times;
+	private double[] xs;
+	private double[] ys;
 
 	public ExternalPathMovement(Settings settings) {
 		this.traceFile = settings.getSetting(MOVEMENT_FILE_S);
 		this.activeFile = settings.getSetting(ACTIVITY_FILE_S);
+		this.lookahead = settings.getDouble(LOOKAHEAD_S, 0);
+		this.dropReplaced = settings.getBoolean(DROP_REPLACED_S, false);
 	}
 
 	/**
@@ -48,6 +71,8 @@ public class ExternalPathMovement extends MovementModel {
 	public ExternalPathMovement(ExternalPathMovement mm) {
 		this.traceFile = mm.traceFile;
 		this.activeFile = mm.activeFile;
+		this.lookahead = mm.lookahead;
+		this.dropReplaced = mm.dropReplaced;
 	}
 
 	/**
@@ -58,8 +83,16 @@ public class ExternalPathMovement extends MovementModel {
 		// Get paths for this node
 		ExternalPathMovementReader reader =
 			ExternalPathMovementReader.getInstance(this.traceFile,
-					this.activeFile);
-		this.paths = reader.getPaths(getHost().getAddress());
+					this.activeFile, this.lookahead);
+		if (reader.isWindowed()) {
+			this.reader = reader;
+			this.window = reader.createPathWindow(getHost().getAddress());
+			if (this.dropReplaced) {
+				reader.setDropReplacedPaths(true);
+			}
+		} else {
+			this.paths = reader.getPaths(getHost().getAddress());
+		}
 		this.active = reader.getActive(getHost().getAddress());
 	}
 
@@ -88,47 +121,98 @@ public class ExternalPathMovement extends MovementModel {
 			return null;
 		}
 
-		// Check whether we're moving or waiting for the next path to start
+		// Check whether we're moving or waiting for the next path to start.
+		// If enabled, paths that have been replaced by a later, already
+		// started, path are skipped.
 		double t = SimClock.getTime();
-		if (t < this.paths.get(this.curPath).get(0).time) {
-			return null;
+		int size;
+		if (this.window != null) {
+			ExternalPathMovementReader.PathWindow w = this.window;
+			this.reader.advance(t);
+			if (this.dropReplaced) {
+				w.removeReplacedPaths(t);
+			}
+			if (!w.hasPath() || t < w.getTime(0)) {
+				return null;
+			}
+
+			size = w.getPathSize();
+			ensurePointCapacity(size);
+			for (int i=0; i < size; i++) {
+				this.times[i] = w.getTime(i);
+				this.xs[i] = w.getX(i);
+				this.ys[i] = w.getY(i);
+			}
+			w.removePath();
+		} else {
+			while (this.dropReplaced && this.curPath + 1 < this.paths.size() &&
+					this.paths.get(this.curPath + 1).get(0).time <= t) {
+				this.curPath++;
+			}
+			if (this.curPath >= this.paths.size() ||
+					t < this.paths.get(this.curPath).get(0).time) {
+				return null;
+			}
+
+			List<ExternalPathMovementReader.Entry> path =
+				this.paths.get(this.curPath);
+			this.curPath++;
+			size = path.size();
+			ensurePointCapacity(size);
+			int i = 0;
+			for (ExternalPathMovementReader.Entry e : path) {
+				this.times[i] = e.time;
+				this.xs[i] = e.x;
+				this.ys[i] = e.y;
+				i++;
+			}
 		}
 
-		// Get the path
-		List<ExternalPathMovementReader.Entry> path =
-			this.paths.get(this.curPath);
-		this.curPath++;
+		return startPath(size);
+	}
 
-		// Drop the node to the the beginning of the new path in case the
+	/**
+	 * Makes sure the point buffers can hold a path of the given size
+	 * @param size Number of points in the path
+	 */
+	private void ensurePointCapacity(int size) {
+		if (this.times == null || this.times.length < size) {
+			int n = Math.max(size, 16);
+			this.times = new double[n];
+			this.xs = new double[n];
+			this.ys = new double[n];
+		}
+	}
+
+	/**
+	 * Moves the node to the beginning of the path in the point buffers and
+	 * returns the path.
+	 * @param size Number of points in the path
+	 * @return The path
+	 */
+	private Path startPath(int size) {
+		// Drop the node to the beginning of the new path in case the
 		// previous path ended somewhere else.
 		Coord curPos = super.getHost().getLocation();
-		ExternalPathMovementReader.Entry pathStart = path.get(0);
-		if (curPos.getX() != pathStart.x ||
-				curPos.getY() != pathStart.y) {
-			Coord c = new Coord(pathStart.x, pathStart.y);
-			super.getHost().setLocation(c);
+		if (curPos.getX() != this.xs[0] || curPos.getY() != this.ys[0]) {
+			super.getHost().setLocation(new Coord(this.xs[0], this.ys[0]));
 		}
 
-		// If this is a stationary path, return only the fist point
-		if (path.size() == 1) {
+		// If this is a stationary path, return only the first point
+		if (size == 1) {
 			Path p = new Path(0);
-			ExternalPathMovementReader.Entry e = path.get(0);
-			Coord c = new Coord(e.x, e.y);
-			p.addWaypoint(c);
+			p.addWaypoint(this.xs[0], this.ys[0]);
 			return p;
 		}
 
 		// Build and return the whole path at once
 		Path p = new Path();
-		for (int i=1; i < path.size(); i++) {
-			ExternalPathMovementReader.Entry e = path.get(i);
-			ExternalPathMovementReader.Entry e2 = path.get(i-1);
-			Coord c = new Coord(e.x, e.y);
-			double dt = e.time - e2.time;
-			double ds = Math.sqrt( (e.x - e2.x) * (e.x - e2.x) +
-					(e.y - e2.y) * (e.y - e2.y));
-			double v = ds/dt;
-			p.addWaypoint(c, v);
+		for (int i=1; i < size; i++) {
+			double dt = this.times[i] - this.times[i-1];
+			double dx = this.xs[i] - this.xs[i-1];
+			double dy = this.ys[i] - this.ys[i-1];
+			double ds = Math.sqrt(dx * dx + dy * dy);
+			p.addWaypoint(this.xs[i], this.ys[i], ds/dt);
 		}
 
 		return p;
@@ -136,6 +220,11 @@ public class ExternalPathMovement extends MovementModel {
 
 	@Override
 	public Coord getInitialLocation() {
+		if (this.window != null) {
+			Coord c = this.reader.getInitialLocation(getHost().getAddress());
+			return c != null ? c : new Coord(0.0, 0.0);
+		}
+
 		// Return the first point of the first path
 		if (this.paths.size() > 0 &&
 				this.paths.get(0).size() > 0) {
@@ -154,6 +243,13 @@ public class ExternalPathMovement extends MovementModel {
 
 	@Override
 	public double nextPathAvailable() {
+		if (this.window != null) {
+			// the window is not advanced here since this is called already
+			// when the hosts are created, before all of them have windows;
+			// the next path starts at earliest when the next unread one does
+			return this.window.hasPath() ? this.window.getTime(0) :
+				this.reader.getNextPathTime();
+		}
 		if (this.curPath < this.paths.size())
 			return this.paths.get(this.curPath).get(0).time;
 		else
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import input.BinaryMapFile;
 import input.WKTMapReader;
 
 import java.io.File;
@@ -15,9 +16,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
 
+import movement.map.MapGraph;
 import movement.map.MapNode;
+import movement.map.ShortestPathCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -55,6 +57,31 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	 */
 	public static final String MAP_SELECT_S = "okMaps";
 
+	/**
+	 * Maximum number of shortest paths to cache per map -setting id
+	 * ({@value}). The cache is shared by all the movement models that use the
+	 * same map. Default = {@value #DEF_PATH_CACHE_SIZE}.
+	 */
+	public static final String PATH_CACHE_SIZE_S = "pathCacheSize";
+	/** Default value for the {@link #PATH_CACHE_SIZE_S} setting */
+	public static final int DEF_PATH_CACHE_SIZE = 10000;
+	/**
+	 * Number of landmark nodes used for the A* heuristic of shortest path
+	 * searches -setting id ({@value}). The paths are equally short but, when
+	 * there are multiple shortest paths, a different one may be chosen than
+	 * with plain Dijkstra. Default = 0 (no landmarks).
+	 */
+	public static final String NROF_LANDMARKS_S = "nrofLandmarks";
+	/**
+	 * Directory for compiled map files -setting id ({@value}). If set, the
+	 * map is read from a compiled (binary) map file in this directory if
+	 * one exists for the same map files (names, sizes and modification
+	 * times); otherwise the map is read from the map files and a compiled
+	 * map file is written. Default = no compiled map files.
+	 * @see input.BinaryMapFile
+	 */
+	public static final String MAP_CACHE_DIR_S = "mapCacheDir";
+
 	/** the indexes of the OK map files or null if all maps are OK */
 	private int [] okMapNodeTypes;
 
@@ -177,57 +204,74 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return okMapNodeTypes;
 	}
 
+	/**
+	 * Returns the shortest path finder for this movement model's map. The
+	 * finder (and its path cache) is shared by all movement models that use
+	 * the same map with the same parameters.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useHeuristic If true, the A* heuristic is used in the searches
+	 * @return The shortest path finder
+	 * @see #PATH_CACHE_SIZE_S
+	 * @see #NROF_LANDMARKS_S
+	 */
+	protected ShortestPathCache getPathFinder(int[] okMapNodes,
+			boolean useHeuristic) {
+		Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
+		int cacheSize = settings.getInt(PATH_CACHE_SIZE_S,
+				DEF_PATH_CACHE_SIZE);
+		int nrofLandmarks = settings.getInt(NROF_LANDMARKS_S, 0);
+
+		return map.getShortestPathCache(okMapNodes, useHeuristic, cacheSize,
+				nrofLandmarks);
+	}
+
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
-		MapNode curNode = lastMapNode;
-		MapNode prevNode = lastMapNode;
-		MapNode nextNode = null;
-		List<MapNode> neighbors;
-		Coord nextCoord;
-
 		assert lastMapNode != null: "Tried to get a path before placement";
 
+		Path p = new Path(generateSpeed());
+		MapGraph graph = map.getGraph();
+		int okTypes = MapGraph.getTypeMask(okMapNodeTypes);
+		int curNode = graph.indexOf(lastMapNode);
+		int prevNode = curNode;
+		int nextNode;
+		int[] candidates = new int[graph.getMaxDegree()];
+
 		// start paths from current node
-		p.addWaypoint(curNode.getLocation());
+		p.addWaypoint(lastMapNode.getLocation());
 
 		int pathLength = rng.nextInt(maxPathLength-minPathLength) +
 			minPathLength;
 
 		for (int i=0; i<pathLength; i++) {
-			neighbors = curNode.getNeighbors();
-			Vector<MapNode> n2 = new Vector<MapNode>(neighbors);
-			if (!this.backAllowed) {
-				n2.remove(prevNode); // to prevent going back
-			}
-
-			if (okMapNodeTypes != null) { //remove neighbor nodes that aren't ok
-				for (int j=0; j < n2.size(); ){
-					if (!n2.get(j).isType(okMapNodeTypes)) {
-						n2.remove(j);
-					}
-					else {
-						j++;
-					}
+			/* collect the OK neighbors (but not the previous node, to
+			 * prevent going back, unless it's allowed) */
+			int nrofCandidates = 0;
+			for (int e = graph.getFirstEdge(curNode),
+					end = graph.getLastEdge(curNode); e < end; e++) {
+				int neighbor = graph.getTarget(e);
+				if ((neighbor == prevNode && !this.backAllowed) ||
+						!graph.isType(neighbor, okTypes)) {
+					continue;
 				}
+				candidates[nrofCandidates++] = neighbor;
 			}
 
-			if (n2.size() == 0) { // only option is to go back
+			if (nrofCandidates == 0) { // only option is to go back
 				nextNode = prevNode;
 			}
 			else { // choose a random node from remaining neighbors
-				nextNode = n2.get(rng.nextInt(n2.size()));
+				nextNode = candidates[rng.nextInt(nrofCandidates)];
 			}
 
 			prevNode = curNode;
-
-			nextCoord = nextNode.getLocation();
 			curNode = nextNode;
 
-			p.addWaypoint(nextCoord);
+			p.addWaypoint(graph.getX(curNode), graph.getY(curNode));
 		}
 
-		lastMapNode = curNode;
+		lastMapNode = graph.getNode(curNode);
 
 		return p;
 	}
@@ -283,14 +327,37 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 			}
 		}
 
-		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		for (int i = 1; i <= nrofMapFiles; i++ ) {
+			cachedMapFiles.add(settings.getSetting(FILE_S + i));
+		}
+
+		File compiledFile = null;
+		String compiledKey = null;
+		if (settings.contains(MAP_CACHE_DIR_S)) {
+			compiledKey = getCompiledMapKey(cachedMapFiles);
+			compiledFile = new File(settings.getSetting(MAP_CACHE_DIR_S),
+					"map" + Integer.toHexString(compiledKey.hashCode()) +
+					".bin");
+			try {
+				simMap = BinaryMapFile.read(compiledFile, compiledKey);
+			} catch (IOException e) {
+				throw new SimError(e.toString(),e);
+			}
+			if (simMap != null) {
+				nrofMapFilesRead = nrofMapFiles;
+				checkCoordValidity(simMap.getNodes());
+				cachedMap = simMap;
+				return simMap;
+			}
+		}
 
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+		try {
+			List<File> mapFiles = new ArrayList<File>();
+			for (String fileName : cachedMapFiles) {
+				mapFiles.add(new File(fileName));
 			}
+			r.addPaths(mapFiles, 1); // map file i has node type i
 
 			nrofMapFilesRead = nrofMapFiles;
 		} catch (IOException e) {
@@ -305,10 +372,34 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		simMap.translate(-offset.getX(), -offset.getY());
 		checkCoordValidity(simMap.getNodes());
 
+		if (compiledFile != null) {
+			try {
+				BinaryMapFile.write(compiledFile, compiledKey, simMap);
+			} catch (IOException e) {
+				throw new SimError("Couldn't write compiled map file " +
+						compiledFile + ": " + e.toString(), e);
+			}
+		}
+
 		cachedMap = simMap;
 		return simMap;
 	}
 
+	/**
+	 * Returns the key that identifies a compiled map of the given map files
+	 * @param mapFiles Names of the map files
+	 * @return The key (names, sizes and modification times of the files)
+	 */
+	private static String getCompiledMapKey(List<String> mapFiles) {
+		StringBuilder key = new StringBuilder();
+		for (String fileName : mapFiles) {
+			File f = new File(fileName);
+			key.append(f.getAbsolutePath()).append('|').append(f.length());
+			key.append('|').append(f.lastModified()).append('\n');
+		}
+		return key.toString();
+	}
+
 	/**
 	 * Checks that all map nodes can be reached from all other map nodes
 	 * @param nodes The list of nodes to check
@@ -396,6 +487,11 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return cachedMap;
 	}
 
+	@Override
+	public boolean canPrecomputePaths() {
+		return true;
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new MapBasedMovement(this);
@@ -7,16 +7,16 @@ package movement;
 import java.util.List;
 
 import core.SettingsError;
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
 import movement.map.MapRoute;
+import movement.map.ShortestPathCache;
 import core.Coord;
 import core.Settings;
 
 /**
  * Map based movement model that uses predetermined paths within the map area.
  * Nodes using this model (can) stop on every route waypoint and find their
- * way to next waypoint using {@link DijkstraPathFinder}. There can be
+ * way to next waypoint using {@link ShortestPathCache}. There can be
  * different type of routes; see {@link #ROUTE_TYPE_S}.
  */
 public class MapRouteMovement extends MapBasedMovement implements
@@ -38,7 +38,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 	public static final String ROUTE_FIRST_STOP_S = "routeFirstStop";
 
 	/** the Dijkstra shortest path finder */
-	private DijkstraPathFinder pathFinder;
+	private ShortestPathCache pathFinder;
 
 	/** Prototype's reference to all routes read for the group */
 	private List<MapRoute> allRoutes = null;
@@ -60,7 +60,10 @@ public class MapRouteMovement extends MapBasedMovement implements
 		int type = settings.getInt(ROUTE_TYPE_S);
 		allRoutes = MapRoute.readRoutes(fileName, type, getMap());
 		nextRouteIndex = 0;
-		pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		pathFinder = getPathFinder(getOkMapNodeTypes(), false);
+		for (MapRoute r : allRoutes) {
+			r.computeLegs(pathFinder);
+		}
 		this.route = this.allRoutes.get(this.nextRouteIndex).replicate();
 		if (this.nextRouteIndex >= this.allRoutes.size()) {
 			this.nextRouteIndex = 0;
@@ -107,7 +110,10 @@ public class MapRouteMovement extends MapBasedMovement implements
 		Path p = new Path(generateSpeed());
 		MapNode to = route.nextStop();
 
-		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
+		List<MapNode> nodePath = route.getLeg(lastMapNode);
+		if (nodePath == null) { // not moving along the route's legs
+			nodePath = pathFinder.getShortestPath(lastMapNode, to);
+		}
 
 		// this assertion should never fire if the map is checked in read phase
 		assert nodePath.size() > 0 : "No path from " + lastMapNode + " to " +
@@ -46,7 +46,13 @@ public abstract class MovementModel {
 	public static final String RNG_SEED = "rngSeed";
 
 	/** common rng for all movement models in the simulation */
-	protected static Random rng;
+	private static Random commonRng;
+	/** seed of the common rng */
+	private static int rngSeed;
+
+	/** rng of this movement model: the common rng, or an rng of its own if
+	 * the model's paths are precomputed (see {@link PathPipeline}) */
+	protected Random rng;
 
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -93,6 +99,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = commonRng;
 	}
 
 	/**
@@ -104,6 +111,7 @@ public abstract class MovementModel {
 		double[] times;
 
 		ah = new ActivenessHandler(settings);
+		this.rng = commonRng;
 
 		if (settings.contains(SPEED)) {
 			speeds = settings.getCsvDoubles(SPEED, 2);
@@ -149,6 +157,7 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.rng = commonRng;
 	}
 
 	/**
@@ -241,6 +250,36 @@ public abstract class MovementModel {
 		return SimClock.getTime() + generateWaitTime();
 	}
 
+	/**
+	 * Returns true if the paths (and the wait times between them) of this
+	 * movement model can be generated ahead of time in another thread, i.e.,
+	 * {@link #getPath()} and {@link #generateWaitTime()} depend only on the
+	 * model's own state, its {@link #rng} and data that doesn't change
+	 * during the simulation (such as the map), and the model doesn't
+	 * override {@link #nextPathAvailable()}. This implementation returns
+	 * false.
+	 * @return true if the paths can be precomputed
+	 * @see PathPipeline
+	 */
+	public boolean canPrecomputePaths() {
+		return false;
+	}
+
+	/**
+	 * Makes this movement model use a random number generator of its own
+	 * instead of the common one. The generator is seeded with the common
+	 * seed and the given ID, so the random values the model gets don't
+	 * depend on the other models.
+	 * @param id ID of the model's stream (e.g., the address of the host)
+	 */
+	void useOwnRng(int id) {
+		/* mix the seed and the ID so that streams with close IDs differ */
+		long seed = ((long)rngSeed << 32) + id;
+		seed = (seed ^ (seed >>> 33)) * 0xff51afd7ed558ccdL;
+		seed = (seed ^ (seed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		this.rng = new Random(seed ^ (seed >>> 33));
+	}
+
 	/**
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
@@ -277,12 +316,12 @@ public abstract class MovementModel {
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			rngSeed = s.getInt(RNG_SEED);
 		}
 		else {
-			rng = new Random(0);
+			rngSeed = 0;
 		}
+		commonRng = new Random(rngSeed);
 	}
 
 }
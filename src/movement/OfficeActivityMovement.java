@@ -12,8 +12,8 @@ import java.util.List;
 
 import util.ParetoRNG;
 
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.ShortestPathCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -53,7 +53,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	private int workDayLength;
 	private int startedWorkingTime;
 	private boolean ready;;
-	private DijkstraPathFinder pathFinder;
+	private ShortestPathCache pathFinder;
 
 	private ParetoRNG paretoRNG;
 
@@ -87,7 +87,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		officeMaxWaitTime = settings.getDouble(OFFICE_MAX_WAIT_TIME_SETTING);
 
 		startedWorkingTime = -1;
-		pathFinder = new DijkstraPathFinder(null);
+		pathFinder = getPathFinder(null, false);
 		mode = WALKING_TO_OFFICE_MODE;
 
 		String officeLocationsFile = null;
@@ -247,6 +247,11 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		return waitTime;
 	}
 
+	@Override
+	public boolean canPrecomputePaths() {
+		return false; // depends on the simulation time
+	}
+
 	@Override
 	public MapBasedMovement replicate() {
 		return new OfficeActivityMovement(this);
@@ -5,18 +5,31 @@
 package movement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import core.Coord;
 
 /**
- * A Path between multiple Coordinates.
+ * A Path between multiple Coordinates. The coordinates and speeds are
+ * stored in primitive arrays, so adding and iterating waypoints with the
+ * coordinate values (e.g., {@link #addWaypoint(double, double)} and
+ * {@link #nextWaypoint()}) doesn't create any objects.
  */
 public class Path  {
-	/** coordinates of the path */
-	private List<Coord> coords;
+	/** Initial capacity of the coordinate arrays */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** x coordinates of the path */
+	private double[] xs;
+	/** y coordinates of the path */
+	private double[] ys;
+	/** number of waypoints in the path */
+	private int size;
 	/** speeds in the path legs */
-	private List<Double> speeds;
+	private double[] speeds;
+	/** number of speeds set */
+	private int nrofSpeeds;
 	private int nextWpIndex;
 
 	/**
@@ -24,19 +37,24 @@ public class Path  {
 	 */
 	public Path() {
 		this.nextWpIndex = 0;
-		this.coords = new ArrayList<Coord>();
-		this.speeds = new ArrayList<Double>(1);
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+		this.speeds = new double[1];
+		this.nrofSpeeds = 0;
 	}
 
 	/**
-	 * Copy constructor. Creates a copy of this path with a shallow copy of
+	 * Copy constructor. Creates a copy of this path with a copy of
 	 * the coordinates and speeds.
 	 * @param path The path to create the copy from
 	 */
 	public Path(Path path) {
 		this.nextWpIndex = path.nextWpIndex;
-		this.coords = new ArrayList<Coord>((ArrayList<Coord>)path.coords);
-		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
+		this.size = path.size;
+		this.xs = Arrays.copyOf(path.xs, Math.max(size, INITIAL_CAPACITY));
+		this.ys = Arrays.copyOf(path.ys, Math.max(size, INITIAL_CAPACITY));
+		this.nrofSpeeds = path.nrofSpeeds;
+		this.speeds = Arrays.copyOf(path.speeds, Math.max(nrofSpeeds, 1));
 	}
 
 	/**
@@ -53,16 +71,47 @@ public class Path  {
 	 * is discarded.
 	 */
 	public void setSpeed(double speed) {
-		this.speeds = new ArrayList<Double>(1);
-		speeds.add(speed);
+		this.speeds = new double[1];
+		this.speeds[0] = speed;
+		this.nrofSpeeds = 1;
 	}
 
 	/**
-	 * Returns a reference to the coordinates of this path
+	 * Returns the coordinates of this path in a new list
 	 * @return coordinates of the path
 	 */
 	public List<Coord> getCoords() {
-		return this.coords;
+		List<Coord> coords = new ArrayList<Coord>(size);
+		for (int i=0; i<size; i++) {
+			coords.add(new Coord(xs[i], ys[i]));
+		}
+		return coords;
+	}
+
+	/**
+	 * Returns the number of waypoints in this path
+	 * @return the number of waypoints
+	 */
+	public int getNrofWaypoints() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the x coordinate of a waypoint
+	 * @param index Index of the waypoint
+	 * @return the x coordinate of the waypoint
+	 */
+	public double getX(int index) {
+		return this.xs[index];
+	}
+
+	/**
+	 * Returns the y coordinate of a waypoint
+	 * @param index Index of the waypoint
+	 * @return the y coordinate of the waypoint
+	 */
+	public double getY(int index) {
+		return this.ys[index];
 	}
 
 	/**
@@ -70,9 +119,18 @@ public class Path  {
 	 * @param wp The waypoint to add
 	 */
 	public void addWaypoint(Coord wp) {
-		assert this.speeds.size() <= 1 : "This method should be used only for" +
+		addWaypoint(wp.getX(), wp.getY());
+	}
+
+	/**
+	 * Adds a new waypoint to the end of the path.
+	 * @param x The x coordinate of the waypoint
+	 * @param y The y coordinate of the waypoint
+	 */
+	public void addWaypoint(double x, double y) {
+		assert this.nrofSpeeds <= 1 : "This method should be used only for" +
 			" paths with constant speed";
-		this.coords.add(wp);
+		add(x, y);
 	}
 
 	/**
@@ -81,8 +139,66 @@ public class Path  {
 	 * @param speed The speed towards that waypoint
 	 */
 	public void addWaypoint(Coord wp, double speed) {
-		this.coords.add(wp);
-		this.speeds.add(speed);
+		addWaypoint(wp.getX(), wp.getY(), speed);
+	}
+
+	/**
+	 * Adds a new waypoint with a speed towards that waypoint
+	 * @param x The x coordinate of the waypoint
+	 * @param y The y coordinate of the waypoint
+	 * @param speed The speed towards that waypoint
+	 */
+	public void addWaypoint(double x, double y, double speed) {
+		add(x, y);
+		if (nrofSpeeds == speeds.length) {
+			speeds = Arrays.copyOf(speeds, Math.max(xs.length, nrofSpeeds+1));
+		}
+		speeds[nrofSpeeds++] = speed;
+	}
+
+	/**
+	 * Adds coordinates to the end of the coordinate arrays
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	private void add(double x, double y) {
+		if (size == xs.length) {
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	/**
+	 * Moves to the next waypoint on this path. The coordinates of the
+	 * waypoint can be asked with {@link #getWaypointX()} and
+	 * {@link #getWaypointY()} and the speed with {@link #getSpeed()}.
+	 */
+	public void nextWaypoint() {
+		assert hasNext() : "Path didn't have " + (nextWpIndex+1) + ". waypoint";
+		nextWpIndex++;
+	}
+
+	/**
+	 * Returns the x coordinate of the current waypoint (the one moved to
+	 * with the latest {@link #nextWaypoint()} call)
+	 * @return the x coordinate of the current waypoint
+	 */
+	public double getWaypointX() {
+		assert nextWpIndex != 0 : "No waypoint asked";
+		return xs[nextWpIndex-1];
+	}
+
+	/**
+	 * Returns the y coordinate of the current waypoint (the one moved to
+	 * with the latest {@link #nextWaypoint()} call)
+	 * @return the y coordinate of the current waypoint
+	 */
+	public double getWaypointY() {
+		assert nextWpIndex != 0 : "No waypoint asked";
+		return ys[nextWpIndex-1];
 	}
 
 	/**
@@ -90,8 +206,8 @@ public class Path  {
 	 * @return the next waypoint
 	 */
 	public Coord getNextWaypoint() {
-		assert hasNext() : "Path didn't have " + (nextWpIndex+1) + ". waypoint";
-		return coords.get(nextWpIndex++);
+		nextWaypoint();
+		return new Coord(getWaypointX(), getWaypointY());
 	}
 
 	/**
@@ -99,7 +215,7 @@ public class Path  {
 	 * @return true if the path has more waypoints, false if not
 	 */
 	public boolean hasNext() {
-		return nextWpIndex < this.coords.size();
+		return nextWpIndex < this.size;
 	}
 
 	/**
@@ -108,14 +224,14 @@ public class Path  {
 	 * @return the speed towards the next waypoint
 	 */
 	public double getSpeed() {
-		assert speeds.size() != 0 : "No speed set";
+		assert nrofSpeeds != 0 : "No speed set";
 		assert nextWpIndex != 0 : "No waypoint asked";
 
-		if (speeds.size() == 1) {
-			return speeds.get(0);
+		if (nrofSpeeds == 1) {
+			return speeds[0];
 		}
 		else {
-			return speeds.get(nextWpIndex-1);
+			return speeds[nextWpIndex-1];
 		}
 	}
 
@@ -124,18 +240,25 @@ public class Path  {
 	 * @return Path as a string
 	 */
 	public String toString() {
-		String s ="";
-		for (int i=0, n=coords.size(); i<n; i++) {
-			Coord c = coords.get(i);
-			s+= "->" + c;
-			if (speeds.size() > 1) {
-				s += String.format("@%.2f ",speeds.get(i));
+		StringBuilder s = new StringBuilder();
+		for (int i=0; i<size; i++) {
+			s.append("->").append(new Coord(xs[i], ys[i]));
+			if (nrofSpeeds > 1) {
+				s.append(String.format("@%.2f ", speeds[i]));
 			}
 		}
-		return s;
+		return s.toString();
 	}
 
+	/**
+	 * Returns the speeds of this path in a new list
+	 * @return the speeds of the path
+	 */
 	public List<Double> getSpeeds() {
-		return this.speeds;
+		List<Double> list = new ArrayList<Double>(nrofSpeeds);
+		for (int i=0; i<nrofSpeeds; i++) {
+			list.add(speeds[i]);
+		}
+		return list;
 	}
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import core.DTNSim;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Generates the upcoming paths of a host's movement model ahead of time in
+ * background worker threads. The paths and the wait times after them are
+ * put to a bounded queue from where the host takes them when it needs a
+ * new path.
+ * <P>The pipeline is used only if it is enabled with the
+ * {@link #NROF_THREADS_S} setting and the movement model
+ * {@link MovementModel#canPrecomputePaths() can precompute its paths}.
+ * A model with precomputed paths uses a random number generator of its
+ * own, so the paths of a host are the same regardless of the number of
+ * threads or the timing of the threads, but they differ from the paths
+ * generated without the pipeline.</P>
+ */
+public class PathPipeline implements Runnable {
+	/** Number of worker threads -setting id ({@value}) in the
+	 * {@link MovementModel#MOVEMENT_MODEL_NS} namespace. Defines the number
+	 * of threads that precompute paths. Default = 0 (paths are not
+	 * precomputed). */
+	public static final String NROF_THREADS_S = "pathPipelineThreads";
+	/** Queue size -setting id ({@value}) in the
+	 * {@link MovementModel#MOVEMENT_MODEL_NS} namespace. Defines how many
+	 * paths are precomputed for each host. Default =
+	 * {@value #DEF_QUEUE_SIZE}. */
+	public static final String QUEUE_SIZE_S = "pathPipelineSize";
+	/** Default number of precomputed paths per host */
+	public static final int DEF_QUEUE_SIZE = 4;
+
+	/** Workers that generate the paths (null if not created yet) */
+	private static ExecutorService workers;
+	/** Number of worker threads (-1 if not read from the settings yet) */
+	private static int nrofThreads;
+	/** Number of paths to precompute per host */
+	private static int queueSize;
+
+	/** The movement model whose paths are generated */
+	private final MovementModel model;
+	/** The generated paths and wait times */
+	private final BlockingQueue<Entry> queue;
+	/** Is a worker filling the queue (or about to start filling it) */
+	private final AtomicBoolean scheduled;
+	/** Wait time after the latest path taken from the queue */
+	private double waitTime;
+
+	static {
+		DTNSim.registerForReset(PathPipeline.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Creates a pipeline for a movement model if pipelines are enabled and
+	 * the model can precompute its paths. The model starts using a random
+	 * number generator of its own. This must be called before the model is
+	 * asked for the initial location.
+	 * @param model The movement model
+	 * @param id ID of the model's random number stream (e.g., the address
+	 * of the host)
+	 * @return The pipeline, or null if the paths are not precomputed
+	 */
+	public static PathPipeline create(MovementModel model, int id) {
+		if (nrofThreads < 0) {
+			Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+			nrofThreads = s.getInt(NROF_THREADS_S, 0);
+			queueSize = s.getInt(QUEUE_SIZE_S, DEF_QUEUE_SIZE);
+			if (nrofThreads < 0 || queueSize < 1) {
+				throw new SimError("Invalid path pipeline settings (" +
+						nrofThreads + " threads, queue size " + queueSize +
+						")");
+			}
+		}
+
+		if (nrofThreads == 0 || !model.canPrecomputePaths()) {
+			return null;
+		}
+		model.useOwnRng(id);
+		return new PathPipeline(model);
+	}
+
+	/**
+	 * Constructor.
+	 * @param model The movement model whose paths are generated
+	 */
+	private PathPipeline(MovementModel model) {
+		this.model = model;
+		this.queue = new ArrayBlockingQueue<Entry>(queueSize);
+		this.scheduled = new AtomicBoolean(false);
+	}
+
+	/**
+	 * Starts generating paths. Must be called after the model has been
+	 * asked for the initial location and the first wait time (i.e., when
+	 * only this pipeline uses the model).
+	 */
+	public void start() {
+		schedule();
+	}
+
+	/**
+	 * Returns the next path of the movement model, waiting for it to be
+	 * generated if necessary.
+	 * @return The next path (or null if the model didn't give a path)
+	 * @see MovementModel#getPath()
+	 */
+	public Path getPath() {
+		Entry e = queue.poll();
+		if (e == null) {
+			schedule();
+			try {
+				e = queue.take();
+			} catch (InterruptedException ie) {
+				throw new SimError("Interrupted while waiting for a path");
+			}
+		}
+		schedule(); // refill the queue
+
+		/* rethrow the worker's error in the simulation thread */
+		if (e.error instanceof RuntimeException) {
+			throw (RuntimeException)e.error;
+		}
+		else if (e.error != null) {
+			throw (Error)e.error;
+		}
+		this.waitTime = e.waitTime;
+		return e.path;
+	}
+
+	/**
+	 * Returns a sim time when the next path is available, i.e., the time
+	 * after the wait time that was generated after the latest path.
+	 * @return The sim time when node should ask the next time for a path
+	 * @see MovementModel#nextPathAvailable()
+	 */
+	public double nextPathAvailable() {
+		return SimClock.getTime() + this.waitTime;
+	}
+
+	/**
+	 * Submits this pipeline to the workers unless it is already submitted
+	 */
+	private void schedule() {
+		if (scheduled.compareAndSet(false, true)) {
+			getWorkers().execute(this);
+		}
+	}
+
+	/**
+	 * Fills the queue with new paths. Only one worker at a time runs this
+	 * for a pipeline, so the paths are generated in order.
+	 */
+	public void run() {
+		try {
+			while (queue.remainingCapacity() > 0) {
+				Entry e = new Entry();
+				try {
+					e.path = model.getPath();
+					e.waitTime = model.generateWaitTime();
+				} catch (RuntimeException | Error ex) {
+					e.error = ex;
+				}
+				queue.add(e);
+				if (e.error != null) {
+					return; // no more paths after an error
+				}
+			}
+		} finally {
+			scheduled.set(false);
+		}
+
+		/* paths may have been taken after the last check */
+		if (queue.remainingCapacity() > 0) {
+			schedule();
+		}
+	}
+
+	/**
+	 * Returns the worker threads, creating them if necessary
+	 * @return The workers
+	 */
+	private static synchronized ExecutorService getWorkers() {
+		if (workers == null) {
+			workers = Executors.newFixedThreadPool(nrofThreads,
+					new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "PathPipeline");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return workers;
+	}
+
+	/**
+	 * Stops the workers and resets the settings
+	 */
+	public static synchronized void reset() {
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+		nrofThreads = -1;
+	}
+
+	/**
+	 * A generated path and the wait time after it (or the error that
+	 * occurred while generating them)
+	 */
+	private static class Entry {
+		private Path path;
+		private double waitTime;
+		private Throwable error;
+	}
+}
@@ -6,9 +6,9 @@ package movement;
 
 import java.util.List;
 
-import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
 import movement.map.PointsOfInterest;
+import movement.map.ShortestPathCache;
 import core.Settings;
 
 /**
@@ -17,8 +17,16 @@ import core.Settings;
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	SwitchableMovement {
+	/**
+	 * Per node group setting for using the A* heuristic in the shortest path
+	 * search ({@value}). The paths are equally short but, when there are
+	 * multiple shortest paths, a different one may be chosen than with plain
+	 * Dijkstra. Default = false.
+	 */
+	public static final String USE_HEURISTIC_S = "pathFinderHeuristic";
+
 	/** the Dijkstra shortest path finder */
-	private DijkstraPathFinder pathFinder;
+	private ShortestPathCache pathFinder;
 
 	/** Points Of Interest handler */
 	private PointsOfInterest pois;
@@ -29,7 +37,8 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	public ShortestPathMapBasedMovement(Settings settings) {
 		super(settings);
-		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		this.pathFinder = getPathFinder(getOkMapNodeTypes(),
+				settings.getBoolean(USE_HEURISTIC_S, false));
 		this.pois = new PointsOfInterest(getMap(), getOkMapNodeTypes(),
 				settings, rng);
 	}
@@ -48,7 +57,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
-		MapNode to = pois.selectDestination();
+		MapNode to = pois.selectDestination(rng);
 
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
 
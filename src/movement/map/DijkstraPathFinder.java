@@ -4,35 +4,64 @@
  */
 package movement.map;
 
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 
 /**
- * Implementation of the Dijkstra's shortest path algorithm.
+ * Implementation of the Dijkstra's shortest path algorithm. The searches
+ * are run against a compact {@link MapGraph}, either the graph of a map
+ * or, if no graph is given, a graph of the nodes reachable from the source
+ * node. The search state is kept in primitive arrays indexed by the graph's
+ * node indexes that are reused between the searches, and the unvisited
+ * nodes are ordered with an indexed binary heap.
+ * Optionally the search can be directed towards the destination with the
+ * (Euclidean distance) A* heuristic, which visits fewer nodes but may
+ * choose a different path than plain Dijkstra when there are multiple
+ * shortest paths. The heuristic can be further tightened with landmark
+ * distances (see {@link #setLandmarks(double[][])}).
  */
 public class DijkstraPathFinder {
-	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
+	/** Value of heapPos for nodes that have been visited */
+	private static final int VISITED = -2;
 
-	/** Map of node distances from the source node */
-	private DistanceMap distances;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<MapNode> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<MapNode> unvisited;
-	/** Map of previous nodes on the shortest path(s) */
-	private Map<MapNode, MapNode> prevNodes;
+	/** The graph of the searched nodes */
+	private MapGraph graph;
+	/** Is the graph fixed (or created by this finder from the nodes) */
+	private boolean fixedGraph;
+	/** Distances of the nodes from the source node */
+	private double[] distances;
+	/** Priorities of the nodes in the heap (distance + heuristic) */
+	private double[] priorities;
+	/** Previous nodes on the shortest paths */
+	private int[] prevNodes;
+	/** Positions of the nodes in the heap, -1 for nodes not in the heap, or
+	 * {@link #VISITED} for already visited nodes */
+	private int[] heapPos;
+	/** Search in which the node's values were set (older values are
+	 * invalid) */
+	private int[] searchIds;
+	/** Heap of unvisited nodes discovered so far */
+	private int[] heap;
+	/** Number of nodes in the heap */
+	private int heapSize;
+	/** ID of the current search */
+	private int searchId;
+	/** Destination of the current search (for the A* heuristic) or -1 */
+	private int destination;
 
-	private int [] okMapNodes;
+	/** Type mask of the OK map nodes */
+	private int okMapNodes;
+	/** Should the A* heuristic be used */
+	private boolean useHeuristic;
+	/** Distances from the landmark nodes to all nodes (indexed by landmark
+	 * and node index) or null if no landmarks are used */
+	private double[][] landmarkDistances;
 
 	/**
 	 * Constructor.
@@ -40,27 +69,126 @@ public class DijkstraPathFinder {
 	 * all nodes are OK
 	 */
 	public DijkstraPathFinder(int [] okMapNodes) {
+		this(okMapNodes, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useHeuristic If true, the A* (Euclidean distance to the
+	 * destination) heuristic is used
+	 */
+	public DijkstraPathFinder(int [] okMapNodes, boolean useHeuristic) {
+		this(null, okMapNodes, useHeuristic);
+	}
+
+	/**
+	 * Constructor.
+	 * @param graph The graph of the map whose nodes are searched, or null
+	 * to create the graph from the nodes reachable from the searches' source
+	 * nodes
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useHeuristic If true, the A* (Euclidean distance to the
+	 * destination) heuristic is used
+	 */
+	public DijkstraPathFinder(MapGraph graph, int [] okMapNodes,
+			boolean useHeuristic) {
 		super();
-		this.okMapNodes = okMapNodes;
+		this.okMapNodes = MapGraph.getTypeMask(okMapNodes);
+		this.useHeuristic = useHeuristic;
+		this.fixedGraph = graph != null;
+		if (graph != null) {
+			setGraph(graph);
+		}
+	}
+
+	/**
+	 * Sets the graph and allocates the search state arrays for it
+	 * @param graph The graph
+	 */
+	private void setGraph(MapGraph graph) {
+		int n = graph.getNrofNodes();
+		this.graph = graph;
+		this.distances = new double[n];
+		this.priorities = new double[n];
+		this.prevNodes = new int[n];
+		this.heapPos = new int[n];
+		this.searchIds = new int[n];
+		this.heap = new int[n];
+		this.searchId = 0;
+	}
+
+	/**
+	 * Makes sure that the graph contains the source node. If the graph is not
+	 * fixed and doesn't contain the node, a new graph is created from the
+	 * nodes reachable from it.
+	 * @param from The source node
+	 * @return Index of the source node in the graph
+	 */
+	private int checkGraph(MapNode from) {
+		int index = graph != null ? graph.indexOf(from) : -1;
+		if (index >= 0 || fixedGraph) {
+			assert index >= 0 : "Node " + from + " is not in the graph";
+			return index;
+		}
+
+		List<MapNode> nodes = new ArrayList<MapNode>();
+		Queue<MapNode> unvisited = new LinkedList<MapNode>();
+		Set<MapNode> seen = new HashSet<MapNode>();
+		unvisited.add(from);
+		seen.add(from);
+		while (!unvisited.isEmpty()) {
+			MapNode node = unvisited.poll();
+			nodes.add(node);
+			for (MapNode n : node.getNeighbors()) {
+				if (seen.add(n)) {
+					unvisited.add(n);
+				}
+			}
+		}
+
+		setGraph(new MapGraph(nodes));
+		return graph.indexOf(from);
+	}
+
+	/**
+	 * Sets the landmarks whose distances are used for the A* heuristic
+	 * (ALT: A*, landmarks and triangle inequality). The lower bound for the
+	 * distance between two nodes is the largest difference of their
+	 * distances from any landmark. Requires an undirected map (which all
+	 * maps read from WKT files are).
+	 * @param distances Distances from each landmark to all the nodes
+	 * (see {@link #getDistances(MapNode)}) or null to use only the Euclidean
+	 * distance heuristic
+	 */
+	void setLandmarks(double[][] distances) {
+		this.landmarkDistances = distances;
+		if (distances != null) {
+			this.useHeuristic = true;
+		}
 	}
 
 	/**
 	 * Initializes a new search with a source node
-	 * @param node The path's source node
+	 * @param node Index of the path's source node
+	 * @param to Index of the path's destination node or -1 if all reachable
+	 * nodes are searched
 	 */
-	private void initWith(MapNode node) {
-		assert (okMapNodes != null ? node.isType(okMapNodes) : true);
+	private void initWith(int node, int to) {
+		assert graph.isType(node, okMapNodes);
 
-		// create needed data structures
-		this.unvisited = new PriorityQueue<MapNode>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<MapNode>();
-		this.prevNodes = new HashMap<MapNode, MapNode>();
-		this.distances = new DistanceMap();
+		this.searchId++;
+		if (this.searchId == 0) { // wrapped around -> forget all old values
+			Arrays.fill(this.searchIds, 0);
+			this.searchId = 1;
+		}
+		this.heapSize = 0;
+		this.destination = to;
 
 		// set distance to source 0 and initialize unvisited queue
-		this.distances.put(node, 0);
-		this.unvisited.add(node);
+		setDistance(node, 0);
 	}
 
 	/**
@@ -71,158 +199,227 @@ public class DijkstraPathFinder {
 	 * a list of MapNodes or an empty list if such path is not available
 	 */
 	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
-		List<MapNode> path = new LinkedList<MapNode>();
+		List<MapNode> path = new ArrayList<MapNode>();
 
 		if (from.compareTo(to) == 0) { // source and destination are the same
 			path.add(from); // return a list containing only source node
 			return path;
 		}
 
-		initWith(from);
-		MapNode node = null;
+		int source = checkGraph(from);
+		int target = graph.indexOf(to);
+		if (target < 0) {
+			return path; // not reachable from the source node
+		}
+
+		initWith(source, target);
+		int node = -1;
 
 		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (node == to) {
+		while (heapSize > 0) {
+			node = poll();
+			if (node == target) {
 				break; // we found the destination -> no need to search further
 			}
 
-			visited.add(node); // mark the node as visited
+			heapPos[node] = VISITED; // mark the node as visited
 			relax(node); // add/update neighbor nodes' distances
 		}
 
 		// now we either have the path or such path wasn't available
-		if (node == to) { // found a path
-			path.add(0,to);
-			MapNode prev = prevNodes.get(to);
-			while (prev != from) {
-				path.add(0, prev);	// always put previous node to beginning
-				prev = prevNodes.get(prev);
+		if (node == target) { // found a path
+			path.add(to);
+			int prev = prevNodes[target];
+			while (prev != source) {
+				path.add(graph.getNode(prev));
+				prev = prevNodes[prev];
 			}
 
-			path.add(0, from); // finally put the source node to first node
+			path.add(from);
+			Collections.reverse(path); // source node first
 		}
 
 		return path;
 	}
 
+	/**
+	 * Computes the shortest distances from a node to all the nodes it can
+	 * reach through OK map nodes
+	 * @param from The source node
+	 * @return Distances of the nodes indexed by their graph indexes, or
+	 * {@link Double#MAX_VALUE} for the nodes that can't be reached
+	 */
+	double[] getDistances(MapNode from) {
+		initWith(checkGraph(from), -1);
+
+		while (heapSize > 0) {
+			int node = poll();
+			heapPos[node] = VISITED;
+			relax(node);
+		}
+
+		double[] result = new double[searchIds.length];
+		for (int i=0; i<result.length; i++) {
+			result[i] = searchIds[i] == searchId ? distances[i] :
+				Double.MAX_VALUE;
+		}
+		return result;
+	}
+
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
-	 * @param node The node whose neighbors are relaxed
+	 * @param node Index of the node whose neighbors are relaxed
 	 */
-	private void relax(MapNode node) {
-		double nodeDist = distances.get(node);
-		for (MapNode n : node.getNeighbors()) {
-			if (visited.contains(n)) {
+	private void relax(int node) {
+		double nodeDist = distances[node];
+
+		for (int e = graph.getFirstEdge(node), end = graph.getLastEdge(node);
+				e < end; e++) {
+			int neighbor = graph.getTarget(e);
+			boolean seen = searchIds[neighbor] == searchId;
+
+			if (seen && heapPos[neighbor] == VISITED) {
 				continue; // skip visited nodes
 			}
 
-			if (okMapNodes != null && !n.isType(okMapNodes)) {
+			if (!graph.isType(neighbor, okMapNodes)) {
 				continue; // skip nodes that are not OK
 			}
 
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			// neighbor node's distance from path's source node
+			double nDist = nodeDist + graph.getLength(e);
 
-			if (distances.get(n) > nDist) { // stored distance > found dist?
-				prevNodes.put(n, node);
-				setDistance(n, nDist);
+			// stored distance > found dist?
+			if (!seen || distances[neighbor] > nDist) {
+				setDistance(neighbor, nDist);
+				prevNodes[neighbor] = node;
 			}
 		}
 	}
 
 	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
+	 * Sets the distance from source node to a node and moves the node to
+	 * its new place in the heap
+	 * @param n Index of the node whose distance is set
 	 * @param distance The distance of the node from the source node
 	 */
-	private void setDistance(MapNode n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distances.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+	private void setDistance(int n, double distance) {
+		if (searchIds[n] != searchId) { // first time in this search
+			searchIds[n] = searchId;
+			heapPos[n] = -1;
+		}
+
+		distances[n] = distance;
+		priorities[n] = distance;
+		if (useHeuristic && destination >= 0) {
+			priorities[n] += getLowerBound(n, destination);
+		}
+
+		if (heapPos[n] < 0) {
+			heap[heapSize] = n;
+			heapPos[n] = heapSize;
+			heapSize++;
+		}
+		siftUp(heapPos[n]); // distances only decrease
 	}
 
 	/**
-	 * Returns the (euclidean) distance between the two map nodes
-	 * @param from The first node
-	 * @param to The second node
-	 * @return Euclidean distance between the two map nodes
+	 * Removes and returns the node with the shortest distance from the heap
+	 * @return Index of the node with the shortest distance
 	 */
-	private double getDistance(MapNode from, MapNode to) {
-		return from.getLocation().distance(to.getLocation());
+	private int poll() {
+		int first = heap[0];
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		heapPos[first] = -1;
+		return first;
 	}
 
 	/**
-	 * Comparator that compares two map nodes by their distance from
-	 * the source node.
+	 * Moves a heap entry up until the heap order is restored
+	 * @param pos Position of the entry
 	 */
-	private class DistanceComparator implements Comparator<MapNode> {
-
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(MapNode node1, MapNode node2) {
-			double dist1 = distances.get(node1);
-			double dist2 = distances.get(node2);
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
 
-			if (dist1 > dist2) {
-				return 1;
+	/**
+	 * Moves a heap entry down until the heap order is restored
+	 * @param pos Position of the entry
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= heapSize) {
+				break;
 			}
-			else if (dist1 < dist2) {
-				return -1;
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+				child++;
 			}
-			else {
-				return node1.compareTo(node2);
+			if (!isBefore(heap[child], node)) {
+				break;
 			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
 		}
+		heap[pos] = node;
+		heapPos[node] = pos;
 	}
 
 	/**
-	 * Simple Map implementation for storing distances.
+	 * Compares two nodes by their priority (distance from the source
+	 * node and, with the A* heuristic, the distance to the destination).
+	 * Ties are broken by the node location.
+	 * @return true if node1 should be visited before node2
 	 */
-	private class DistanceMap {
-		private HashMap<MapNode, Double> map;
+	private boolean isBefore(int node1, int node2) {
+		double prio1 = priorities[node1];
+		double prio2 = priorities[node2];
 
-		/**
-		 * Constructor. Creates an empty distance map
-		 */
-		public DistanceMap() {
-			this.map = new HashMap<MapNode, Double>();
-		}
-
-		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link DijkstraPathFinder#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
-		 */
-		public double get(MapNode node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
-			}
-			else {
-				return INFINITY;
-			}
+		if (prio1 != prio2) {
+			return prio1 < prio2;
 		}
+		return graph.compare(node1, node2) < 0;
+	}
 
-		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
-		 */
-		public void  put(MapNode node, double distance) {
-			map.put(node, distance);
+	/**
+	 * Returns a lower bound for the length of the shortest path between two
+	 * nodes: the Euclidean distance or, if it is larger, the landmark
+	 * distance difference
+	 * @param from Index of the first node
+	 * @param to Index of the second node
+	 * @return A lower bound for the shortest path length
+	 */
+	private double getLowerBound(int from, int to) {
+		double bound = graph.getDistance(from, to);
+		if (landmarkDistances == null) {
+			return bound;
 		}
 
-		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
-		 */
-		public String toString() {
-			return map.toString();
+		for (double[] dists : landmarkDistances) {
+			if (dists[from] == Double.MAX_VALUE ||
+					dists[to] == Double.MAX_VALUE) {
+				continue; // not reachable from this landmark
+			}
+			bound = Math.max(bound, Math.abs(dists[to] - dists[from]));
 		}
+		return bound;
 	}
 }
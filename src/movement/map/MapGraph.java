@@ -0,0 +1,265 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, read-only graph representation of map nodes in the compressed
+ * sparse row (CSR) format. The nodes are identified by their indexes
+ * (0...n-1, in the order of the node list the graph was created from)
+ * and the locations, type bit masks and neighbor lists of the nodes are
+ * kept in primitive arrays. The edges of node i are the indexes
+ * {@link #getFirstEdge(int)} (inclusive) ... {@link #getLastEdge(int)}
+ * (exclusive); the neighbors are in the same order as in
+ * {@link MapNode#getNeighbors()}. The map nodes are kept as a view to
+ * the same graph.
+ * <P>The graph is a snapshot: changes to the nodes' locations or
+ * neighbors are not visible in a graph created before the changes.</P>
+ */
+public class MapGraph {
+	/** Type mask that matches all nodes, also the ones without a type */
+	public static final int ALL_TYPES = -1;
+
+	/** The map nodes by their indexes */
+	private final MapNode[] nodes;
+	/** Smallest ID of the nodes */
+	private final int minId;
+	/** Indexes of the nodes by their IDs - {@link #minId} (or -1 for nodes
+	 * not in graph) */
+	private final int[] indexes;
+	/** X coordinates of the nodes */
+	private final double[] xs;
+	/** Y coordinates of the nodes */
+	private final double[] ys;
+	/** Type bit masks of the nodes */
+	private final int[] types;
+	/** First edge of each node (and the number of edges at the end) */
+	private final int[] offsets;
+	/** Target node indexes of the edges */
+	private final int[] targets;
+	/** Lengths of the edges */
+	private final double[] lengths;
+	/** Largest number of neighbors of any node */
+	private final int maxDegree;
+
+	/**
+	 * Creates a graph of the given nodes. All the neighbors of the nodes
+	 * must be in the list too.
+	 * @param nodeList The nodes of the graph
+	 */
+	public MapGraph(List<MapNode> nodeList) {
+		int n = nodeList.size();
+		this.nodes = nodeList.toArray(new MapNode[n]);
+
+		int min = Integer.MAX_VALUE;
+		int maxId = -1;
+		int nrofEdges = 0;
+		for (MapNode node : nodes) {
+			min = Math.min(min, node.getId());
+			maxId = Math.max(maxId, node.getId());
+			nrofEdges += node.getNeighbors().size();
+		}
+		this.minId = (n > 0 ? min : 0);
+		this.indexes = new int[maxId - minId + 1];
+		Arrays.fill(indexes, -1);
+		for (int i=0; i<n; i++) {
+			indexes[nodes[i].getId() - minId] = i;
+		}
+
+		this.xs = new double[n];
+		this.ys = new double[n];
+		this.types = new int[n];
+		this.offsets = new int[n + 1];
+		this.targets = new int[nrofEdges];
+		this.lengths = new double[nrofEdges];
+
+		int e = 0;
+		int max = 0;
+		for (int i=0; i<n; i++) {
+			MapNode node = nodes[i];
+			xs[i] = node.getLocation().getX();
+			ys[i] = node.getLocation().getY();
+			types[i] = node.getTypeMask();
+			offsets[i] = e;
+
+			for (MapNode neighbor : node.getNeighbors()) {
+				int target = indexOf(neighbor);
+				assert target >= 0 : "Neighbor " + neighbor + " of " + node +
+					" is not in the graph";
+				targets[e] = target;
+				lengths[e] = node.getLocation().distance(
+						neighbor.getLocation());
+				e++;
+			}
+			max = Math.max(max, e - offsets[i]);
+		}
+		offsets[n] = e;
+		this.maxDegree = max;
+	}
+
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return the number of nodes
+	 */
+	public int getNrofNodes() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the largest number of neighbors any node of the graph has
+	 * @return the maximum degree of the nodes
+	 */
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	/**
+	 * Returns the index of a map node in this graph
+	 * @param node The map node
+	 * @return The index of the node or -1 if the node is not in the graph
+	 */
+	public int indexOf(MapNode node) {
+		int id = node.getId() - minId;
+		if (id < 0 || id >= indexes.length || indexes[id] < 0 ||
+				nodes[indexes[id]] != node) {
+			return -1;
+		}
+		return indexes[id];
+	}
+
+	/**
+	 * Returns the map node of an index
+	 * @param index Index of the node
+	 * @return The map node
+	 */
+	public MapNode getNode(int index) {
+		return nodes[index];
+	}
+
+	/**
+	 * Returns the X coordinate of a node
+	 * @param index Index of the node
+	 * @return The X coordinate
+	 */
+	public double getX(int index) {
+		return xs[index];
+	}
+
+	/**
+	 * Returns the Y coordinate of a node
+	 * @param index Index of the node
+	 * @return The Y coordinate
+	 */
+	public double getY(int index) {
+		return ys[index];
+	}
+
+	/**
+	 * Returns the type bit mask of a node
+	 * @param index Index of the node
+	 * @return The type bit mask (bit n is set for type n), or 0 if the node
+	 * has no types
+	 */
+	public int getTypes(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Returns true if the node's types match the type bit mask
+	 * @param index Index of the node
+	 * @param typeMask The type bit mask (see {@link #getTypeMask(int[])})
+	 * @return True if any of the node's types are in the mask or the mask
+	 * is {@link #ALL_TYPES}
+	 * @see MapNode#isType(int[])
+	 */
+	public boolean isType(int index, int typeMask) {
+		return typeMask == ALL_TYPES || (types[index] & typeMask) != 0;
+	}
+
+	/**
+	 * Returns the index of the first edge of a node
+	 * @param index Index of the node
+	 * @return The index of the first edge
+	 */
+	public int getFirstEdge(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Returns the index after the last edge of a node
+	 * @param index Index of the node
+	 * @return The index after the last edge
+	 */
+	public int getLastEdge(int index) {
+		return offsets[index + 1];
+	}
+
+	/**
+	 * Returns the index of the node where an edge leads to
+	 * @param edge Index of the edge
+	 * @return The index of the target node
+	 */
+	public int getTarget(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * Returns the (Euclidean) length of an edge
+	 * @param edge Index of the edge
+	 * @return The length of the edge
+	 */
+	public double getLength(int edge) {
+		return lengths[edge];
+	}
+
+	/**
+	 * Returns the Euclidean distance between two nodes
+	 * @param index1 Index of the first node
+	 * @param index2 Index of the second node
+	 * @return The distance
+	 */
+	public double getDistance(int index1, int index2) {
+		double dx = xs[index1] - xs[index2];
+		double dy = ys[index1] - ys[index2];
+
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+
+	/**
+	 * Compares the locations of two nodes like {@link MapNode#compareTo}
+	 * @param index1 Index of the first node
+	 * @param index2 Index of the second node
+	 * @return -1, 0 or 1 if the first node is before, in the same place or
+	 * after the second node
+	 */
+	public int compare(int index1, int index2) {
+		if (ys[index1] != ys[index2]) {
+			return ys[index1] < ys[index2] ? -1 : 1;
+		}
+		if (xs[index1] != xs[index2]) {
+			return xs[index1] < xs[index2] ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the bit mask of the given map node types
+	 * @param typeList The types (values in range [{@value MapNode#MIN_TYPE},
+	 * {@value MapNode#MAX_TYPE}]) or null
+	 * @return The type bit mask or {@link #ALL_TYPES} if the list is null
+	 */
+	public static int getTypeMask(int[] typeList) {
+		if (typeList == null) {
+			return ALL_TYPES;
+		}
+		int mask = 0;
+		for (int type : typeList) {
+			mask |= MapNode.typeToBitMask(type);
+		}
+		return mask;
+	}
+}
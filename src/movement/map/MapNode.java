@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Vector;
 
 import core.Coord;
+import core.DTNSim;
 import core.SettingsError;
 
 /**
@@ -19,29 +20,48 @@ public class MapNode implements Comparable<MapNode> {
 	public static final int MIN_TYPE = 1;
 	/** Biggest valid type of a node: {@value} */
 	public static final int MAX_TYPE = 31;
+	/** ID of the next created node */
+	private static int nextId = 0;
 
-
+	/** ID of the node (for indexing nodes in arrays) */
+	private final int id;
 	private Coord location;
 	private Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
+	/** the map this node belongs to (notified of changes) or null */
+	private SimMap map;
+
+	static {
+		DTNSim.registerForReset(MapNode.class.getCanonicalName());
+		reset();
+	}
 
 	/**
 	 * Constructor. Creates a map node to a location.
 	 * @param location The location of the node.
 	 */
 	public MapNode(Coord location) {
+		this.id = nextId++;
 		this.location = location;
 		this.neighbors = new Vector<MapNode>();
 		type = 0;
 	}
 
+	/**
+	 * Resets the ID counter of the nodes between simulation runs
+	 */
+	public static void reset() {
+		nextId = 0;
+	}
+
 	/**
 	 * Adds a type indicator to this node
 	 * @param type An integer from range [{@value MIN_TYPE}, {@value MAX_TYPE}]
 	 */
 	public void addType(int type) {
 		this.type |= typeToBitMask(type);
+		changed();
 	}
 
 	/**
@@ -83,7 +103,7 @@ public class MapNode implements Comparable<MapNode> {
 	 * @return A bit mask for the given type
 	 * @throws SettingsError if the type is out of range
 	 */
-	private int typeToBitMask(int type) {
+	static int typeToBitMask(int type) {
 		assert type >= MIN_TYPE && type <= MAX_TYPE : "Invalid node type "+type;
 		return 1 << type; // create the mask by bitwise shift
 	}
@@ -108,9 +128,47 @@ public class MapNode implements Comparable<MapNode> {
 	private void addToList(MapNode node) {
 		if (!this.neighbors.contains(node) && node != this) {
 			this.neighbors.add(node);
+			changed();
+		}
+	}
+
+	/**
+	 * Sets the map this node belongs to. The map is notified when the
+	 * types or neighbors of the node change.
+	 * @param map The map
+	 */
+	void setMap(SimMap map) {
+		this.map = map;
+	}
+
+	/**
+	 * Notifies the node's map (if any) of a change in the types or
+	 * neighbors of this node
+	 */
+	private void changed() {
+		if (this.map != null) {
+			this.map.nodeChanged();
 		}
 	}
 
+	/**
+	 * Returns the bit mask of the node's types
+	 * @return the type bit mask or 0 if the node has no types
+	 */
+	int getTypeMask() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the ID of the node. The IDs are unique among the nodes
+	 * created during the same simulation run and they are small
+	 * consecutive integers so they can be used as array indexes.
+	 * @return the ID of the node
+	 */
+	public int getId() {
+		return this.id;
+	}
+
 	/**
 	 * Returns the location of the node
 	 * @return the location of the node
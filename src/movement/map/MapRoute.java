@@ -32,6 +32,16 @@ public class MapRoute {
 	private int type; // type of the route
 	private int index; // index of the previous returned map node
 	private boolean comingBack;
+	/** index of the stop returned by the latest nextStop call (or -1) */
+	private int lastIndex;
+	/** index of the stop returned before the latest one (or -1) */
+	private int prevIndex;
+
+	/** paths from each stop to the next stop (shared by the replicates) */
+	private List<List<MapNode>> nextLegs;
+	/** paths from each stop to the previous stop, for ping-pong routes
+	 * (shared by the replicates); index i is the path from i+1 to i */
+	private List<List<MapNode>> prevLegs;
 
 	/**
 	 * Creates a new map route
@@ -44,6 +54,8 @@ public class MapRoute {
 		this.stops = stops;
 		this.index = 0;
 		this.comingBack = false;
+		this.lastIndex = -1;
+		this.prevIndex = -1;
 	}
 
 	/**
@@ -76,6 +88,8 @@ public class MapRoute {
 	 */
 	public MapNode nextStop() {
 		MapNode next = stops.get(index);
+		prevIndex = lastIndex;
+		lastIndex = index;
 
 		if (comingBack) {
 			index--; // ping-pong coming back
@@ -102,12 +116,69 @@ public class MapRoute {
 		return next;
 	}
 
+	/**
+	 * Computes the paths between all consecutive stops of the route. The
+	 * paths are shared by all the replicates of this route made after this
+	 * call.
+	 * @param pathFinder The path finder to use
+	 * @see #getLeg(MapNode)
+	 */
+	public void computeLegs(ShortestPathCache pathFinder) {
+		int n = stops.size();
+		int nrofLegs = (type == CIRCULAR ? n : n - 1);
+
+		nextLegs = new ArrayList<List<MapNode>>(nrofLegs);
+		for (int i=0; i<nrofLegs; i++) {
+			nextLegs.add(pathFinder.getShortestPath(stops.get(i),
+					stops.get((i + 1) % n)));
+		}
+
+		if (type == PINGPONG) {
+			prevLegs = new ArrayList<List<MapNode>>(nrofLegs);
+			for (int i=0; i<nrofLegs; i++) {
+				prevLegs.add(pathFinder.getShortestPath(stops.get(i + 1),
+						stops.get(i)));
+			}
+		}
+	}
+
+	/**
+	 * Returns the precomputed path to the stop that was returned by the
+	 * latest {@link #nextStop()} call.
+	 * @param from The node where the path should start
+	 * @return The path or null if the legs haven't been computed, the
+	 * previous stop wasn't the given node, or the stops are not consecutive
+	 * (e.g., after {@link #setNextIndex(int)})
+	 */
+	public List<MapNode> getLeg(MapNode from) {
+		if (nextLegs == null || prevIndex < 0) {
+			return null;
+		}
+
+		List<MapNode> leg = null;
+		if (lastIndex == prevIndex + 1 || (type == CIRCULAR &&
+				lastIndex == 0 && prevIndex == stops.size() - 1)) {
+			leg = nextLegs.get(prevIndex);
+		}
+		else if (type == PINGPONG && lastIndex == prevIndex - 1) {
+			leg = prevLegs.get(lastIndex);
+		}
+
+		if (leg == null || leg.isEmpty() || leg.get(0) != from) {
+			return null;
+		}
+		return leg;
+	}
+
 	/**
 	 * Returns a new route with the same settings
 	 * @return a replicate of this route
 	 */
 	public MapRoute replicate() {
-		return new MapRoute(type, stops);
+		MapRoute r = new MapRoute(type, stops);
+		r.nextLegs = this.nextLegs;
+		r.prevLegs = this.prevLegs;
+		return r;
 	}
 
 	public String toString() {
@@ -75,6 +75,16 @@ public class PointsOfInterest {
 	 * @return A destination among POIs or all MapNodes
 	 */
 	public MapNode selectDestination() {
+		return selectDestination(this.rng);
+	}
+
+	/**
+	 * Selects a random destination like {@link #selectDestination()} but
+	 * using the given random number generator
+	 * @param rng The random number generator to use
+	 * @return A destination among POIs or all MapNodes
+	 */
+	public MapNode selectDestination(Random rng) {
 		double random = rng.nextDouble();
 		double acc = 0;
 
@@ -91,13 +101,14 @@ public class PointsOfInterest {
 
 		// random was bigger than sum of probs -> return a random map node
 		// that is still OK (if OK node types are defined)
-		List<MapNode> allNodes = map.getNodes();
-		MapNode node;
+		MapGraph graph = map.getGraph();
+		int okTypes = MapGraph.getTypeMask(okMapNodeTypes);
+		int node;
 		do {
-			node = allNodes.get(rng.nextInt(allNodes.size()));
-		} while (okMapNodeTypes != null && !node.isType(okMapNodeTypes));
+			node = rng.nextInt(graph.getNrofNodes());
+		} while (!graph.isType(node, okTypes));
 
-		return node;
+		return graph.getNode(node);
 	}
 
 	/**
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shortest path service for a {@link SimMap} that is shared by all the
+ * movement models using the same map (and the same OK map node types).
+ * The paths are searched with a {@link DijkstraPathFinder} and the most
+ * recently used paths are kept in a size limited (LRU) cache, so the paths
+ * between popular nodes (e.g., Points Of Interest, offices and bus stops)
+ * are searched only once. Optionally, a number of landmark nodes are
+ * selected and their distances to all nodes are computed when the
+ * service is created; those are used for the A* heuristic of the searches.
+ * <P>The cache can be used from multiple threads: each thread searches the
+ * paths with a path finder of its own.</P>
+ */
+public class ShortestPathCache {
+	/** The path finder of the thread that created the cache */
+	private DijkstraPathFinder pathFinder;
+	/** The path finders that search the paths that are not cached */
+	private ThreadLocal<DijkstraPathFinder> pathFinders;
+	/** Distances from the landmarks to all nodes (or null) */
+	private double[][] landmarks;
+	/** Cached paths by (from ID, to ID) -keys in the access order */
+	private Map<Long, List<MapNode>> paths;
+	/** Maximum number of cached paths */
+	private int cacheSize;
+	/** How many paths were found from the cache */
+	private int nrofHits;
+	/** How many paths were searched */
+	private int nrofMisses;
+
+	/**
+	 * Constructor.
+	 * @param map The map whose paths are searched
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useHeuristic If true, the A* heuristic is used in the searches
+	 * @param cacheSize Maximum number of paths to cache (0 = no caching)
+	 * @param nrofLandmarks Number of landmark nodes to use for the A*
+	 * heuristic (0 = no landmarks). If landmarks are used, the heuristic is
+	 * always used.
+	 */
+	public ShortestPathCache(SimMap map, int[] okMapNodes,
+			boolean useHeuristic, int cacheSize, int nrofLandmarks) {
+		this.pathFinder = new DijkstraPathFinder(map.getGraph(), okMapNodes,
+				useHeuristic);
+		this.cacheSize = cacheSize;
+		this.paths = new LinkedHashMap<Long, List<MapNode>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Long, List<MapNode>> eldest) {
+				return size() > ShortestPathCache.this.cacheSize;
+			}
+		};
+
+		if (nrofLandmarks > 0) {
+			landmarks = selectLandmarks(map, okMapNodes, nrofLandmarks);
+			pathFinder.setLandmarks(landmarks);
+		}
+
+		final MapGraph graph = map.getGraph();
+		final int[] okTypes = okMapNodes;
+		final boolean heuristic = useHeuristic;
+		this.pathFinders = new ThreadLocal<DijkstraPathFinder>() {
+			@Override
+			protected DijkstraPathFinder initialValue() {
+				DijkstraPathFinder finder = new DijkstraPathFinder(graph,
+						okTypes, heuristic);
+				finder.setLandmarks(landmarks);
+				return finder;
+			}
+		};
+		this.pathFinders.set(pathFinder);
+	}
+
+	/**
+	 * Selects the landmarks so that every new landmark is the node that is
+	 * furthest away from the already selected landmarks, and computes the
+	 * distances from them to all the nodes.
+	 * @param map The map
+	 * @param okMapNodes The OK map node types (or null for all)
+	 * @param nrofLandmarks Maximum number of landmarks to select
+	 * @return Distances from each of the landmarks to all nodes
+	 */
+	private double[][] selectLandmarks(SimMap map, int[] okMapNodes,
+			int nrofLandmarks) {
+		MapGraph graph = map.getGraph();
+		int okTypes = MapGraph.getTypeMask(okMapNodes);
+		int first = -1;
+		for (int i=0, n=graph.getNrofNodes(); i<n; i++) {
+			if (graph.isType(i, okTypes) &&
+					(first < 0 || graph.compare(i, first) < 0)) {
+				first = i; // the first node in location order
+			}
+		}
+		if (first < 0) {
+			return null;
+		}
+
+		List<double[]> landmarks = new ArrayList<double[]>();
+		/* the first search only finds the node furthest from the first one */
+		double[] dists = pathFinder.getDistances(graph.getNode(first));
+		double[] minDists = dists;
+
+		while (landmarks.size() < nrofLandmarks) {
+			int furthest = -1;
+			double maxDist = 0;
+			for (int i=0; i<minDists.length; i++) {
+				double d = minDists[i];
+				if (d != Double.MAX_VALUE && d > maxDist) {
+					furthest = i;
+					maxDist = d;
+				}
+			}
+			if (furthest < 0) {
+				break; // all (reachable) nodes are landmarks already
+			}
+
+			dists = pathFinder.getDistances(graph.getNode(furthest));
+			if (landmarks.isEmpty()) {
+				minDists = dists.clone();
+			}
+			else {
+				for (int i=0; i<minDists.length; i++) {
+					minDists[i] = Math.min(minDists[i], dists[i]);
+				}
+			}
+			landmarks.add(dists);
+		}
+
+		return landmarks.toArray(new double[landmarks.size()][]);
+	}
+
+	/**
+	 * Returns a shortest path between two map nodes, from the cache if it's
+	 * there
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @return a shortest path between the source and destination nodes in
+	 * an unmodifiable list of MapNodes or an empty list if such path is not
+	 * available
+	 * @see DijkstraPathFinder#getShortestPath(MapNode, MapNode)
+	 */
+	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
+		Long key = ((long)from.getId() << 32) | to.getId();
+		List<MapNode> path;
+
+		synchronized (paths) {
+			path = paths.get(key);
+			if (path != null) {
+				nrofHits++;
+				return path;
+			}
+			nrofMisses++;
+		}
+
+		path = Collections.unmodifiableList(
+				pathFinders.get().getShortestPath(from, to));
+		if (cacheSize > 0) {
+			synchronized (paths) {
+				paths.put(key, path);
+			}
+		}
+
+		return path;
+	}
+
+	/**
+	 * Returns how many paths were found from the cache
+	 * @return The number of cache hits
+	 */
+	public int getNrofHits() {
+		synchronized (paths) {
+			return this.nrofHits;
+		}
+	}
+
+	/**
+	 * Returns how many paths were searched (were not in the cache)
+	 * @return The number of cache misses
+	 */
+	public int getNrofMisses() {
+		synchronized (paths) {
+			return this.nrofMisses;
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (paths) {
+			return "ShortestPathCache with " + paths.size() + " paths (" +
+				nrofHits + " hits, " + nrofMisses + " misses)";
+		}
+	}
+}
@@ -6,6 +6,8 @@ package movement.map;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +30,10 @@ public class SimMap implements Serializable {
 
 	/** is re-hash needed before using hash mode (some coordinates changed) */
 	private boolean needsRehash = false;
+	/** compact graph of the map (or null if not created yet) */
+	private transient MapGraph graph;
+	/** shared shortest path caches by their OK map node types and options */
+	private transient Map<String, ShortestPathCache> pathCaches;
 
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
@@ -35,6 +41,46 @@ public class SimMap implements Serializable {
 		this.nodesMap = nodes;
 		this.isMirrored = false;
 		setBounds();
+		claimNodes();
+	}
+
+	/**
+	 * Creates a map of nodes that have already been processed (e.g., read
+	 * from a {@link input.BinaryMapFile}).
+	 * @param nodes The nodes of the map in the order they are returned by
+	 * {@link #getNodes()}
+	 * @param offset Offset of the map translations
+	 * @param isMirrored Has the map data been mirrored
+	 */
+	public SimMap(List<MapNode> nodes, Coord offset, boolean isMirrored) {
+		this.offset = offset;
+		this.nodes = new ArrayList<MapNode>(nodes);
+		this.nodesMap = new HashMap<Coord, MapNode>();
+		for (MapNode node : nodes) {
+			this.nodesMap.put(node.getLocation(), node);
+		}
+		this.isMirrored = isMirrored;
+		setBounds();
+		claimNodes();
+	}
+
+	/**
+	 * Sets this map as the map of all its nodes so that changes to the nodes
+	 * invalidate the graph of this map
+	 */
+	private void claimNodes() {
+		for (MapNode node : this.nodes) {
+			node.setMap(this);
+		}
+	}
+
+	/**
+	 * Called by the map's nodes when their types or neighbors change.
+	 * Drops the graph and the path caches that are based on it.
+	 */
+	synchronized void nodeChanged() {
+		graph = null;
+		pathCaches = null;
 	}
 
 	/**
@@ -57,11 +103,59 @@ public class SimMap implements Serializable {
 			for (MapNode node : getNodes()) {
 				nodesMap.put(node.getLocation(), node); // re-hash
 			}
+			needsRehash = false;
 		}
 
 		return nodesMap.get(c);
 	}
 
+	/**
+	 * Returns the compact graph representation of this map. The graph is
+	 * created on the first call after reading, translating or mirroring the
+	 * map, or changing the types or neighbors of map nodes. The indexes of
+	 * the nodes in the graph are their indexes in the list returned by
+	 * {@link #getNodes()}. Can be called from multiple threads.
+	 * @return The graph of the map
+	 */
+	public synchronized MapGraph getGraph() {
+		if (graph == null) {
+			graph = new MapGraph(nodes);
+			pathCaches = null; // based on the old graph
+		}
+		return graph;
+	}
+
+	/**
+	 * Returns the shortest path cache of this map for the given OK map node
+	 * types and options. All callers with the same parameters share the same
+	 * cache, which is created (and its landmarks computed) on the first
+	 * call, or on the first call after the map's graph has changed.
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param useHeuristic If true, the A* heuristic is used in the searches
+	 * @param cacheSize Maximum number of paths to cache
+	 * @param nrofLandmarks Number of landmark nodes for the A* heuristic
+	 * @return The shortest path cache
+	 * @see ShortestPathCache
+	 */
+	public synchronized ShortestPathCache getShortestPathCache(int[] okMapNodes,
+			boolean useHeuristic, int cacheSize, int nrofLandmarks) {
+		getGraph(); // make sure the caches are up to date
+		if (pathCaches == null) {
+			pathCaches = new HashMap<String, ShortestPathCache>();
+		}
+
+		String key = Arrays.toString(okMapNodes) + "," + useHeuristic + "," +
+			cacheSize + "," + nrofLandmarks;
+		ShortestPathCache cache = pathCaches.get(key);
+		if (cache == null) {
+			cache = new ShortestPathCache(this, okMapNodes, useHeuristic,
+					cacheSize, nrofLandmarks);
+			pathCaches.put(key, cache);
+		}
+		return cache;
+	}
+
 	/**
 	 * Returns the upper left corner coordinate of the map
 	 * @return the upper left corner coordinate of the map
@@ -111,6 +205,8 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		graph = null;
+		pathCaches = null;
 	}
 
 	/**
@@ -127,6 +223,8 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		graph = null;
+		pathCaches = null;
 	}
 
 	/**
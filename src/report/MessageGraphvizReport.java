@@ -61,9 +61,9 @@ public class MessageGraphvizReport extends Report implements MessageListener {
 
 		for (Message m : deliveredMessages) {
 			List<DTNHost> path = m.getHops();
-			String pathString = path.remove(0).toString(); // start node
+			String pathString = path.get(0).toString(); // start node
 
-			for (DTNHost next : path) {
+			for (DTNHost next : path.subList(1, path.size())) {
 				pathString += "->" + next.toString();
 			}
 
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.util.MessageTransferAcceptPolicy;
+
+/**
+ * Reports how many message transfers each message transfer accept policy
+ * (see {@link MessageTransferAcceptPolicy}) has accepted (hits) and denied
+ * (misses) when sending and receiving messages. Only the policies that are
+ * defined with a policy namespace setting are reported; if multiple node
+ * groups use the same namespace, they are reported separately.
+ */
+public class MessageTransferPolicyReport extends Report {
+
+	@Override
+	public void done() {
+		write("Message transfer policy stats for scenario " +
+				getScenarioName() + "\nsim_time: " + format(getSimTime()));
+
+		for (MessageTransferAcceptPolicy p :
+				MessageTransferAcceptPolicy.getPolicies()) {
+			write(p.getName() +
+					" send_accepted: " + p.getNrofSendAccepted() +
+					" send_denied: " + p.getNrofSendDenied() +
+					" receive_accepted: " + p.getNrofReceiveAccepted() +
+					" receive_denied: " + p.getNrofReceiveDenied());
+		}
+
+		super.done();
+	}
+}
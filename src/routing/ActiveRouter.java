@@ -37,6 +37,18 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * from message buffer */
 	protected boolean deleteDelivered;
 
+	/** Batch transfers -setting id ({@value}). Boolean valued.
+	 * If set to true, the next transfer over a connection is started right
+	 * after the previous one finishes, on the same update interval, and the
+	 * transfer is timed as if it had started when the previous one ended.
+	 * This makes the amount of data transferred over a contact independent
+	 * of the update interval. Only supported by constant bit rate
+	 * connections (others start the transfers at the update time).
+	 * Default=false. */
+	public static final String BATCH_TRANSFERS_S = "batchTransfers";
+	/** should transfers be chained back-to-back over the connections */
+	protected boolean batchTransfers;
+
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	/** how often TTL check (discarding old messages) is performed */
@@ -48,6 +60,15 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
+	/** Should a routing decision be made on this update round */
+	private boolean routingNeeded;
+	/** Is the current update round a continuation round of this interval */
+	private boolean continuingRound;
+	/** end time of the transfer finished on this round that the next
+	 * transfer is chained to (or NO_CHAIN) */
+	private double chainFrom;
+	/** value of chainFrom when there's no transfer to chain to */
+	private static final double NO_CHAIN = -1;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -60,6 +81,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.batchTransfers = s.getBoolean(BATCH_TRANSFERS_S, false);
 
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -75,6 +97,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.batchTransfers = r.batchTransfers;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
 	}
@@ -84,6 +107,8 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.continuingRound = false;
+		this.chainFrom = NO_CHAIN;
 	}
 
 	/**
@@ -97,6 +122,8 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+		markDirty();
+		markPeersDirty();
 	}
 
 	@Override
@@ -106,15 +133,18 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		DTNHost other = con.getOtherNode(getHost());
+		Collection<Message> forOther = getMessagesFor(other);
+		if (forOther.isEmpty()) {
+			return false;
+		}
+
 		/* do a copy to avoid concurrent modification exceptions
-		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp =
-			new ArrayList<Message>(this.getMessageCollection());
+		 * (startTransfer may remove messages). The messages are tried in
+		 * the buffer order (the first accepted one is transferred) */
+		ArrayList<Message> temp = new ArrayList<Message>(forOther);
 		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -168,14 +198,19 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	/**
 	 * Tries to start a transfer of message using a connection. Is starting
-	 * succeeds, the connection is added to the watch list of active connections
+	 * succeeds, the connection is added to the watch list of active connections.
+	 * If transfers are batched and a transfer of this router finished on
+	 * this update round, the transfer is timed to start right after that
+	 * (but not before the connection became idle or this host got the
+	 * message).
 	 * @param m The message to transfer
 	 * @param con The connection to use
 	 * @return the value returned by
-	 * {@link Connection#startTransfer(DTNHost, Message)}
+	 * {@link Connection#startTransfer(DTNHost, Message, double)}
 	 */
 	protected int startTransfer(Message m, Connection con) {
 		int retVal;
+		double startTime = SimClock.getTime();
 
 		if (!con.isReadyForTransfer()) {
 			return TRY_LATER_BUSY;
@@ -186,9 +221,17 @@ public abstract class ActiveRouter extends MessageRouter {
 			return MessageRouter.DENIED_POLICY;
 		}
 
-		retVal = con.startTransfer(getHost(), m);
+		if (this.chainFrom != NO_CHAIN) {
+			double idleSince = Math.max(chainFrom, con.getIdleSince());
+			startTime = Math.min(startTime,
+					Math.max(idleSince, m.getReceiveTime()));
+		}
+
+		retVal = con.startTransfer(getHost(), m, startTime);
 		if (retVal == RCV_OK) { // started transfer
+			this.chainFrom = NO_CHAIN;
 			addToSendingConnections(con);
+			transferStarted(m);
 		}
 		else if (deleteDelivered && retVal == DENIED_OLD &&
 				m.getTo() == con.getOtherNode(this.getHost())) {
@@ -200,11 +243,16 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Makes rudimentary checks (that we have at least one message and one
-	 * connection) about can this router start transfer.
+	 * Makes rudimentary checks (that something has changed since the last
+	 * routing decision and that we have at least one message and one
+	 * connection) about can this router start transfer. If nothing has
+	 * changed, the transfers that would be tried have already been refused.
 	 * @return True if router can start transfer, false if not
 	 */
 	protected boolean canStartTransfer() {
+		if (!this.routingNeeded) {
+			return false;
+		}
 		if (this.getNrofMessages() == 0) {
 			return false;
 		}
@@ -353,15 +401,40 @@ public abstract class ActiveRouter extends MessageRouter {
 			return new ArrayList<Tuple<Message, Connection>>(0);
 		}
 
+		/* the messages of each connected host are in the buffer order;
+		 * merge them so that the tuples are in the buffer order too since
+		 * the first accepted transfer wins */
+		List<Connection> cons = new ArrayList<Connection>();
+		List<List<Message>> lists = new ArrayList<List<Message>>();
+		int total = 0;
+		for (Connection con : getConnections()) {
+			Collection<Message> forOther =
+				getMessagesFor(con.getOtherNode(getHost()));
+			if (!forOther.isEmpty()) {
+				cons.add(con);
+				lists.add(new ArrayList<Message>(forOther));
+				total += forOther.size();
+			}
+		}
+
 		List<Tuple<Message, Connection>> forTuples =
-			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
+			new ArrayList<Tuple<Message, Connection>>(total);
+		int[] next = new int[lists.size()];
+		while (forTuples.size() < total) {
+			int first = -1;
+			long firstOrder = Long.MAX_VALUE;
+			for (int i=0; i<lists.size(); i++) {
+				if (next[i] == lists.get(i).size()) {
+					continue;
+				}
+				long order = getBufferOrder(lists.get(i).get(next[i]));
+				if (first == -1 || order < firstOrder) {
+					first = i;
+					firstOrder = order;
 				}
 			}
+			Message m = lists.get(first).get(next[first]++);
+			forTuples.add(new Tuple<Message, Connection>(m, cons.get(first)));
 		}
 
 		return forTuples;
@@ -441,8 +514,8 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the
-	 * {@link MessageRouter#sortByQueueMode(List)}. See
+	 * connections this node has. Messages are tried in the send queue order
+	 * (see {@link MessageRouter#getQueuedMessages()}). See
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -453,9 +526,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		List<Message> messages =
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
+		List<Message> messages = this.getQueuedMessages();
 
 		return tryMessagesToConnections(messages, connections);
 	}
@@ -579,7 +650,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	@Override
 	public void update() {
-		super.update();
+		/* applications and energy are updated only once per interval */
+		boolean continuing = this.continuingRound;
+		if (!continuing) {
+			super.update();
+		}
+		this.chainFrom = NO_CHAIN;
 
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
@@ -592,6 +668,9 @@ public abstract class ActiveRouter extends MessageRouter {
 				if (con.getMessage() != null) {
 					transferDone(con);
 					con.finalizeTransfer();
+					if (batchTransfers) {
+						chainFrom = Math.max(chainFrom, con.getIdleSince());
+					}
 				} /* else: some other entity aborted transfer */
 				removeCurrent = true;
 			}
@@ -610,6 +689,9 @@ public abstract class ActiveRouter extends MessageRouter {
 					this.makeRoomForMessage(0);
 				}
 				sendingConnections.remove(i);
+				/* not sending anymore -> new decisions for us and peers */
+				markDirty();
+				markPeersDirty();
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -624,11 +706,47 @@ public abstract class ActiveRouter extends MessageRouter {
 			lastTtlCheck = SimClock.getTime();
 		}
 
-		if (energy != null) {
+		if (energy != null && !continuing) {
 			/* TODO: add support for other interfaces */
 			NetworkInterface iface = getHost().getInterface(1);
 			energy.update(iface, getHost().getComBus());
 		}
+
+		if (policy.hasMcbConditions()) {
+			/* the bus values that the policy checks (on sending and on
+			 * receiving from the peers) may change any time */
+			markDirty();
+			markPeersDirty();
+		}
+
+		/* the routing decision of this round (made by the subclass after
+		 * this method) is needed only if something has changed after the
+		 * previous decision; the energy level changes all the time */
+		this.routingNeeded = isDirty() || energy != null;
+		clearDirty();
+	}
+
+	/**
+	 * Returns true if transfers are batched and some of the sending
+	 * connections have finished their transfer. The next update of the
+	 * interval is then a continuation round that finalizes the transfers
+	 * and starts the next ones without updating applications or energy.
+	 * @return true if the router should be updated again on this interval
+	 */
+	@Override
+	public boolean hasFinishedTransfers() {
+		this.continuingRound = false;
+		if (!batchTransfers) {
+			return false;
+		}
+
+		for (Connection con : this.sendingConnections) {
+			if (con.isMessageTransferred()) {
+				this.continuingRound = true;
+				break;
+			}
+		}
+		return this.continuingRound;
 	}
 
 	/**
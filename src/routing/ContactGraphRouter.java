@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import routing.schedule.ContactPlan;
+import routing.schedule.ContactRoute;
+import util.Tuple;
+import core.Connection;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Contact Graph Routing (CGR) style router. All the nodes know a plan
+ * of the future contacts (e.g., connectivity output of an earlier run
+ * from {@link report.ConnectivityONEReport}) and forward a single copy of
+ * each message along the route that reaches the destination the earliest.
+ * The routes are cached per destination until a contact on the route ends.
+ */
+public class ContactGraphRouter extends ActiveRouter {
+	/** Contact graph router's setting namespace ({@value})*/
+	public static final String CGR_NS = "ContactGraphRouter";
+	/**
+	 * Contact plan file -setting id ({@value}). The file is read with
+	 * {@link input.StandardEventsReader} and its connection up and down
+	 * events are the planned contacts.
+	 */
+	public static final String CONTACT_PLAN_FILE_S = "contactPlanFile";
+
+	/** Contact plans by their file names (shared by all routers) */
+	private static Map<String, ContactPlan> plans;
+
+	static {
+		DTNSim.registerForReset(ContactGraphRouter.class.getCanonicalName());
+		reset();
+	}
+
+	/** name of the contact plan file */
+	private String planFile;
+	/** the contact plan */
+	private ContactPlan plan;
+	/** cached routes indexed by the destination address */
+	private ContactRoute[] routes;
+	/** earliest expiry time of the routes used after the last expiry */
+	private double nextExpiry;
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public ContactGraphRouter(Settings s) {
+		super(s);
+		Settings cgrSettings = new Settings(CGR_NS);
+		this.planFile = cgrSettings.getSetting(CONTACT_PLAN_FILE_S);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected ContactGraphRouter(ContactGraphRouter r) {
+		super(r);
+		this.planFile = r.planFile;
+		this.plan = getPlan(planFile);
+		this.routes = new ContactRoute[0];
+		this.nextExpiry = Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the contact plan read from the given file. Every file is read
+	 * only once.
+	 * @param fileName Name of the file
+	 * @return The contact plan
+	 */
+	private static ContactPlan getPlan(String fileName) {
+		ContactPlan plan = plans.get(fileName);
+		if (plan == null) {
+			plan = ContactPlan.read(new File(fileName));
+			plans.put(fileName, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Returns the current route from this host to the destination
+	 * @param to The destination host
+	 * @return The route (or {@link ContactRoute#NONE} if there's no route)
+	 */
+	public ContactRoute getRoute(DTNHost to) {
+		int address = to.getAddress();
+		double now = SimClock.getTime();
+
+		if (address >= routes.length) {
+			routes = Arrays.copyOf(routes, Math.max(address + 1,
+					routes.length * 2));
+		}
+
+		ContactRoute route = routes[address];
+		if (route == null || route.getExpiryTime() < now) {
+			route = plan.getRoute(getHost().getAddress(), address, now);
+			routes[address] = route;
+		}
+		if (route.getExpiryTime() < nextExpiry) {
+			nextExpiry = route.getExpiryTime();
+		}
+
+		return route;
+	}
+
+	@Override
+	public void update() {
+		if (SimClock.getTime() > nextExpiry) {
+			/* a route has expired -> the next hops may have changed. The
+			 * expiry times are collected again when the routes are used */
+			nextExpiry = Double.MAX_VALUE;
+			markDirty();
+		}
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return;
+		}
+
+		if (exchangeDeliverableMessages() != null) {
+			return;
+		}
+
+		tryRouteNextHops();
+	}
+
+	/**
+	 * Tries to send the messages whose route's next hop is connected
+	 * @return The tuple whose connection accepted the message or null
+	 */
+	private Tuple<Message, Connection> tryRouteNextHops() {
+		Map<Integer, Connection> connected = new HashMap<Integer, Connection>();
+		for (Connection con : getConnections()) {
+			connected.put(con.getOtherNode(getHost()).getAddress(), con);
+		}
+
+		List<Tuple<Message, Connection>> tuples =
+			new ArrayList<Tuple<Message, Connection>>();
+		for (Message m : getMessageCollection()) {
+			Connection con = connected.get(getRoute(m.getTo()).getNextHop());
+			if (con != null) {
+				tuples.add(new Tuple<Message, Connection>(m, con));
+			}
+		}
+
+		sortByQueueMode(tuples);
+		return tryMessagesForConnected(tuples);
+	}
+
+	@Override
+	protected void transferDone(Connection con) {
+		/* don't leave a copy for the sender */
+		this.deleteMessage(con.getMessage().getId(), false);
+	}
+
+	@Override
+	public ContactGraphRouter replicate() {
+		return new ContactGraphRouter(this);
+	}
+
+	/**
+	 * Resets the static router class variables
+	 */
+	public static void reset() {
+		plans = new HashMap<String, ContactPlan>();
+	}
+}
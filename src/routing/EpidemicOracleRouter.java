@@ -5,7 +5,11 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import core.*;
 
@@ -21,8 +25,8 @@ import static core.Constants.DEBUG;
  */
 public class EpidemicOracleRouter extends ActiveRouter {
 
-	/** List of all routers in this node group */
-	private static List<EpidemicOracleRouter> allRouters;
+	/** The routers that carry each message (by message ID) */
+	private static Map<String, Set<EpidemicOracleRouter>> holders;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -44,7 +48,6 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
-		allRouters.add(this);
 	}
 
 	@Override
@@ -114,9 +117,14 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
-				if (r != this && r != from.getRouter()) {
-					r.removeDeliveredMessage(id);
+			Set<EpidemicOracleRouter> routers = holders.get(id);
+			if (routers != null) {
+				/* copy because the routers remove themselves */
+				for (EpidemicOracleRouter r :
+						new ArrayList<EpidemicOracleRouter>(routers)) {
+					if (r != this && r != from.getRouter()) {
+						r.removeDeliveredMessage(id);
+					}
 				}
 			}
 		} else {
@@ -126,6 +134,32 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		return m;
 	}
 
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+
+		Set<EpidemicOracleRouter> routers = holders.get(m.getId());
+		if (routers == null) {
+			routers = new LinkedHashSet<EpidemicOracleRouter>();
+			holders.put(m.getId(), routers);
+		}
+		routers.add(this);
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+
+		if (m != null) {
+			Set<EpidemicOracleRouter> routers = holders.get(id);
+			routers.remove(this);
+			if (routers.isEmpty()) {
+				holders.remove(id);
+			}
+		}
+		return m;
+	}
+
 	protected int checkReceiving(Message m) {
 		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) ||
 				isDeliveredMessage(m) ){
@@ -174,10 +208,10 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	/**
-	 * Resets the static router list
+	 * Resets the static registry of message holders
 	 */
 	public static void reset() {
-		allRouters = new ArrayList<EpidemicOracleRouter>();
+		holders = new HashMap<String, Set<EpidemicOracleRouter>>();
 	}
 
 }
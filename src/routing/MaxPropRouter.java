@@ -16,6 +16,7 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.ChangeLog;
 import routing.util.RoutingInfo;
 import util.Tuple;
 import core.Connection;
@@ -40,10 +41,18 @@ public class MaxPropRouter extends ActiveRouter {
 	public static final String MAXPROP_NS = "MaxPropRouter";
 	/**
 	 * Meeting probability set maximum size -setting id ({@value}).
-	 * The maximum amount of meeting probabilities to store.  */
+	 * The maximum amount of meeting probabilities to store. Used only if
+	 * {@link #LIMIT_PROB_SET_S} is true. */
 	public static final String PROB_SET_MAX_SIZE_S = "probSetMaxSize";
     /** Default value for the meeting probability set maximum size ({@value}).*/
     public static final int DEFAULT_PROB_SET_MAX_SIZE = 50;
+	/**
+	 * Limit meeting probability set size -setting id ({@value}). Boolean.
+	 * If true, the smallest meeting probability is dropped (and the rest
+	 * normalized) when the set reaches {@link #PROB_SET_MAX_SIZE_S} entries.
+	 * Default = false (the set size is not limited, as in the original
+	 * implementation). */
+	public static final String LIMIT_PROB_SET_S = "limitProbSetSize";
     private static int probSetMaxSize;
 
 	/** probabilities of meeting hosts */
@@ -51,16 +60,18 @@ public class MaxPropRouter extends ActiveRouter {
 	/** meeting probabilities of all hosts from this host's point of view
 	 * mapped using host's network address */
 	private Map<Integer, MeetingProbabilitySet> allProbs;
+	/** versioned log of the changes in {@link #allProbs} */
+	private ChangeLog allProbsLog;
+	/** versions of the other hosts' allProbs logs seen last time */
+	private Map<DTNHost, Long> seenProbsVersions;
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
+	/** the ACKed message IDs in the order they were added */
+	private List<String> ackedLog;
+	/** how many of the other hosts' ACKed message IDs were seen last time */
+	private Map<DTNHost, Integer> seenAckedCounts;
 
 	/** Map of which messages have been sent to which hosts from this host */
 	private Map<DTNHost, Set<String>> sentMessages;
@@ -98,7 +109,9 @@ public class MaxPropRouter extends ActiveRouter {
 		}
 
         Settings mpSettings = new Settings(MAXPROP_NS);
-        if (mpSettings.contains(PROB_SET_MAX_SIZE_S)) {
+        if (!mpSettings.getBoolean(LIMIT_PROB_SET_S, false)) {
+            probSetMaxSize = MeetingProbabilitySet.INFINITE_SET_SIZE;
+        } else if (mpSettings.contains(PROB_SET_MAX_SIZE_S)) {
             probSetMaxSize = mpSettings.getInt(PROB_SET_MAX_SIZE_S);
         } else {
             probSetMaxSize = DEFAULT_PROB_SET_MAX_SIZE;
@@ -115,7 +128,11 @@ public class MaxPropRouter extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
+		this.allProbsLog = new ChangeLog();
+		this.seenProbsVersions = new HashMap<DTNHost, Long>();
 		this.ackedMessageIds = new HashSet<String>();
+		this.ackedLog = new ArrayList<String>();
+		this.seenAckedCounts = new HashMap<DTNHost, Integer>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
 		this.sentMessages = new HashMap<DTNHost, Set<String>>();
 	}
@@ -125,8 +142,6 @@ public class MaxPropRouter extends ActiveRouter {
 		super.changedConnection(con);
 
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
-
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
 				 * other node too (so that the meeting probs are updated
@@ -139,21 +154,21 @@ public class MaxPropRouter extends ActiveRouter {
 				MaxPropRouter otherRouter = (MaxPropRouter)mRouter;
 
 				/* exchange ACKed message data */
-				this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-				otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+				this.mergeAckedIds(otherHost, otherRouter);
+				otherRouter.mergeAckedIds(getHost(), this);
 				deleteAckedMessages();
 				otherRouter.deleteAckedMessages();
 
 				/* update both meeting probabilities */
-				probs.updateMeetingProbFor(otherHost.getAddress());
-				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
+				this.updateMeetingProbFor(otherHost);
+				otherRouter.updateMeetingProbFor(getHost());
 
 				/* exchange the transitive probabilities */
-				this.updateTransitiveProbs(otherRouter.allProbs);
-				otherRouter.updateTransitiveProbs(this.allProbs);
-				this.allProbs.put(otherHost.getAddress(),
+				this.updateTransitiveProbs(otherHost, otherRouter);
+				otherRouter.updateTransitiveProbs(getHost(), this);
+				this.putProbs(otherHost.getAddress(),
 						otherRouter.probs.replicate());
-				otherRouter.allProbs.put(getHost().getAddress(),
+				otherRouter.putProbs(getHost().getAddress(),
 						this.probs.replicate());
 			}
 		}
@@ -163,28 +178,101 @@ public class MaxPropRouter extends ActiveRouter {
 		}
 	}
 
+	/**
+	 * Updates this host's meeting probabilities when a host is met
+	 * @param other The host that was met
+	 */
+	private void updateMeetingProbFor(DTNHost other) {
+		this.probs.updateMeetingProbFor(other.getAddress());
+		this.dijkstra.changed(getHost().getAddress());
+	}
+
+	/**
+	 * Stores a MeetingProbabilitySet to the mapping of all known sets and
+	 * records the change for the other hosts.
+	 * @param address Address of the host whose set it is
+	 * @param mps The set
+	 */
+	private void putProbs(int address, MeetingProbabilitySet mps) {
+		if (this.allProbs.put(address, mps) != mps) {
+			this.allProbsLog.changed(address);
+			this.dijkstra.changed(address);
+		}
+	}
+
 	/**
 	 * Updates transitive probability values by replacing the current
-	 * MeetingProbabilitySets with the values from the given mapping
-	 * if the given sets have more recent updates.
-	 * @param p Mapping of the values of the other host
+	 * MeetingProbabilitySets with the values from the other host's mapping
+	 * if the other host's sets have more recent updates. Only the sets that
+	 * the other host has changed since the last time this host saw its
+	 * mapping are checked; the rest have been checked already and the sets
+	 * of this host can only have become more recent since.
+	 * @param other The other host
+	 * @param otherRouter The router of the other host
 	 */
-	private void updateTransitiveProbs(Map<Integer, MeetingProbabilitySet> p) {
-		for (Map.Entry<Integer, MeetingProbabilitySet> e : p.entrySet()) {
-			MeetingProbabilitySet myMps = this.allProbs.get(e.getKey());
+	private void updateTransitiveProbs(DTNHost other,
+			MaxPropRouter otherRouter) {
+		ChangeLog log = otherRouter.allProbsLog;
+		Long seen = this.seenProbsVersions.get(other);
+
+		for (int i = log.firstAfter(seen == null ? ChangeLog.NO_VERSION : seen),
+				n = log.size(); i < n; i++) {
+			if (!log.isLatest(i)) {
+				continue; // changed again later
+			}
+			int address = log.getKey(i);
+			MeetingProbabilitySet othMps = otherRouter.allProbs.get(address);
+			MeetingProbabilitySet myMps = this.allProbs.get(address);
 			if (myMps == null ||
-				e.getValue().getLastUpdateTime() > myMps.getLastUpdateTime() ) {
-				this.allProbs.put(e.getKey(), e.getValue().replicate());
+				othMps.getLastUpdateTime() > myMps.getLastUpdateTime() ) {
+				this.putProbs(address, othMps.replicate());
 			}
 		}
+
+		this.seenProbsVersions.put(other, log.getVersion());
+	}
+
+	/**
+	 * Adds a message ID to the set of ACKed message IDs
+	 * @param id The ID to add
+	 */
+	private void addAckedId(String id) {
+		if (this.ackedMessageIds.add(id)) {
+			this.ackedLog.add(id);
+		}
+	}
+
+	/**
+	 * Adds the ACKed message IDs of the other host that this host hasn't
+	 * seen yet to the ACKed message IDs of this host.
+	 * @param other The other host
+	 * @param otherRouter The router of the other host
+	 */
+	private void mergeAckedIds(DTNHost other, MaxPropRouter otherRouter) {
+		List<String> othLog = otherRouter.ackedLog;
+		Integer seen = this.seenAckedCounts.get(other);
+
+		for (int i = (seen == null ? 0 : seen), n = othLog.size(); i < n; i++) {
+			addAckedId(othLog.get(i));
+		}
+
+		this.seenAckedCounts.put(other, othLog.size());
 	}
 
 	/**
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
+		if (this.ackedMessageIds.isEmpty()) {
+			return;
+		}
+
+		/* copy to avoid concurrent modification of the buffer */
+		List<Message> messages =
+			new ArrayList<Message>(this.getMessageCollection());
+		for (Message m : messages) {
+			String id = m.getId();
+			if (this.ackedMessageIds.contains(id) && !isSending(id)) {
 				this.deleteMessage(id, false);
 			}
 		}
@@ -192,11 +280,10 @@ public class MaxPropRouter extends ActiveRouter {
 
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.addAckedId(id);
 		}
 		return m;
 	}
@@ -216,7 +303,7 @@ public class MaxPropRouter extends ActiveRouter {
 
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == recipient) {
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+			this.addAckedId(m.getId()); // yes, add to ACKed messages
 			this.deleteMessage(m.getId(), false); // delete from buffer
 		}
 
@@ -303,38 +390,17 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host,
-	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * Double.MAX_VALUE is returned. The shortest path trees are cached
+	 * per "from" host and recalculated only partially when the meeting
+	 * probabilities that they depend on have changed.
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
-		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
-			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
-
-			/* calculate paths only to nodes we have messages to
-			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
-			}
-
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
-		}
-
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
-		}
+		this.putProbs(getHost().getAddress(), this.probs);
+		return dijkstra.getCost(from.getAddress(), to.getAddress());
 	}
 
 	/**
@@ -363,7 +429,7 @@ public class MaxPropRouter extends ActiveRouter {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+						m.hasPassed(other)) {
 					continue;
 				}
 				/* skip message if this host has already sent it to the other
@@ -490,7 +490,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+						m.hasPassed(other)) {
 					continue;
 				}
 				messages.add(new Tuple<Message, Connection>(m,con));
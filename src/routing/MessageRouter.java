@@ -4,13 +4,13 @@
  */
 package routing;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
 import core.Application;
 import core.Connection;
 import core.DTNHost;
@@ -21,6 +21,7 @@ import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import routing.util.RoutingInfo;
+import routing.util.SendQueue;
 import util.Tuple;
 
 /**
@@ -89,6 +90,12 @@ public abstract class MessageRouter {
 	private HashMap<String, Message> incomingMessages;
 	/** The messages this router is carrying */
 	private HashMap<String, Message> messages;
+	/** The carried messages indexed by their final recipient */
+	private HashMap<DTNHost, List<Message>> messagesByDestination;
+	/** The buffer order (sequence number) of the carried messages */
+	private HashMap<String, Long> bufferOrder;
+	/** Sequence number of the next message added to the buffer */
+	private long nextBufferOrder;
 	/** The messages this router has received as the final recipient */
 	private HashMap<String, Message> deliveredMessages;
 	/** The messages that Applications on this router have blacklisted */
@@ -101,6 +108,11 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** The carried messages in the sending order of the queue mode */
+	private SendQueue sendQueue;
+	/** Has the state that routing decisions depend on changed after the
+	 * last routing decision */
+	private boolean dirty;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -161,10 +173,16 @@ public abstract class MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		this.incomingMessages = new HashMap<String, Message>();
 		this.messages = new HashMap<String, Message>();
+		this.messagesByDestination = new HashMap<DTNHost, List<Message>>();
+		this.bufferOrder = new HashMap<String, Long>();
+		this.nextBufferOrder = 0;
 		this.deliveredMessages = new HashMap<String, Message>();
 		this.blacklistedMessages = new HashMap<String, Object>();
 		this.mListeners = mListeners;
 		this.host = host;
+		this.dirty = true;
+		this.sendQueue = new SendQueue(sendQueueMode == Q_MODE_RANDOM,
+				host != null ? host.getAddress() : 0);
 	}
 
 	/**
@@ -197,6 +215,18 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns true if some of the transfers this router started have
+	 * finished after the last update and the router wants to be updated
+	 * again on the same simulation interval to continue sending right away
+	 * (instead of waiting for the next interval). The default
+	 * implementation always returns false.
+	 * @return true if the router should be updated again
+	 */
+	public boolean hasFinishedTransfers() {
+		return false;
+	}
+
 	/**
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
@@ -258,6 +288,37 @@ public abstract class MessageRouter {
 		return this.messages.values();
 	}
 
+	/**
+	 * Returns the messages this router is carrying whose final recipient is
+	 * the given host. The same note about concurrent modifications applies
+	 * as with {@link #getMessageCollection()}. The messages are in the order
+	 * they were added to the buffer, which is not the iteration order of
+	 * {@link #getMessageCollection()}.
+	 * @param to The final recipient of the messages
+	 * @return The messages for the recipient (an empty collection if there
+	 * are none)
+	 */
+	protected Collection<Message> getMessagesFor(DTNHost to) {
+		List<Message> list = this.messagesByDestination.get(to);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the position of a carried message in the buffer order, i.e.,
+	 * the order the messages were added to the buffer. Messages added later
+	 * have larger values.
+	 * @param m The message
+	 * @return The buffer order of the message or Long.MAX_VALUE if this
+	 * router doesn't carry the message
+	 */
+	protected long getBufferOrder(Message m) {
+		Long order = this.bufferOrder.get(m.getId());
+		return order != null ? order : Long.MAX_VALUE;
+	}
+
 	/**
 	 * Returns the number of messages this router has
 	 * @return How many messages this router has
@@ -424,7 +485,13 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		Message m = this.incomingMessages.remove(id + "_" + from.toString());
+		if (m != null) {
+			/* not receiving anymore -> peers may be able to send */
+			markDirty();
+			markPeersDirty();
+		}
+		return m;
 	}
 
 	/**
@@ -445,7 +512,21 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getId(), m);
+		if (old != null) {
+			removeFromDestinationIndex(old);
+		}
+
+		List<Message> list = this.messagesByDestination.get(m.getTo());
+		if (list == null) {
+			list = new ArrayList<Message>(2);
+			this.messagesByDestination.put(m.getTo(), list);
+		}
+		list.add(m);
+		this.bufferOrder.put(m.getId(), this.nextBufferOrder++);
+		this.sendQueue.add(m);
+		markDirty();
+		markPeersDirty();
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -461,9 +542,77 @@ public abstract class MessageRouter {
 	 */
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
+		if (m != null) {
+			removeFromDestinationIndex(m);
+			this.bufferOrder.remove(id);
+			this.sendQueue.remove(id);
+			markDirty();
+			markPeersDirty();
+		}
 		return m;
 	}
 
+	/**
+	 * Removes a message from the by-destination index of carried messages.
+	 * @param m The message to remove
+	 */
+	private void removeFromDestinationIndex(Message m) {
+		List<Message> list = this.messagesByDestination.get(m.getTo());
+		if (list == null) {
+			return;
+		}
+
+		for (int i=0, n=list.size(); i<n; i++) {
+			if (list.get(i) == m) {
+				list.remove(i);
+				break;
+			}
+		}
+
+		if (list.isEmpty()) {
+			this.messagesByDestination.remove(m.getTo());
+		}
+	}
+
+	/**
+	 * Marks the router dirty, i.e., something that its routing decisions
+	 * depend on has changed and the decisions should be made again.
+	 */
+	protected void markDirty() {
+		this.dirty = true;
+	}
+
+	/**
+	 * Marks the routers of the currently connected hosts dirty. This should
+	 * be called when something that the peers' routing decisions may depend
+	 * on (e.g., the message buffer) changes.
+	 */
+	protected void markPeersDirty() {
+		if (this.host == null) {
+			return;
+		}
+		for (Connection con : this.host.getConnections()) {
+			con.getOtherNode(this.host).getRouter().markDirty();
+		}
+	}
+
+	/**
+	 * Returns true if the router is dirty, i.e., its state has changed after
+	 * the dirty flag was cleared last time
+	 * @return true if the router is dirty
+	 * @see #markDirty()
+	 */
+	protected boolean isDirty() {
+		return this.dirty;
+	}
+
+	/**
+	 * Clears the dirty flag of the router
+	 */
+	protected void clearDirty() {
+		this.dirty = false;
+	}
+
 	/**
 	 * This method should be called (on the receiving host) when a message
 	 * transfer was aborted.
@@ -515,51 +664,56 @@ public abstract class MessageRouter {
 	}
 
 	/**
-	 * Sorts/shuffles the given list according to the current sending queue
+	 * Returns the carried messages in the order of the send queue, i.e.,
+	 * in the order they were received (FIFO) or in a random order that is
+	 * fixed when the message is added to the buffer (RANDOM).
+	 * @return A new list of the messages in the queue order
+	 * @see SendQueue
+	 */
+	protected List<Message> getQueuedMessages() {
+		return this.sendQueue.getMessages();
+	}
+
+	/**
+	 * Informs the send queue that a transfer of a message was started
+	 * @param m The message whose transfer was started
+	 * @see SendQueue#transferStarted(Message)
+	 */
+	protected void transferStarted(Message m) {
+		this.sendQueue.transferStarted(m);
+	}
+
+	/**
+	 * Sorts the given list according to the current sending queue
 	 * mode. The list can contain either Message or Tuple<Message, Connection>
 	 * objects. Other objects cause error.
-	 * @param list The list to sort or shuffle
-	 * @return The sorted/shuffled list
+	 * @param list The list to sort
+	 * @return The sorted list
 	 */
 	@SuppressWarnings(value = "unchecked") /* ugly way to make this generic */
 	protected List sortByQueueMode(List list) {
-		switch (sendQueueMode) {
-		case Q_MODE_RANDOM:
-			Collections.shuffle(list, new Random(SimClock.getIntTime()));
-			break;
-		case Q_MODE_FIFO:
-			Collections.sort(list,
-					new Comparator() {
-				/** Compares two tuples by their messages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					Message m1, m2;
-
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<Message, Connection>)o1).getKey();
-						m2 = ((Tuple<Message, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof Message) {
-						m1 = (Message)o1;
-						m2 = (Message)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " +
-								"the list");
-					}
-
-					diff = m1.getReceiveTime() - m2.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
+		Collections.sort(list,
+				new Comparator() {
+			/** Compares two tuples by their messages' send queue order */
+			public int compare(Object o1, Object o2) {
+				Message m1, m2;
+
+				if (o1 instanceof Tuple) {
+					m1 = ((Tuple<Message, Connection>)o1).getKey();
+					m2 = ((Tuple<Message, Connection>)o2).getKey();
 				}
-			});
-			break;
-		/* add more queue modes here */
-		default:
-			throw new SimError("Unknown queue mode " + sendQueueMode);
-		}
+				else if (o1 instanceof Message) {
+					m1 = (Message)o1;
+					m2 = (Message)o2;
+				}
+				else {
+					throw new SimError("Invalid type of objects in " +
+							"the list");
+				}
+
+				return sendQueue.compare(m1, m2);
+			}
+		});
 
 		return list;
 	}
@@ -573,24 +727,7 @@ public abstract class MessageRouter {
 	 *          message should come first, or 0 if the ordering isn't defined
 	 */
 	protected int compareByQueueMode(Message m1, Message m2) {
-		switch (sendQueueMode) {
-		case Q_MODE_RANDOM:
-			/* return randomly (enough) but consistently -1, 0 or 1 */
-			int hash_diff = m1.hashCode() - m2.hashCode();
-			if (hash_diff == 0) {
-				return 0;
-			}
-			return (hash_diff < 0 ? -1 : 1);
-		case Q_MODE_FIFO:
-			double diff = m1.getReceiveTime() - m2.getReceiveTime();
-			if (diff == 0) {
-				return 0;
-			}
-			return (diff < 0 ? -1 : 1);
-		/* add more queue modes here */
-		default:
-			throw new SimError("Unknown queue mode " + sendQueueMode);
-		}
+		return this.sendQueue.compare(m1, m2);
 	}
 
 	/**
@@ -12,6 +12,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.ChangeLog;
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -20,7 +22,6 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
-import core.SimClock;
 
 /**
  * Implementation of PRoPHET router as described in
@@ -55,17 +56,27 @@ public class ProphetRouter extends ActiveRouter {
 	 */
 	public static final String GAMMA_S = "gamma";
 
+	/**
+	 * Delta exchange -setting id ({@value}). Boolean valued. If set to true,
+	 * the transitive update on a contact uses only the delivery
+	 * predictabilities that the other host has changed since the same pair
+	 * last met, instead of the whole table. Default = false.
+	 */
+	public static final String DELTA_EXCHANGE_S = "deltaExchange";
+
 	/** the value of nrof seconds in time unit -setting */
 	private int secondsInTimeUnit;
 	/** value of beta setting */
 	private double beta;
 	/** value of gamma setting */
 	private double gamma;
+	/** value of delta exchange setting */
+	private boolean deltaExchange;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
+	private PredictabilityTable preds;
+	/** versions of the other hosts' predictability tables seen last time */
+	private Map<DTNHost, Long> seenVersions;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -90,6 +101,8 @@ public class ProphetRouter extends ActiveRouter {
 			gamma = DEFAULT_GAMMA;
 		}
 
+		deltaExchange = prophetSettings.getBoolean(DELTA_EXCHANGE_S, false);
+
 		initPreds();
 	}
 
@@ -102,6 +115,7 @@ public class ProphetRouter extends ActiveRouter {
 		this.secondsInTimeUnit = r.secondsInTimeUnit;
 		this.beta = r.beta;
 		this.gamma = r.gamma;
+		this.deltaExchange = r.deltaExchange;
 		initPreds();
 	}
 
@@ -109,7 +123,9 @@ public class ProphetRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new PredictabilityTable(gamma, secondsInTimeUnit,
+				deltaExchange);
+		this.seenVersions = new HashMap<DTNHost, Long>();
 	}
 
 	@Override
@@ -131,7 +147,7 @@ public class ProphetRouter extends ActiveRouter {
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * P_INIT;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 
 	/**
@@ -141,13 +157,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -161,50 +171,17 @@ public class ProphetRouter extends ActiveRouter {
 		assert otherRouter instanceof ProphetRouter : "PRoPHET only works " +
 			" with other routers of same type";
 
-		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
-			((ProphetRouter)otherRouter).getDeliveryPreds();
-
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
+		PredictabilityTable othersPreds = ((ProphetRouter)otherRouter).preds;
 
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
-		}
-	}
-
-	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
-	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) /
-			secondsInTimeUnit;
-
-		if (timeDiff == 0) {
+		if (!deltaExchange) {
+			preds.updateTransitive(getHost(), host, othersPreds, beta, false);
 			return;
 		}
 
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
-
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-
-	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
-	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
-		return this.preds;
+		Long seen = seenVersions.get(host);
+		preds.updateTransitive(getHost(), host, othersPreds, beta, false,
+				(seen == null ? ChangeLog.NO_VERSION : seen));
+		seenVersions.put(host, othersPreds.getVersion());
 	}
 
 	@Override
@@ -298,14 +275,13 @@ public class ProphetRouter extends ActiveRouter {
 
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 				" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0, n=preds.size(); i<n; i++) {
+			DTNHost host = preds.getHost(i);
+			double value = preds.getValue(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
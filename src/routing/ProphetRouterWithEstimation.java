@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -72,16 +73,13 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	private double ptavg;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private PredictabilityTable preds;
 
 	/** last meeting time with a node */
 	private Map<DTNHost, Double> meetings;
 	private int nrofSamples;
 	private double meanIET;
 
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
-
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -126,7 +124,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new PredictabilityTable(gamma, 1);
 	}
 
 	/**
@@ -317,6 +315,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		}
 		gamma = Math.exp(-b);
 		pinit = 1-zeta;
+		preds.setGamma(gamma);
 	}
 
 	/**
@@ -327,7 +326,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * pinit;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 
 	/**
@@ -337,13 +336,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -357,52 +350,15 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		assert otherRouter instanceof ProphetRouterWithEstimation : "PRoPHET only works " +
 		" with other routers of same type";
 
-		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
-			((ProphetRouterWithEstimation)otherRouter).getDeliveryPreds();
-
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
-
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
-		}
-	}
-
-	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate);
-
-		if (timeDiff == 0) {
-			return;
-		}
-
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
-
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-
-	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
-	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
-		return this.preds;
+		preds.updateTransitive(getHost(), host,
+				((ProphetRouterWithEstimation)otherRouter).preds, beta, false);
 	}
 
 	@Override
 	public void update() {
+		/* the routers age their predictabilities with their own gammas, so
+		 * the order of the predictabilities can change as time passes */
+		markDirty();
 		super.update();
 		if (!canStartTransfer() ||isTransferring()) {
 			return; // nothing to transfer or is currently transferring
@@ -492,14 +448,13 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 		" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0, n=preds.size(); i<n; i++) {
+			DTNHost host = preds.getHost(i);
+			double value = preds.getValue(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
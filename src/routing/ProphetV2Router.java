@@ -16,6 +16,7 @@ import java.util.Map;
 
 import java.util.Random;
 
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 
 
@@ -69,14 +70,11 @@ public class ProphetV2Router extends ActiveRouter {
 	private double gamma;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private PredictabilityTable preds;
 
 	/** last encouter timestamp (sim)time */
 	private Map<DTNHost, Double> lastEncouterTime;
 
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
-
 	/**
 	 * Constructor. Creates a new message router based on the settings in
 	 * the given Settings object.
@@ -128,7 +126,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new PredictabilityTable(gamma, secondsInTimeUnit);
 	}
 
 	@Override
@@ -164,7 +162,7 @@ public class ProphetV2Router extends ActiveRouter {
 
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * PEnc;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 		lastEncouterTime.put(host, simTime);
 	}
 
@@ -190,13 +188,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -210,53 +202,8 @@ public class ProphetV2Router extends ActiveRouter {
 		assert otherRouter instanceof ProphetV2Router :
 			"PRoPHETv2 only works with other routers of same type";
 
-		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
-			((ProphetV2Router)otherRouter).getDeliveryPreds();
-
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
-
-//ProphetV2 max(old,new)
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pForHost * e.getValue() * beta;
-			if(pNew>pOld)
-				preds.put(e.getKey(), pNew);
-
-		}
-	}
-
-	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
-	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) /
-			secondsInTimeUnit;
-
-		if (timeDiff == 0) {
-			return;
-		}
-
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
-
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-
-	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
-	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
-		return this.preds;
+		preds.updateTransitive(getHost(), host,
+				((ProphetV2Router)otherRouter).preds, beta, true);
 	}
 
 	@Override
@@ -351,14 +298,13 @@ public class ProphetV2Router extends ActiveRouter {
 
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 				" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0, n=preds.size(); i<n; i++) {
+			DTNHost host = preds.getHost(i);
+			double value = preds.getValue(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
@@ -25,12 +25,14 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	public static final String BINARY_MODE = "binaryMode";
 	/** SprayAndWait router's settings name space ({@value})*/
 	public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
-	/** Message property key */
+	/** Message property key of the (typed int) nrof copies property */
 	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
 		"copies";
 
 	protected int initialNrofCopies;
 	protected boolean isBinary;
+	/** Typed message property slot of the nrof copies counter */
+	protected int copiesSlot;
 
 	public SprayAndWaitRouter(Settings s) {
 		super(s);
@@ -38,6 +40,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 
 		initialNrofCopies = snwSettings.getInt(NROF_COPIES);
 		isBinary = snwSettings.getBoolean( BINARY_MODE);
+		copiesSlot = Message.registerIntProperty(MSG_COUNT_PROPERTY);
 	}
 
 	/**
@@ -48,6 +51,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		super(r);
 		this.initialNrofCopies = r.initialNrofCopies;
 		this.isBinary = r.isBinary;
+		this.copiesSlot = r.copiesSlot;
 	}
 
 	@Override
@@ -58,9 +62,9 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		int nrofCopies = msg.getIntProperty(copiesSlot);
 
-		assert nrofCopies != null : "Not a SnW message: " + msg;
+		assert nrofCopies >= 0 : "Not a SnW message: " + msg;
 
 		if (isBinary) {
 			/* in binary S'n'W the receiving node gets floor(n/2) copies */
@@ -71,7 +75,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setIntProperty(copiesSlot, nrofCopies);
 		return msg;
 	}
 
@@ -80,7 +84,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.setIntProperty(copiesSlot, initialNrofCopies);
 		addToMessages(msg, true);
 		return true;
 	}
@@ -98,8 +102,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 
 		/* create a list of SAWMessages that have copies left to distribute */
-		@SuppressWarnings(value = "unchecked")
-		List<Message> copiesLeft = sortByQueueMode(getMessagesWithCopiesLeft());
+		List<Message> copiesLeft = getMessagesWithCopiesLeft();
 
 		if (copiesLeft.size() > 0) {
 			/* try to send those messages */
@@ -110,14 +113,15 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	/**
 	 * Creates and returns a list of messages this router is currently
 	 * carrying and still has copies left to distribute (nrof copies > 1).
+	 * The messages are in the send queue order.
 	 * @return A list of messages that have copies left
 	 */
 	protected List<Message> getMessagesWithCopiesLeft() {
 		List<Message> list = new ArrayList<Message>();
 
-		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "SnW message " + m + " didn't have " +
+		for (Message m : getQueuedMessages()) {
+			int nrofCopies = m.getIntProperty(copiesSlot);
+			assert nrofCopies >= 0 : "SnW message " + m + " didn't have " +
 				"nrof copies property!";
 			if (nrofCopies > 1) {
 				list.add(m);
@@ -136,7 +140,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	 */
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -146,7 +150,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getIntProperty(copiesSlot);
 		if (isBinary) {
 			/* in binary S'n'W the sending node keeps ceil(n/2) copies */
 			nrofCopies = (int)Math.ceil(nrofCopies/2.0);
@@ -154,7 +158,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setIntProperty(copiesSlot, nrofCopies);
 	}
 
 	@Override
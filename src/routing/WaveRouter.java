@@ -116,6 +116,8 @@ public class WaveRouter extends ActiveRouter {
 
 	@Override
 	public void update() {
+		/* immunity and custody times expire as time passes */
+		markDirty();
 		super.update();
 
 		if (isTransferring() || !canStartTransfer()) {
@@ -4,35 +4,47 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
+import routing.util.ChangeLog;
+
 /**
  * Dijkstra's shortest path implementation for MaxProp Router module.
+ * Distances are kept in primitive arrays indexed by node index (address)
+ * and the unvisited nodes are ordered with an indexed binary heap.
+ * The complete shortest path tree of a source node is cached and reused
+ * until a meeting probability set of a node in the tree is reported
+ * changed (see {@link #changed(int)}). After a change only the part of the
+ * tree that the change can affect, i.e., the nodes that were visited after
+ * the changed node, is recalculated.
  */
 public class MaxPropDijkstra {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous nodes on the shortest path(s) -- only used for
-	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Default number of shortest path trees (sources) that are cached */
+	public static final int DEFAULT_CACHE_SIZE = 4;
+	/** Value for a tree that doesn't need recalculation */
+	private static final int CLEAN = Integer.MAX_VALUE;
+
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
+	/** Log of the nodes whose probability sets have changed */
+	private ChangeLog changes;
+	/** Cached shortest path trees by their source node */
+	private Map<Integer, CostTree> trees;
+
+	/** The tree that is being calculated */
+	private CostTree tree;
+	/** Heap of unvisited nodes discovered so far */
+	private int[] heap;
+	/** Positions of the nodes in the heap (-1 for nodes not in the heap) */
+	private int[] heapPos;
+	/** Number of nodes in the heap */
+	private int heapSize;
 
 	/**
 	 * Constructor.
@@ -40,185 +52,350 @@ public class MaxPropDijkstra {
 	 * probability sets
 	 */
 	public MaxPropDijkstra(Map<Integer, MeetingProbabilitySet> probs) {
+		this(probs, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param probs A reference to the mapping of the known hosts meeting
+	 * probability sets
+	 * @param cacheSize How many shortest path trees (sources) are cached
+	 */
+	public MaxPropDijkstra(Map<Integer, MeetingProbabilitySet> probs,
+			final int cacheSize) {
 		this.probs = probs;
+		this.changes = new ChangeLog();
+		this.trees = new LinkedHashMap<Integer, CostTree>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(
+					Map.Entry<Integer, CostTree> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		this.heap = new int[0];
+		this.heapPos = new int[0];
 	}
 
 	/**
-	 * Initializes a new search with the first hop router node
-	 * @param firstHop The first hop router node
+	 * Reports that the probability set of a node has changed (or it was
+	 * added to or replaced in the mapping). Cached costs that depend on the
+	 * set are recalculated when they are requested next time.
+	 * @param node Index of the node whose set changed
 	 */
-	private void initWith(Integer firstHop) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevNodes = new HashMap<Integer, Integer>();
-		this.distancesFromStart = new DistanceMap();
-
-		// set distance to source 0 and initialize unvisited queue
-		this.distancesFromStart.put(firstHop, 0);
-		this.unvisited.add(firstHop);
+	public void changed(int node) {
+		this.changes.changed(node);
 	}
 
 	/**
 	 * Calculates total costs to the given set of target nodes. The cost to
 	 * a node is the sum of complements of probabilities that all the links
-	 * come up as the next contact of the nodes.
+	 * come up as the next contact of the nodes. Nothing is cached.
 	 * @param from The index (address) of the start node
 	 * @param to The address set of destination nodes
 	 * @return A map of (destination node, cost) tuples
 	 */
 	public Map<Integer, Double> getCosts(Integer from, Set<Integer> to) {
 		Map<Integer, Double> distMap = new HashMap<Integer, Double>();
-		int nrofNodesToFind = to.size();
+		CostTree t = new CostTree(from);
+		calculate(t);
+
+		for (Integer node : to) {
+			if (t.isVisited(node)) {
+				distMap.put(node, t.dist[node]);
+			}
+		}
 
-		initWith(from);
-		Integer node = null;
+		return distMap;
+	}
 
-		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (to.contains(node)) {
-				// found one of the requested nodes
-				distMap.put(node, distancesFromStart.get(node));
-				nrofNodesToFind--;
-				if (nrofNodesToFind == 0) {
-					break; // all requested nodes found
-				}
+	/**
+	 * Returns the total cost from a node to another node using the cached
+	 * shortest path tree of the start node, if it is still valid.
+	 * @param from The index (address) of the start node
+	 * @param to The index (address) of the destination node
+	 * @return The cost of the cheapest path or Double.MAX_VALUE if there's
+	 * no known path to the destination
+	 */
+	public double getCost(int from, int to) {
+		CostTree t = trees.get(from);
+
+		if (t == null) {
+			t = new CostTree(from);
+			t.version = changes.getVersion();
+			trees.put(from, t);
+		}
+		else if (t.version != changes.getVersion()) {
+			invalidate(t);
+		}
+
+		if (t.dirtyFrom != CLEAN) {
+			calculate(t);
+		}
+
+		return t.isVisited(to) ? t.dist[to] : INFINITY;
+	}
+
+	/**
+	 * Marks the part of a tree that depends on the probability sets changed
+	 * after the tree's version for recalculation.
+	 * @param t The tree
+	 */
+	private void invalidate(CostTree t) {
+		for (int i = changes.firstAfter(t.version), n = changes.size();
+				i < n; i++) {
+			if (!changes.isLatest(i)) {
+				continue;
+			}
+			int node = changes.getKey(i);
+			if (t.isVisited(node) && t.rank[node] < t.dirtyFrom) {
+				t.dirtyFrom = t.rank[node];
+			}
+			/* non-visited nodes are not reachable from the source so
+			 * their neighbors don't affect the costs */
+		}
+		t.version = changes.getVersion();
+	}
+
+	/**
+	 * (Re)calculates a shortest path tree starting from its first dirty
+	 * node. The nodes visited before that are unaffected by the changes and
+	 * their distances are kept.
+	 * @param t The tree
+	 */
+	private void calculate(CostTree t) {
+		int keep = Math.min(t.dirtyFrom, t.nrofVisited);
+		this.tree = t;
+		this.heapSize = 0;
+
+		/* forget the nodes visited after the first changed node */
+		for (int i = keep; i < t.nrofVisited; i++) {
+			int node = t.order[i];
+			t.rank[node] = -1;
+			t.dist[node] = INFINITY;
+		}
+		t.nrofVisited = keep;
+
+		if (keep == 0) {
+			setDistance(t.source, 0);
+		}
+		else {
+			/* rediscover the unvisited nodes from the kept ones */
+			for (int i = 0; i < keep; i++) {
+				relax(t.order[i]);
 			}
+		}
 
-			visited.add(node); // mark the node as visited
-			relax(node);       // add/update neighbor nodes' distances
+		// always take the node with shortest distance
+		while (heapSize > 0) {
+			int node = poll();
+			t.visit(node);
+			relax(node); // add/update neighbor nodes' distances
 		}
 
-		return distMap;
+		t.dirtyFrom = CLEAN;
+		this.tree = null;
 	}
 
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
 	 * @param node The node whose neighbors are relaxed
 	 */
-	private void relax(Integer node) {
-		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
+	private void relax(int node) {
+		double nodeDist = tree.dist[node];
+		MeetingProbabilitySet nodeProbs = this.probs.get(node);
 
-		if (!this.probs.containsKey(node)) {
+		if (nodeProbs == null) {
 			return; // node's neighbors are not known
 		}
 
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-
-		for (Integer n : neighbors) {
-			if (visited.contains(n)) {
+		for (int i=0, size=nodeProbs.size(); i<size; i++) {
+			int n = nodeProbs.getNodeIndex(i);
+			if (tree.isVisited(n)) {
 				continue; // skip visited nodes
 			}
 
 			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+			double nDist = nodeDist + (1 - nodeProbs.getProbFor(n));
 
-			if (distancesFromStart.get(n) > nDist) {
+			if (tree.getDistance(n) > nDist) {
 				// stored distance > found dist -> update
-				prevNodes.put(n, node); // for debugging
 				setDistance(n, nDist);
 			}
 		}
 	}
 
 	/**
-	 * Sets the distance from source node to a node
+	 * Sets the distance from source node to a node and moves the node to
+	 * its new place in the heap
 	 * @param n The node whose distance is set
 	 * @param distance The distance of the node from the source node
 	 */
-	private void setDistance(Integer n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distancesFromStart.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+	private void setDistance(int n, double distance) {
+		tree.ensureCapacity(n);
+		if (n >= heapPos.length) {
+			int oldLength = heapPos.length;
+			heapPos = Arrays.copyOf(heapPos, Math.max(n + 1, oldLength * 2));
+			Arrays.fill(heapPos, oldLength, heapPos.length, -1);
+			heap = Arrays.copyOf(heap, heapPos.length);
+		}
+
+		tree.dist[n] = distance;
+		if (heapPos[n] < 0) {
+			heap[heapSize] = n;
+			heapPos[n] = heapSize;
+			heapSize++;
+		}
+		siftUp(heapPos[n]); // distances only decrease
 	}
 
 	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to".
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
+	 * Removes and returns the node with the shortest distance from the heap
+	 * @return The node with the shortest distance
 	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
+	private int poll() {
+		int first = heap[0];
+		heapPos[first] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return first;
 	}
 
 	/**
-	 * Comparator that compares two nodes by their distance from
-	 * the source node.
+	 * Moves a heap entry up until the heap order is restored
+	 * @param pos Position of the entry
 	 */
-	private class DistanceComparator implements
-		Comparator<Integer> {
-
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(Integer node1, Integer node2) {
-			double dist1 = distancesFromStart.get(node1);
-			double dist2 = distancesFromStart.get(node2);
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
 
-			if (dist1 > dist2) {
-				return 1;
+	/**
+	 * Moves a heap entry down until the heap order is restored
+	 * @param pos Position of the entry
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= heapSize) {
+				break;
 			}
-			else if (dist1 < dist2) {
-				return -1;
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+				child++;
 			}
-			else {
-				return node1.compareTo(node2);
+			if (!isBefore(heap[child], node)) {
+				break;
 			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
 		}
+		heap[pos] = node;
+		heapPos[node] = pos;
 	}
 
 	/**
-	 * Simple Map implementation for storing distances.
+	 * Compares two nodes by their distance from the source node. Ties are
+	 * broken by the node index.
+	 * @return true if node1 should be visited before node2
 	 */
-	private class DistanceMap {
-		private HashMap<Integer, Double> map;
+	private boolean isBefore(int node1, int node2) {
+		double dist1 = tree.dist[node1];
+		double dist2 = tree.dist[node2];
+		return dist1 < dist2 || (dist1 == dist2 && node1 < node2);
+	}
+
+	/**
+	 * Shortest path tree (distances and the visiting order) from a source
+	 * node.
+	 */
+	private static class CostTree {
+		/** Index of the source node */
+		private final int source;
+		/** Distances of the nodes from the source node */
+		private double[] dist;
+		/** Visiting order of each visited node (-1 for non-visited nodes) */
+		private int[] rank;
+		/** Visited nodes in the visiting order */
+		private int[] order;
+		/** Number of visited nodes */
+		private int nrofVisited;
+		/** Version of the change log that the tree is up to date with */
+		private long version;
+		/** Rank of the first node whose subtree must be recalculated */
+		private int dirtyFrom;
 
 		/**
-		 * Constructor. Creates an empty distance map
+		 * Creates a new tree that needs to be calculated
+		 * @param source Index of the source node
 		 */
-		public DistanceMap() {
-			this.map = new HashMap<Integer, Double>();
+		public CostTree(int source) {
+			this.source = source;
+			this.dist = new double[0];
+			this.rank = new int[0];
+			this.order = new int[0];
+			this.nrofVisited = 0;
+			this.version = ChangeLog.NO_VERSION;
+			this.dirtyFrom = 0;
+			ensureCapacity(source);
 		}
 
 		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link MaxPropDijkstra#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
+		 * Makes sure that the arrays have room for the given node index
+		 * @param node The node index
 		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
-			}
-			else {
-				return INFINITY;
+		public void ensureCapacity(int node) {
+			if (node < dist.length) {
+				return;
 			}
+			int oldLength = dist.length;
+			int newLength = Math.max(node + 1, oldLength * 2);
+			dist = Arrays.copyOf(dist, newLength);
+			rank = Arrays.copyOf(rank, newLength);
+			order = Arrays.copyOf(order, newLength);
+			Arrays.fill(dist, oldLength, newLength, INFINITY);
+			Arrays.fill(rank, oldLength, newLength, -1);
+		}
+
+		/**
+		 * Returns the current distance of a node
+		 * @param node The node
+		 * @return The distance or {@link MaxPropDijkstra#INFINITY} if the
+		 * node hasn't been discovered
+		 */
+		public double getDistance(int node) {
+			return node < dist.length ? dist[node] : INFINITY;
 		}
 
 		/**
-		 * Puts a new distance value for a map node
+		 * Returns true if the node's shortest path is known
 		 * @param node The node
-		 * @param distance Distance to that node
+		 * @return true if the node has been visited
 		 */
-		public void  put(Integer node, double distance) {
-			map.put(node, distance);
+		public boolean isVisited(int node) {
+			return node < rank.length && rank[node] >= 0;
 		}
 
 		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
+		 * Marks a node visited
+		 * @param node The node
 		 */
-		public String toString() {
-			return map.toString();
+		public void visit(int node) {
+			rank[node] = nrofVisited;
+			order[nrofVisited++] = node;
 		}
 	}
 }
@@ -4,6 +4,7 @@
  */
 package routing.maxprop;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,17 +15,34 @@ import static core.Constants.DEBUG;
 
 /**
  * Class for storing and manipulating the meeting probabilities for the MaxProp
- * router module.
+ * router module. The probabilities are stored in arrays indexed by node index
+ * and scaled with a single scale factor, so normalizing the set after an
+ * update is a single multiplication. The entries are also kept in a binary
+ * min-heap for dropping the smallest probability when the set is full.
  */
 public class MeetingProbabilitySet {
 	public static final int INFINITE_SET_SIZE = Integer.MAX_VALUE;
-	/** meeting probabilities (probability that the next node one meets is X) */
-	private Map<Integer, Double> probs;
+	/** Smallest scale factor before the values are renormalized */
+	private static final double MIN_SCALE = 1e-200;
+
+	/** unscaled meeting probabilities (probability that the next node one
+	 * meets is X) indexed by node index; the real value is
+	 * <CODE>values[X] * scale</CODE> */
+	private double[] values;
+	/** position of each node index in the heap or -1 if the node has no
+	 * entry in the set */
+	private int[] heapPos;
+	/** node indexes of the entries in a min-heap ordered by the value */
+	private int[] heap;
+	/** number of entries in the set */
+	private int size;
+	/** scale factor of all the values */
+	private double scale;
 	/** the time when this MPS was last updated */
 	private double lastUpdateTime;
 	/** the alpha parameter */
 	private double alpha;
-    private int maxSetSize;
+	private int maxSetSize;
 
 	/**
 	 * Constructor. Creates a probability set with empty node-probability
@@ -34,14 +52,16 @@ public class MeetingProbabilitySet {
 	 */
 	public MeetingProbabilitySet(int maxSetSize, double alpha) {
 		this.alpha = alpha;
-		this.probs = new HashMap<Integer, Double>();
-        if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
-	this.probs = new HashMap<Integer, Double>();
-	this.maxSetSize = INFINITE_SET_SIZE;
-        } else {
-	this.probs = new HashMap<Integer, Double>(maxSetSize);
-            this.maxSetSize = maxSetSize;
-        }
+		if (maxSetSize == INFINITE_SET_SIZE || maxSetSize < 1) {
+			this.maxSetSize = INFINITE_SET_SIZE;
+		} else {
+			this.maxSetSize = maxSetSize;
+		}
+		this.values = new double[0];
+		this.heapPos = new int[0];
+		this.heap = new int[8];
+		this.size = 0;
+		this.scale = 1;
 		this.lastUpdateTime = 0;
 	}
 
@@ -62,7 +82,7 @@ public class MeetingProbabilitySet {
 		this(INFINITE_SET_SIZE, alpha);
 		double prob = 1.0/initiallyKnownNodes.size();
 		for (Integer i : initiallyKnownNodes) {
-			this.probs.put(i, prob);
+			setProb(i, prob);
 		}
 	}
 
@@ -72,41 +92,56 @@ public class MeetingProbabilitySet {
 	 * Normalize{P}</PRE>
 	 * I.e., The probability of the given node index is increased by one and
 	 * then all the probabilities are normalized so that their sum equals to 1.
+	 * If the set is full after the update, the smallest probability is
+	 * dropped and the rest are normalized again.
 	 * @param index The node index to update the probability for
 	 */
 	public void updateMeetingProbFor(Integer index) {
-        Map.Entry<Integer, Double> smallestEntry = null;
-        double smallestValue = Double.MAX_VALUE;
-
 		this.lastUpdateTime = SimClock.getTime();
 
-		if (probs.size() == 0) { // first entry
-			probs.put(index, 1.0);
+		if (size == 0) { // first entry
+			setProb(index, 1.0);
 			return;
 		}
 
 		double newValue = getProbFor(index) + alpha;
-		probs.put(index, newValue);
+		setProb(index, newValue);
 
 		/* now the sum of all entries is 1+alpha;
 		 * normalize to one by dividing all the entries by 1+alpha */
-		for (Map.Entry<Integer, Double> entry : probs.entrySet()) {
-			entry.setValue(entry.getValue() / (1+alpha));
-            if (entry.getValue() < smallestValue) {
-                smallestEntry = entry;
-                smallestValue = entry.getValue();
-            }
+		this.scale /= (1+alpha);
+		if (this.scale < MIN_SCALE) {
+			renormalize();
+		}
 
+		if (size >= maxSetSize) {
+			dropSmallest();
 		}
+	}
+
+	/**
+	 * Drops the entry with the smallest probability and normalizes the
+	 * remaining probabilities so that their sum equals to 1 again.
+	 */
+	private void dropSmallest() {
+		double dropped = values[heap[0]] * scale;
+		removeSmallest();
+		if (DEBUG) core.Debug.p("Probsize: " + (size + 1) + " dropping " +
+				dropped);
 
-        if (probs.size() >= maxSetSize) {
-            if (DEBUG) core.Debug.p("Probsize: " + probs.size() + " dropping " +
-					probs.remove(smallestEntry.getKey()));
-        }
+		if (size == 0 || dropped >= 1) {
+			this.scale = 1;
+			return;
+		}
+
+		this.scale /= (1 - dropped);
+		if (this.scale < MIN_SCALE) {
+			renormalize();
+		}
 	}
 
 	public void updateMeetingProbFor(Integer index, double iet)	{
-		probs.put(index, iet);
+		setProb(index, iet);
 	}
 
 	/**
@@ -115,8 +150,17 @@ public class MeetingProbabilitySet {
 	 * @return the current delivery probability value
 	 */
 	public double getProbFor(Integer index) {
-		if (probs.containsKey(index)) {
-			return probs.get(index);
+		return getProbFor(index.intValue());
+	}
+
+	/**
+	 * Returns the current delivery probability value for the given node index
+	 * @param index The index of the node to look the P for
+	 * @return the current delivery probability value
+	 */
+	public double getProbFor(int index) {
+		if (index < heapPos.length && heapPos[index] >= 0) {
+			return values[index] * scale;
 		}
 		else {
 			/* the node with the given index has not been met */
@@ -125,11 +169,33 @@ public class MeetingProbabilitySet {
 	}
 
 	/**
-	 * Returns a reference to the probability map of this probability set
-	 * @return a reference to the probability map of this probability set
+	 * Returns the number of node indexes that have a probability in this set
+	 * @return the number of entries in the set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the node index of an entry. The entries are in no particular
+	 * order and their order changes when the set is updated.
+	 * @param i Index of the entry (0...{@link #size()}-1)
+	 * @return The node index of the entry
+	 */
+	public int getNodeIndex(int i) {
+		return heap[i];
+	}
+
+	/**
+	 * Returns a copy of the probabilities of this probability set as a map
+	 * @return node index - probability mapping of this probability set
 	 */
 	public Map<Integer, Double> getAllProbs() {
-		return this.probs;
+		Map<Integer, Double> map = new HashMap<Integer, Double>();
+		for (int i=0; i<size; i++) {
+			map.put(heap[i], values[heap[i]] * scale);
+		}
+		return map;
 	}
 
 	/**
@@ -147,6 +213,107 @@ public class MeetingProbabilitySet {
 		this.alpha = alpha;
 	}
 
+	/**
+	 * Sets the (scaled) probability for a node index, adding a new entry
+	 * if the index didn't have one.
+	 * @param index The node index
+	 * @param prob The probability
+	 */
+	private void setProb(int index, double prob) {
+		if (index >= values.length) {
+			int newLength = Math.max(index + 1, values.length * 2);
+			int oldLength = values.length;
+			values = Arrays.copyOf(values, newLength);
+			heapPos = Arrays.copyOf(heapPos, newLength);
+			Arrays.fill(heapPos, oldLength, newLength, -1);
+		}
+
+		values[index] = prob / scale;
+
+		if (heapPos[index] < 0) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			heap[size] = index;
+			heapPos[index] = size;
+			size++;
+			siftUp(size - 1);
+		} else {
+			siftUp(heapPos[index]);
+			siftDown(heapPos[index]);
+		}
+	}
+
+	/**
+	 * Removes the entry with the smallest probability
+	 */
+	private void removeSmallest() {
+		int removed = heap[0];
+		size--;
+		heapPos[removed] = -1;
+		if (size > 0) {
+			heap[0] = heap[size];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Applies the scale factor to all the stored values
+	 */
+	private void renormalize() {
+		for (int i=0; i<size; i++) {
+			values[heap[i]] *= scale;
+		}
+		scale = 1;
+	}
+
+	/**
+	 * Returns true if heap entry a should be before heap entry b. Ties of
+	 * the values are broken by the node index.
+	 */
+	private boolean isBefore(int a, int b) {
+		double va = values[a];
+		double vb = values[b];
+		return va < vb || (va == vb && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
 	/**
 	 * Returns a deep copy of the probability set
 	 * @return a deep copy of the probability set
@@ -156,9 +323,11 @@ public class MeetingProbabilitySet {
 				this.maxSetSize, alpha);
 
 		// do a deep copy
-		for (Map.Entry<Integer, Double> e : probs.entrySet()) {
-			replica.probs.put(e.getKey(), e.getValue().doubleValue());
-		}
+		replica.values = this.values.clone();
+		replica.heapPos = this.heapPos.clone();
+		replica.heap = Arrays.copyOf(this.heap, Math.max(this.size, 1));
+		replica.size = this.size;
+		replica.scale = this.scale;
 
 		replica.lastUpdateTime = this.lastUpdateTime;
 		return replica;
@@ -168,8 +337,8 @@ public class MeetingProbabilitySet {
 	 * Returns a String presentation of the probabilities
 	 * @return a String presentation of the probabilities
 	 */
-    @Override
+	@Override
 	public String toString() {
-		return "probs: " +	this.probs.toString();
+		return "probs: " +	getAllProbs().toString();
 	}
 }
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contact plan for contact graph routing: a set of planned, directed,
+ * contacts between nodes with their start and end times and a delay.
+ * The contacts are indexed as a time-indexed graph: every node has an
+ * int-indexed list of neighbor edges and every edge has its contacts
+ * sorted by the end time so that the first contact still usable at a given
+ * time can be found with a binary search. Routes are found with an earliest
+ * arrival time Dijkstra.
+ * <P>A contact that starts at <CODE>start</CODE>, ends at <CODE>end</CODE>
+ * and has delay <CODE>delay</CODE> can be used by a message that is at the
+ * contact's source node at time <CODE>t &lt;= end</CODE> and it delivers
+ * the message to the other node at <CODE>max(t, start) + delay</CODE>.</P>
+ */
+public class ContactPlan {
+	/** Value for infinite time */
+	private static final double INFINITY = Double.MAX_VALUE;
+
+	/** number of contacts */
+	private int nrofContacts;
+	/** source node addresses of the contacts */
+	private int[] froms;
+	/** destination node addresses of the contacts */
+	private int[] tos;
+	/** start times of the contacts */
+	private double[] starts;
+	/** end times of the contacts */
+	private double[] ends;
+	/** delays of the contacts */
+	private double[] delays;
+	/** number of nodes (biggest address + 1) */
+	private int nrofNodes;
+
+	/** is the graph index up to date with the contacts */
+	private boolean indexed;
+	/** index of the first edge of each node in {@link #edgeTo} */
+	private int[] nodeFirstEdge;
+	/** destination nodes of the edges */
+	private int[] edgeTo;
+	/** index of the first contact of each edge in {@link #edgeContacts} */
+	private int[] edgeFirstContact;
+	/** contacts ordered by source, destination and end time */
+	private int[] edgeContacts;
+	/** smallest start time of the contacts of an edge from this index on */
+	private double[] minStartFrom;
+
+	/** earliest arrival times of the search */
+	private double[] arrival;
+	/** contact used to reach each node in the search */
+	private int[] prevContact;
+	/** search number when the node's values were last set */
+	private int[] searchOf;
+	/** has the node been visited in the search */
+	private boolean[] visited;
+	/** number of the current search */
+	private int search;
+	/** heap of the discovered but not visited nodes */
+	private int[] heap;
+	/** positions of the nodes in the heap */
+	private int[] heapPos;
+	/** number of nodes in the heap */
+	private int heapSize;
+
+	/**
+	 * Creates a new, empty, contact plan
+	 */
+	public ContactPlan() {
+		this.froms = new int[16];
+		this.tos = new int[16];
+		this.starts = new double[16];
+		this.ends = new double[16];
+		this.delays = new double[16];
+		this.nrofContacts = 0;
+		this.nrofNodes = 0;
+		this.indexed = false;
+	}
+
+	/**
+	 * Creates a contact plan from the entries of a schedule oracle. Each
+	 * entry is a contact that starts and ends at the entry's time and whose
+	 * delay is the entry's duration.
+	 * @param oracle The oracle
+	 */
+	public ContactPlan(ScheduleOracle oracle) {
+		this();
+		for (ScheduleEntry se : oracle.getEntries()) {
+			addContact(se.getFrom(), se.getTo(), se.getTime(), se.getTime(),
+					se.getDuration());
+		}
+	}
+
+	/**
+	 * Reads a contact plan from connection up and down events of a
+	 * {@link StandardEventsReader} file (e.g., output of
+	 * {@link report.ConnectivityONEReport}). Every connection is a contact
+	 * to both directions with zero delay. Connections that are not
+	 * closed in the file last forever.
+	 * @param file The file to read
+	 * @return The contact plan
+	 */
+	public static ContactPlan read(File file) {
+		final int chunkSize = 1000;
+		ContactPlan plan = new ContactPlan();
+		StandardEventsReader reader = new StandardEventsReader(file);
+		Map<Long, Double> upTimes = new HashMap<Long, Double>();
+		List<ExternalEvent> events;
+
+		do {
+			events = reader.readEvents(chunkSize);
+			for (ExternalEvent ee : events) {
+				if (!(ee instanceof ConnectionEvent)) {
+					continue;
+				}
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				int a = Math.min(ce.getFromAddr(), ce.getToAddr());
+				int b = Math.max(ce.getFromAddr(), ce.getToAddr());
+				Long pair = ((long)a << 32) | b;
+
+				if (ce.isUp()) {
+					if (!upTimes.containsKey(pair)) {
+						upTimes.put(pair, ce.getTime());
+					}
+				}
+				else {
+					Double start = upTimes.remove(pair);
+					if (start != null) {
+						plan.addContact(a, b, start, ce.getTime(), 0);
+						plan.addContact(b, a, start, ce.getTime(), 0);
+					}
+				}
+			}
+		} while (events.size() > 0);
+		reader.close();
+
+		for (Map.Entry<Long, Double> e : upTimes.entrySet()) {
+			int a = (int)(e.getKey() >>> 32);
+			int b = (int)(e.getKey() & 0xffffffffL);
+			plan.addContact(a, b, e.getValue(), INFINITY, 0);
+			plan.addContact(b, a, e.getValue(), INFINITY, 0);
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Adds a new (directed) contact to the plan
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @param start Start time of the contact
+	 * @param end End time of the contact
+	 * @param delay How long it takes to get to the destination
+	 */
+	public void addContact(int from, int to, double start, double end,
+			double delay) {
+		assert start <= end : "Contact can't end before it starts";
+		if (nrofContacts == froms.length) {
+			int newLength = nrofContacts * 2;
+			froms = Arrays.copyOf(froms, newLength);
+			tos = Arrays.copyOf(tos, newLength);
+			starts = Arrays.copyOf(starts, newLength);
+			ends = Arrays.copyOf(ends, newLength);
+			delays = Arrays.copyOf(delays, newLength);
+		}
+
+		froms[nrofContacts] = from;
+		tos[nrofContacts] = to;
+		starts[nrofContacts] = start;
+		ends[nrofContacts] = end;
+		delays[nrofContacts] = delay;
+		nrofContacts++;
+		nrofNodes = Math.max(nrofNodes, Math.max(from, to) + 1);
+		indexed = false;
+	}
+
+	/**
+	 * Returns the number of (directed) contacts in the plan
+	 * @return the number of contacts
+	 */
+	public int getNrofContacts() {
+		return this.nrofContacts;
+	}
+
+	/**
+	 * Builds the graph index of the contacts
+	 */
+	private void buildIndex() {
+		Integer[] order = new Integer[nrofContacts];
+		for (int i=0; i<nrofContacts; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer c1, Integer c2) {
+				if (froms[c1] != froms[c2]) {
+					return froms[c1] - froms[c2];
+				}
+				if (tos[c1] != tos[c2]) {
+					return tos[c1] - tos[c2];
+				}
+				return Double.compare(ends[c1], ends[c2]);
+			}
+		});
+
+		edgeContacts = new int[nrofContacts];
+		minStartFrom = new double[nrofContacts];
+		nodeFirstEdge = new int[nrofNodes + 1];
+		int[] edgeToTmp = new int[nrofContacts];
+		int[] edgeFirstTmp = new int[nrofContacts + 1];
+		int nrofEdges = 0;
+
+		for (int i=0; i<nrofContacts; i++) {
+			int c = order[i];
+			edgeContacts[i] = c;
+			if (i == 0 || froms[c] != froms[order[i-1]] ||
+					tos[c] != tos[order[i-1]]) {
+				edgeToTmp[nrofEdges] = tos[c];
+				edgeFirstTmp[nrofEdges] = i;
+				nrofEdges++;
+				nodeFirstEdge[froms[c] + 1] = nrofEdges;
+			}
+		}
+		edgeFirstTmp[nrofEdges] = nrofContacts;
+
+		/* nodes without edges start where the previous node's edges end */
+		for (int n=1; n<=nrofNodes; n++) {
+			nodeFirstEdge[n] = Math.max(nodeFirstEdge[n], nodeFirstEdge[n-1]);
+		}
+		edgeTo = Arrays.copyOf(edgeToTmp, nrofEdges);
+		edgeFirstContact = Arrays.copyOf(edgeFirstTmp, nrofEdges + 1);
+
+		for (int e=0; e<nrofEdges; e++) {
+			double min = INFINITY;
+			for (int i=edgeFirstContact[e+1]-1; i>=edgeFirstContact[e]; i--) {
+				min = Math.min(min, starts[edgeContacts[i]]);
+				minStartFrom[i] = min;
+			}
+		}
+
+		arrival = new double[nrofNodes];
+		prevContact = new int[nrofNodes];
+		searchOf = new int[nrofNodes];
+		visited = new boolean[nrofNodes];
+		heap = new int[nrofNodes];
+		heapPos = new int[nrofNodes];
+		search = 0;
+		indexed = true;
+	}
+
+	/**
+	 * Finds the route that reaches the destination node the earliest
+	 * @param from Address of the source node
+	 * @param to Address of the destination node
+	 * @param time The time when the route starts at the source node
+	 * @return The route or {@link ContactRoute#NONE} if the destination
+	 * can't be reached
+	 */
+	public ContactRoute getRoute(int from, int to, double time) {
+		if (!indexed) {
+			buildIndex();
+		}
+		if (from == to || from >= nrofNodes || to >= nrofNodes) {
+			return ContactRoute.NONE;
+		}
+
+		search++;
+		heapSize = 0;
+		setArrival(from, time, -1);
+
+		while (heapSize > 0) {
+			int node = poll();
+			if (node == to) {
+				return createRoute(from, to);
+			}
+			visited[node] = true;
+			relax(node);
+		}
+
+		return ContactRoute.NONE;
+	}
+
+	/**
+	 * Relaxes the neighbors of a node (updates the earliest arrival times)
+	 * @param node The node whose neighbors are relaxed
+	 */
+	private void relax(int node) {
+		double time = arrival[node];
+
+		for (int e=nodeFirstEdge[node]; e<nodeFirstEdge[node+1]; e++) {
+			int n = edgeTo[e];
+			if (isVisited(n)) {
+				continue;
+			}
+
+			/* contacts of the edge that haven't ended before the time */
+			int i = firstEndingAfter(e, time);
+			double best = getArrival(n);
+			int bestContact = -1;
+			for (int last=edgeFirstContact[e+1]; i<last; i++) {
+				if (Math.max(time, minStartFrom[i]) >= best) {
+					break; // none of the rest can be faster
+				}
+				int c = edgeContacts[i];
+				double nTime = Math.max(time, starts[c]) + delays[c];
+				if (nTime < best) {
+					best = nTime;
+					bestContact = c;
+				}
+			}
+
+			if (bestContact >= 0) {
+				setArrival(n, best, bestContact);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the first contact of an edge that ends at or
+	 * after the given time
+	 * @param edge The edge
+	 * @param time The time
+	 * @return Index of the contact in {@link #edgeContacts}
+	 */
+	private int firstEndingAfter(int edge, double time) {
+		int low = edgeFirstContact[edge];
+		int high = edgeFirstContact[edge + 1];
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ends[edgeContacts[mid]] < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Creates the route from the contacts of the search
+	 * @param from The source node
+	 * @param to The destination node
+	 * @return The route
+	 */
+	private ContactRoute createRoute(int from, int to) {
+		int nrofHops = 0;
+		for (int n = to; n != from; n = froms[prevContact[n]]) {
+			nrofHops++;
+		}
+
+		int[] hops = new int[nrofHops];
+		double expiry = INFINITY;
+		for (int n = to, i = nrofHops - 1; n != from;
+				n = froms[prevContact[n]], i--) {
+			hops[i] = n;
+			expiry = Math.min(expiry, ends[prevContact[n]]);
+		}
+
+		return new ContactRoute(hops, arrival[to], expiry);
+	}
+
+	/**
+	 * Returns true if the node has been visited in the current search
+	 * @param node The node
+	 * @return true if the node has been visited
+	 */
+	private boolean isVisited(int node) {
+		return searchOf[node] == search && visited[node];
+	}
+
+	/**
+	 * Returns the earliest arrival time found for a node in this search
+	 * @param node The node
+	 * @return The arrival time or {@link #INFINITY} if not found yet
+	 */
+	private double getArrival(int node) {
+		return searchOf[node] == search ? arrival[node] : INFINITY;
+	}
+
+	/**
+	 * Sets a new earliest arrival time for a node and moves the node to its
+	 * new place in the heap
+	 * @param node The node
+	 * @param time The arrival time
+	 * @param contact The contact that reaches the node at that time
+	 */
+	private void setArrival(int node, double time, int contact) {
+		if (searchOf[node] != search) {
+			searchOf[node] = search;
+			visited[node] = false;
+			heapPos[node] = heapSize;
+			heap[heapSize++] = node;
+		}
+		arrival[node] = time;
+		prevContact[node] = contact;
+		siftUp(heapPos[node]);
+	}
+
+	/**
+	 * Removes and returns the node with the earliest arrival time
+	 * @return The node
+	 */
+	private int poll() {
+		int first = heap[0];
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * Moves a heap entry up until the heap order is restored
+	 * @param pos Position of the entry
+	 */
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			heapPos[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
+	/**
+	 * Moves a heap entry down until the heap order is restored
+	 * @param pos Position of the entry
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			heapPos[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		heapPos[node] = pos;
+	}
+
+	/**
+	 * Compares two nodes by their arrival times. Ties are broken by the node
+	 * address.
+	 * @return true if node1 should be visited before node2
+	 */
+	private boolean isBefore(int node1, int node2) {
+		return arrival[node1] < arrival[node2] ||
+			(arrival[node1] == arrival[node2] && node1 < node2);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.schedule;
+
+/**
+ * A route through a {@link ContactPlan}: the hops (node addresses) after
+ * the source, the earliest arrival time at the destination and the time
+ * after which the route can't be used anymore because one of its contacts
+ * has ended.
+ */
+public class ContactRoute {
+	/** Route that is used when there's no route to the destination */
+	public static final ContactRoute NONE =
+		new ContactRoute(new int[0], Double.MAX_VALUE, Double.MAX_VALUE);
+
+	/** Addresses of the nodes on the route (without the source) */
+	private final int[] hops;
+	/** Time when the route reaches its destination */
+	private final double arrivalTime;
+	/** Last time when the route is still usable */
+	private final double expiryTime;
+
+	/**
+	 * Constructor.
+	 * @param hops Addresses of the nodes on the route (without the source)
+	 * @param arrivalTime Time when the route reaches its destination
+	 * @param expiryTime Last time when the route is still usable
+	 */
+	public ContactRoute(int[] hops, double arrivalTime, double expiryTime) {
+		this.hops = hops;
+		this.arrivalTime = arrivalTime;
+		this.expiryTime = expiryTime;
+	}
+
+	/**
+	 * Returns the number of hops on the route (zero for {@link #NONE})
+	 * @return the number of hops
+	 */
+	public int size() {
+		return hops.length;
+	}
+
+	/**
+	 * Returns the address of a node on the route
+	 * @param index Index of the hop (0 is the next hop)
+	 * @return The address of the node
+	 */
+	public int getHop(int index) {
+		return hops[index];
+	}
+
+	/**
+	 * Returns the address of the next hop node
+	 * @return the address of the next hop or -1 if there's no route
+	 */
+	public int getNextHop() {
+		return hops.length > 0 ? hops[0] : -1;
+	}
+
+	/**
+	 * Returns the time when the route reaches its destination
+	 * @return the arrival time
+	 */
+	public double getArrivalTime() {
+		return arrivalTime;
+	}
+
+	/**
+	 * Returns the last time when the route can still be used
+	 * @return the expiry time
+	 */
+	public double getExpiryTime() {
+		return expiryTime;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int hop : hops) {
+			sb.append("->").append(hop);
+		}
+		return sb + " @" + arrivalTime + " (valid until " + expiryTime + ")";
+	}
+}
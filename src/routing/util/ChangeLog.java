@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+/**
+ * Versioned log of changes to integer keyed routing state (e.g., entries
+ * indexed by host address). Every change gets a new, increasing, version
+ * number so a peer that remembers the version it saw last time can visit
+ * only the keys that have changed after that (summary vector style
+ * exchange). Old log entries of keys that have changed again are compacted
+ * away when the log grows large.
+ */
+public class ChangeLog {
+	/** Version that is older than any change */
+	public static final long NO_VERSION = 0;
+
+	/** current (latest) version */
+	private long version;
+	/** changed keys in the order of change */
+	private int[] keys;
+	/** versions of the changes in {@link #keys} */
+	private long[] versions;
+	/** number of entries in the log */
+	private int size;
+	/** latest change version of each key (indexed by key) */
+	private long[] latest;
+	/** number of distinct keys in the log */
+	private int nrofKeys;
+
+	/**
+	 * Creates a new, empty, change log
+	 */
+	public ChangeLog() {
+		this.version = NO_VERSION;
+		this.keys = new int[16];
+		this.versions = new long[16];
+		this.latest = new long[16];
+		this.size = 0;
+		this.nrofKeys = 0;
+	}
+
+	/**
+	 * Records a change for a key
+	 * @param key The (non-negative) key that changed
+	 */
+	public void changed(int key) {
+		if (key >= latest.length) {
+			latest = Arrays.copyOf(latest, Math.max(key + 1,
+					latest.length * 2));
+		}
+		if (latest[key] == NO_VERSION) {
+			nrofKeys++;
+		}
+
+		if (size == keys.length) {
+			if (size > 2 * nrofKeys) {
+				compact();
+			} else {
+				keys = Arrays.copyOf(keys, size * 2);
+				versions = Arrays.copyOf(versions, size * 2);
+			}
+		}
+
+		version++;
+		latest[key] = version;
+		keys[size] = key;
+		versions[size] = version;
+		size++;
+	}
+
+	/**
+	 * Removes the log entries that have been superseded by a later change
+	 * of the same key.
+	 */
+	private void compact() {
+		int n = 0;
+		for (int i=0; i<size; i++) {
+			if (latest[keys[i]] == versions[i]) {
+				keys[n] = keys[i];
+				versions[n] = versions[i];
+				n++;
+			}
+		}
+		size = n;
+	}
+
+	/**
+	 * Returns the latest version of the log
+	 * @return the latest version
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Returns the index of the first log entry that is newer than the given
+	 * version. Entries from that index up to {@link #size()}-1 are the
+	 * changes after the version.
+	 * @param since The version
+	 * @return Index of the first newer entry
+	 */
+	public int firstAfter(long since) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (versions[mid] <= since) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the number of entries in the log
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the key of a log entry
+	 * @param index Index of the entry
+	 * @return The key of the entry
+	 */
+	public int getKey(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Returns true if the log entry is the latest change of its key.
+	 * Iterating only the latest entries visits every changed key once.
+	 * @param index Index of the entry
+	 * @return True if the entry is the latest change of its key
+	 */
+	public boolean isLatest(int index) {
+		return latest[keys[index]] == versions[index];
+	}
+}
@@ -14,7 +14,7 @@ import core.*;
  * often than 1/s, constant scanning is assumed (and power consumption does not
  * increase from {@link #scanEnergy} value).
  */
-public class EnergyModel implements ModuleCommunicationListener {
+public class EnergyModel implements ModuleCommunicationDoubleListener {
 	/** Initial units of energy -setting id ({@value}). Can be either a
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -42,6 +42,9 @@ public class EnergyModel implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of
 	 * energy left" variable. Value type: double */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
+	/** Key of the {@link #ENERGY_VALUE_ID} variable */
+	public static final ModuleCommunicationKey ENERGY_VALUE_KEY =
+		ModuleCommunicationKey.getKey(ENERGY_VALUE_ID);
 
 	/** Initial energy levels from the settings */
 	private final double[] initEnergy;
@@ -150,9 +153,9 @@ public class EnergyModel implements ModuleCommunicationListener {
 		}
 
 		if (amount >= this.currentEnergy) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_KEY, 0.0);
 		} else {
-			comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+			comBus.updateDouble(ENERGY_VALUE_KEY, -amount);
 		}
 
 	}
@@ -175,8 +178,8 @@ public class EnergyModel implements ModuleCommunicationListener {
 
 		if (this.comBus == null) {
 			this.comBus = comBus;
-			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
-			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			this.comBus.addDouble(ENERGY_VALUE_KEY, this.currentEnergy);
+			this.comBus.subscribeDouble(ENERGY_VALUE_KEY, this);
 		}
 
 		if (simTime > this.lastUpdate && iface.isTransferring()) {
@@ -202,8 +205,9 @@ public class EnergyModel implements ModuleCommunicationListener {
 	 * @param key The energy ID
 	 * @param newValue The new energy value
 	 */
-	public void moduleValueChanged(String key, Object newValue) {
-		this.currentEnergy = (Double)newValue;
+	public void moduleValueChanged(ModuleCommunicationKey key,
+			double newValue) {
+		this.currentEnergy = newValue;
 	}
 
 }
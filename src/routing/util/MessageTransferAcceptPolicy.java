@@ -5,15 +5,18 @@
 package routing.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import util.Range;
-import util.Tuple;
 
 import core.ArithmeticCondition;
 import core.Connection;
 import core.DTNHost;
+import core.DTNSim;
 import core.Message;
 import core.ModuleCommunicationBus;
+import core.ModuleCommunicationKey;
 import core.Settings;
 
 /**
@@ -40,6 +43,10 @@ import core.Settings;
  * or matches to message's hop count, transfer is accepted.  Otherwise transfer
  * is denied.
  * </P>
+ * <P>The policy settings are compiled when the policy is created: address
+ * lists to bit sets (that cache the result for each address) and the
+ * MCB conditions to an array. The accepted and denied transfers are counted
+ * (see {@link report.MessageTransferPolicyReport}).</P>
  * @author Ari
  */
 public class MessageTransferAcceptPolicy {
@@ -109,16 +116,42 @@ public class MessageTransferAcceptPolicy {
 	 * to other nodes, unless it would be delivered to the final destination. */
 	public static final String HOPCOUNT_SPOLICY_S = "hopCountSendPolicy";
 
-	private ArrayList<Tuple<String,ArithmeticCondition>> recvConditions = null;
-	private ArrayList<Tuple<String,ArithmeticCondition>> sendConditions = null;
+	/** Policies created with a policy namespace (for reports) */
+	private static List<MessageTransferAcceptPolicy> policies;
 
-	private Range[] toSendPolicy = null;
-	private Range[] fromSendPolicy = null;
-	private Range[] toReceivePolicy = null;
-	private Range[] fromReceivePolicy = null;
+	static {
+		DTNSim.registerForReset(
+				MessageTransferAcceptPolicy.class.getCanonicalName());
+		reset();
+	}
+
+	/** Name of the policy namespace (or null for the default policy) */
+	private String name = null;
+
+	private McbCondition[] recvConditions = null;
+	private McbCondition[] sendConditions = null;
+
+	private AddressPolicy toSendPolicy = null;
+	private AddressPolicy fromSendPolicy = null;
+	private AddressPolicy toReceivePolicy = null;
+	private AddressPolicy fromReceivePolicy = null;
 	private ArithmeticCondition hopCountSendPolicy = null;
 	private ArithmeticCondition hopCountReceivePolicy = null;
 
+	/** Does the policy accept all sent messages (no sending rules) */
+	private boolean acceptAllSending = true;
+	/** Does the policy accept all received messages (no receiving rules) */
+	private boolean acceptAllReceiving = true;
+
+	/** how many transfers the sending policy has accepted */
+	private long nrofSendAccepted = 0;
+	/** how many transfers the sending policy has denied */
+	private long nrofSendDenied = 0;
+	/** how many transfers the receiving policy has accepted */
+	private long nrofReceiveAccepted = 0;
+	/** how many transfers the receiving policy has denied */
+	private long nrofReceiveDenied = 0;
+
 	public MessageTransferAcceptPolicy(Settings nsSettings) {
 		Settings s;
 
@@ -126,20 +159,25 @@ public class MessageTransferAcceptPolicy {
 			return; /* no (or "default") policy */
 		}
 
-		s = new Settings(nsSettings.getSetting(MTA_POLICY_NS));
+		this.name = nsSettings.getSetting(MTA_POLICY_NS);
+		s = new Settings(this.name);
 		addMCBCs(s);
 
 		if (s.contains(TO_SPOLICY_S)) {
-			this.toSendPolicy = s.getCsvRanges(TO_SPOLICY_S);
+			this.toSendPolicy =
+				new AddressPolicy(s.getCsvRanges(TO_SPOLICY_S));
 		}
 		if (s.contains(FROM_SPOLICY_S)) {
-			this.fromSendPolicy = s.getCsvRanges(FROM_SPOLICY_S);
+			this.fromSendPolicy =
+				new AddressPolicy(s.getCsvRanges(FROM_SPOLICY_S));
 		}
 		if (s.contains(TO_RPOLICY_S)) {
-			this.toReceivePolicy = s.getCsvRanges(TO_RPOLICY_S);
+			this.toReceivePolicy =
+				new AddressPolicy(s.getCsvRanges(TO_RPOLICY_S));
 		}
 		if (s.contains(FROM_RPOLICY_S)) {
-			this.fromReceivePolicy = s.getCsvRanges(FROM_RPOLICY_S);
+			this.fromReceivePolicy =
+				new AddressPolicy(s.getCsvRanges(FROM_RPOLICY_S));
 		}
 		if (s.contains(HOPCOUNT_SPOLICY_S)) {
 			hopCountSendPolicy = s.getCondition(HOPCOUNT_SPOLICY_S);
@@ -147,6 +185,15 @@ public class MessageTransferAcceptPolicy {
 		if (s.contains(HOPCOUNT_RPOLICY_S)) {
 			hopCountReceivePolicy = s.getCondition(HOPCOUNT_RPOLICY_S);
 		}
+
+		this.acceptAllSending = sendConditions == null &&
+			toSendPolicy == null && fromSendPolicy == null &&
+			hopCountSendPolicy == null;
+		this.acceptAllReceiving = recvConditions == null &&
+			toReceivePolicy == null && fromReceivePolicy == null &&
+			hopCountReceivePolicy == null;
+
+		policies.add(this);
 	}
 
 	/**
@@ -159,59 +206,50 @@ public class MessageTransferAcceptPolicy {
 		}
 
 		int[] nrof = s.getCsvInts(NROF_MCBCS_S);
-		if (nrof[0] > 0) { /* create lists only if needed */
-			this.recvConditions =
-				new ArrayList<Tuple<String,ArithmeticCondition>>();
+		if (nrof[0] > 0) { /* create arrays only if needed */
+			this.recvConditions = readConditions(s, MCBACR_S, MCBCVR_S,
+					nrof[0]);
 		}
 		if (nrof[1] > 0) {
-			this.sendConditions =
-				new ArrayList<Tuple<String,ArithmeticCondition>>();
+			this.sendConditions = readConditions(s, MCBACS_S, MCBCVS_S,
+					nrof[1]);
 		}
-
-		addConditions(s, MCBACR_S, MCBCVR_S, this.recvConditions,  nrof[0]);
-		addConditions(s, MCBACS_S, MCBCVS_S, this.sendConditions,  nrof[1]);
 	}
 
 	/**
-	 * Read conditions from the settings and add them to the given list
+	 * Read conditions from the settings
 	 * @param s The settings object
 	 * @param cPrefix Condition setting prefix
 	 * @param vPrefix Value setting prefix
-	 * @param list The list to add conditions
 	 * @param nrof The number of settings to read
+	 * @return The conditions
 	 */
-	private void addConditions(Settings s, String cPrefix, String vPrefix,
-			ArrayList<Tuple<String,ArithmeticCondition>> list,
-			int nrof) {
+	private McbCondition[] readConditions(Settings s, String cPrefix,
+			String vPrefix, int nrof) {
+		McbCondition[] conditions = new McbCondition[nrof];
 		for (int i=1; i<=nrof; i++) {
 			ArithmeticCondition ac = s.getCondition(cPrefix + i);
 			String mcbValue = s.getSetting(vPrefix + i);
-			list.add(new Tuple<String, ArithmeticCondition>(mcbValue, ac));
+			conditions[i-1] = new McbCondition(mcbValue, ac);
 		}
+		return conditions;
 	}
 
 	/**
 	 * Checks all the Module Communication Bus conditions and returns false
 	 * if at least one of them failed.
 	 * @param mcb The module communication bus to use
-	 * @param receiving Should check using the receiving conditions list;
-	 * if false, the sending conditions list is used
+	 * @param conditions The conditions to check (or null)
 	 * @return true if all conditions evaluated to true
 	 */
 	private boolean checkMcbConditions(ModuleCommunicationBus mcb,
-			boolean receiving) {
-		ArrayList<Tuple<String,ArithmeticCondition>> list =
-			(receiving ? this.recvConditions : this.sendConditions);
-
-		if (list == null) {
+			McbCondition[] conditions) {
+		if (conditions == null) {
 			return true;
 		}
 
-		for (Tuple<String,ArithmeticCondition> t : list) {
-			if (!mcb.containsProperty(t.getKey())) {
-				continue; /* no value in the bus; can't fail condition */
-			}
-			if (t.getValue().isTrueFor(mcb.getDouble(t.getKey(), 0))){
+		for (McbCondition c : conditions) {
+			if (c.matches(mcb)) {
 				return false;
 			}
 		}
@@ -220,34 +258,18 @@ public class MessageTransferAcceptPolicy {
 	}
 
 	/**
-	 * Checks if the host's address is contained in the policy list
-	 * (or {@value #TO_ME_VALUE} is contained and the address matches to
-	 * thisHost parameter)
+	 * Checks if the host's address is accepted by the policy
 	 * @param host The hosts whose address to check
-	 * @param policy The list of accepted addresses
+	 * @param policy The policy (or null)
 	 * @param thisHost The address of this host
-	 * @return True if the address was in the policy list, or the policy list
-	 * was null
+	 * @return True if the address was accepted, or the policy was null
 	 */
-	private boolean checkSimplePolicy(DTNHost host, Range [] policy,
+	private boolean checkSimplePolicy(DTNHost host, AddressPolicy policy,
 			int thisHost) {
-		int address;
-
 		if (policy == null) {
 			return true;
 		}
-
-		address = host.getAddress();
-
-		for (Range r : policy) {
-			if (r.isInRange(TO_ME_VALUE) && address == thisHost) {
-				return true;
-			}
-			 else if (r.isInRange(address)) {
-				return true;
-			}
-		}
-		return false;
+		return policy.accepts(host.getAddress(), thisHost);
 	}
 
 	/**
@@ -277,7 +299,20 @@ public class MessageTransferAcceptPolicy {
 	 */
 	public boolean acceptSending(DTNHost from, DTNHost to, Connection con,
 			Message m) {
-		if (!checkMcbConditions(from.getComBus(), false)) {
+		if (this.acceptAllSending || checkSending(from, to, m)) {
+			this.nrofSendAccepted++;
+			return true;
+		}
+		this.nrofSendDenied++;
+		return false;
+	}
+
+	/**
+	 * Checks the sending rules of the policy
+	 * @see #acceptSending(DTNHost, DTNHost, Connection, Message)
+	 */
+	private boolean checkSending(DTNHost from, DTNHost to, Message m) {
+		if (!checkMcbConditions(from.getComBus(), this.sendConditions)) {
 			return false;
 		}
 
@@ -304,7 +339,20 @@ public class MessageTransferAcceptPolicy {
 	 * @return True if the message is OK to transfer, false is not
 	 */
 	public boolean acceptReceiving(DTNHost from, DTNHost to, Message m) {
-		if (! checkMcbConditions(to.getComBus(), true)) {
+		if (this.acceptAllReceiving || checkReceiving(to, m)) {
+			this.nrofReceiveAccepted++;
+			return true;
+		}
+		this.nrofReceiveDenied++;
+		return false;
+	}
+
+	/**
+	 * Checks the receiving rules of the policy
+	 * @see #acceptReceiving(DTNHost, DTNHost, Message)
+	 */
+	private boolean checkReceiving(DTNHost to, Message m) {
+		if (! checkMcbConditions(to.getComBus(), this.recvConditions)) {
 			return false;
 		}
 
@@ -322,4 +370,156 @@ public class MessageTransferAcceptPolicy {
 		return true;
 	}
 
+	/**
+	 * Returns true if the policy has ModuleCommunicationBus conditions for
+	 * sending or receiving. The results of such policy can change whenever
+	 * the values in the bus change.
+	 * @return true if the policy has MCB conditions
+	 */
+	public boolean hasMcbConditions() {
+		return this.sendConditions != null || this.recvConditions != null;
+	}
+
+	/**
+	 * Returns the name of the policy's setting namespace
+	 * @return the name of the namespace or null for the default policy
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the number of transfers the sending policy has accepted
+	 * @return the number of accepted transfers
+	 */
+	public long getNrofSendAccepted() {
+		return this.nrofSendAccepted;
+	}
+
+	/**
+	 * Returns the number of transfers the sending policy has denied
+	 * @return the number of denied transfers
+	 */
+	public long getNrofSendDenied() {
+		return this.nrofSendDenied;
+	}
+
+	/**
+	 * Returns the number of transfers the receiving policy has accepted
+	 * @return the number of accepted transfers
+	 */
+	public long getNrofReceiveAccepted() {
+		return this.nrofReceiveAccepted;
+	}
+
+	/**
+	 * Returns the number of transfers the receiving policy has denied
+	 * @return the number of denied transfers
+	 */
+	public long getNrofReceiveDenied() {
+		return this.nrofReceiveDenied;
+	}
+
+	/**
+	 * Returns the policies that have been created with a policy namespace
+	 * setting (i.e., all but the default policies)
+	 * @return the policies in their creation order
+	 */
+	public static List<MessageTransferAcceptPolicy> getPolicies() {
+		return policies;
+	}
+
+	/**
+	 * Resets the list of created policies
+	 */
+	public static void reset() {
+		policies = new ArrayList<MessageTransferAcceptPolicy>();
+	}
+
+	/**
+	 * Simple-policy address list compiled to bit sets. The address ranges
+	 * are evaluated once for each address and the result is cached.
+	 */
+	private static class AddressPolicy {
+		/** the address ranges of the policy */
+		private final Range[] ranges;
+		/** is the {@link MessageTransferAcceptPolicy#TO_ME_VALUE} listed */
+		private final boolean toMe;
+		/** addresses whose acceptance has been evaluated */
+		private final BitSet evaluated;
+		/** accepted addresses (among the evaluated ones) */
+		private final BitSet accepted;
+
+		/**
+		 * Creates a new policy from address ranges
+		 * @param ranges The address ranges
+		 */
+		public AddressPolicy(Range[] ranges) {
+			boolean anyToMe = false;
+			for (Range r : ranges) {
+				anyToMe |= r.isInRange(TO_ME_VALUE);
+			}
+			this.ranges = ranges;
+			this.toMe = anyToMe;
+			this.evaluated = new BitSet();
+			this.accepted = new BitSet();
+		}
+
+		/**
+		 * Checks if an address is accepted by the policy
+		 * @param address The address to check
+		 * @param thisHost The address of this host
+		 * @return true if the address is in one of the ranges or it's
+		 * this host's address and {@link #TO_ME_VALUE} is listed
+		 */
+		public boolean accepts(int address, int thisHost) {
+			if (toMe && address == thisHost) {
+				return true;
+			}
+			if (!evaluated.get(address)) {
+				for (Range r : ranges) {
+					if (r.isInRange(address)) {
+						accepted.set(address);
+						break;
+					}
+				}
+				evaluated.set(address);
+			}
+			return accepted.get(address);
+		}
+	}
+
+	/**
+	 * ModuleCommunicationBus condition: a condition and the ID of the value
+	 * it is checked against.
+	 */
+	private static class McbCondition {
+		/** key of the value in the bus */
+		private final ModuleCommunicationKey key;
+		/** the condition */
+		private final ArithmeticCondition condition;
+
+		/**
+		 * Constructor.
+		 * @param id ID of the value in the bus
+		 * @param condition The condition
+		 */
+		public McbCondition(String id, ArithmeticCondition condition) {
+			this.key = ModuleCommunicationKey.getKey(id);
+			this.condition = condition;
+		}
+
+		/**
+		 * Returns true if the bus has a value for the condition and the
+		 * condition is true for it
+		 * @param mcb The bus
+		 * @return true if the condition matches
+		 */
+		public boolean matches(ModuleCommunicationBus mcb) {
+			/* no value in the bus (NaN); can't match the condition */
+			double value = mcb.getDouble(this.key, Double.NaN);
+			return !Double.isNaN(value) && condition.isTrueFor(value);
+		}
+	}
+
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Delivery predictability table for PRoPHET style routers. Predictabilities
+ * are stored in primitive arrays indexed by host address and aged lazily:
+ * instead of multiplying every entry when time advances, the table keeps a
+ * single scale factor that is multiplied by
+ * <CODE>GAMMA ^ k</CODE> and applied when a value is read. The stored
+ * values are folded with the scale factor only when it would underflow.
+ * If the table is created with a change log, changes of the entries are
+ * versioned with a {@link ChangeLog} so that the transitive update can be
+ * limited to the entries that have changed since the peer's table was last
+ * seen.
+ */
+public class PredictabilityTable {
+	/** Smallest scale factor before the values are renormalized */
+	private static final double MIN_SCALE = 1e-150;
+
+	/** number of seconds in one aging time unit */
+	private final double secondsInTimeUnit;
+	/** aging constant */
+	private double gamma;
+
+	/** unscaled predictabilities indexed by host address */
+	private double[] values;
+	/** hosts with an entry in the table indexed by host address */
+	private DTNHost[] hosts;
+	/** addresses of the hosts with an entry (in the order of addition) */
+	private int[] entries;
+	/** number of used indexes in {@link #entries} */
+	private int nrofEntries;
+
+	/** scale factor for the stored values */
+	private double scale;
+	/** the last (sim)time when the scale factor was aged */
+	private double lastAgeUpdate;
+	/** log of the entry changes (not including aging) or null */
+	private ChangeLog changes;
+
+	/**
+	 * Creates a new, empty, predictability table without a change log.
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one aging time unit is
+	 */
+	public PredictabilityTable(double gamma, double secondsInTimeUnit) {
+		this(gamma, secondsInTimeUnit, false);
+	}
+
+	/**
+	 * Creates a new, empty, predictability table.
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one aging time unit is
+	 * @param logChanges If true, the changes are logged so that they can be
+	 * used with {@link #updateTransitive(DTNHost, DTNHost,
+	 * PredictabilityTable, double, boolean, long)}
+	 */
+	public PredictabilityTable(double gamma, double secondsInTimeUnit,
+			boolean logChanges) {
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+		this.values = new double[0];
+		this.hosts = new DTNHost[0];
+		this.entries = new int[8];
+		this.nrofEntries = 0;
+		this.scale = 1;
+		this.lastAgeUpdate = 0;
+		this.changes = (logChanges ? new ChangeLog() : null);
+	}
+
+	/**
+	 * Ages the scale factor up to the current simulation time.
+	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
+	 * time units that have elapsed since the last time the metric was aged.
+	 */
+	private void age() {
+		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) /
+			secondsInTimeUnit;
+
+		if (timeDiff == 0) {
+			return;
+		}
+
+		this.scale *= Math.pow(gamma, timeDiff);
+		if (this.scale < MIN_SCALE) {
+			renormalize();
+		}
+
+		this.lastAgeUpdate = SimClock.getTime();
+	}
+
+	/**
+	 * Applies the scale factor to all the stored values
+	 */
+	private void renormalize() {
+		for (int i=0; i<nrofEntries; i++) {
+			values[entries[i]] *= this.scale;
+		}
+		this.scale = 1;
+	}
+
+	/**
+	 * Returns the current predictability for a host or 0 if the table
+	 * doesn't have an entry for the host
+	 * @param host The host to look the predictability for
+	 * @return The current predictability
+	 */
+	public double get(DTNHost host) {
+		int address = host.getAddress();
+		if (address >= values.length || hosts[address] == null) {
+			return 0;
+		}
+
+		age();
+		return values[address] * this.scale;
+	}
+
+	/**
+	 * Sets the current predictability for a host
+	 * @param host The host whose predictability is set
+	 * @param value The new predictability
+	 */
+	public void set(DTNHost host, double value) {
+		int address = host.getAddress();
+		if (address >= values.length) {
+			int newLength = Math.max(address + 1, values.length * 2);
+			values = Arrays.copyOf(values, newLength);
+			hosts = Arrays.copyOf(hosts, newLength);
+		}
+
+		if (hosts[address] == null) {
+			hosts[address] = host;
+			if (nrofEntries == entries.length) {
+				entries = Arrays.copyOf(entries, nrofEntries * 2);
+			}
+			entries[nrofEntries++] = address;
+		}
+
+		age();
+		values[address] = value / this.scale;
+		if (changes != null) {
+			changes.changed(address);
+		}
+	}
+
+	/**
+	 * Sets a new aging constant. The values are aged with the old constant
+	 * up to the current time first.
+	 * @param gamma The new aging constant
+	 */
+	public void setGamma(double gamma) {
+		age();
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Returns the number of entries (hosts with a predictability) in the
+	 * table
+	 * @return The number of entries
+	 */
+	public int size() {
+		return this.nrofEntries;
+	}
+
+	/**
+	 * Returns the host of an entry
+	 * @param index Index of the entry (0...{@link #size()}-1)
+	 * @return The host of the entry
+	 */
+	public DTNHost getHost(int index) {
+		return hosts[entries[index]];
+	}
+
+	/**
+	 * Returns the current predictability of an entry
+	 * @param index Index of the entry (0...{@link #size()}-1)
+	 * @return The current predictability of the entry
+	 */
+	public double getValue(int index) {
+		age();
+		return values[entries[index]] * this.scale;
+	}
+
+	/**
+	 * Returns the version of the table. The version changes every time an
+	 * entry is set, but not when the table is aged. Only for tables with
+	 * a change log.
+	 * @return The current version
+	 */
+	public long getVersion() {
+		assert changes != null : "Table has no change log";
+		return changes.getVersion();
+	}
+
+	/**
+	 * Updates transitive (A->B->C) delivery predictabilities from the
+	 * table of host B. Only the entries that B has are visited.
+	 * <CODE>P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * BETA
+	 * </CODE> or, if <CODE>maxOnly</CODE> is true, (PRoPHETv2)
+	 * <CODE>P(a,c) = max(P(a,c)_old, P(a,b) * P(b,c) * BETA)</CODE>
+	 * @param self Host A (whose table this is)
+	 * @param host Host B
+	 * @param other The table of host B
+	 * @param beta The transitivity scaling constant
+	 * @param maxOnly If true, the PRoPHETv2 update rule is used
+	 */
+	public void updateTransitive(DTNHost self, DTNHost host,
+			PredictabilityTable other, double beta, boolean maxOnly) {
+		double pForHost = get(host); // P(a,b)
+
+		other.age();
+		for (int i=0, n=other.nrofEntries; i<n; i++) {
+			updateTransitive(self, other, other.entries[i], pForHost, beta,
+					maxOnly);
+		}
+	}
+
+	/**
+	 * Updates transitive delivery predictabilities like
+	 * {@link #updateTransitive(DTNHost, DTNHost, PredictabilityTable,
+	 * double, boolean)} but visits only the entries of B's table that have
+	 * been set after the given version of the table. B's table must have
+	 * a change log.
+	 * @param self Host A (whose table this is)
+	 * @param host Host B
+	 * @param other The table of host B
+	 * @param beta The transitivity scaling constant
+	 * @param maxOnly If true, the PRoPHETv2 update rule is used
+	 * @param since The version of B's table that was seen last time (or
+	 * {@link ChangeLog#NO_VERSION} to visit all the entries)
+	 */
+	public void updateTransitive(DTNHost self, DTNHost host,
+			PredictabilityTable other, double beta, boolean maxOnly,
+			long since) {
+		double pForHost = get(host); // P(a,b)
+		ChangeLog log = other.changes;
+		assert log != null : "Table of " + host + " has no change log";
+
+		other.age();
+		for (int i=log.firstAfter(since), n=log.size(); i<n; i++) {
+			if (log.isLatest(i)) {
+				updateTransitive(self, other, log.getKey(i), pForHost, beta,
+						maxOnly);
+			}
+		}
+	}
+
+	/**
+	 * Updates the transitive predictability for a single entry of B's table
+	 * @param self Host A (whose table this is)
+	 * @param other The table of host B
+	 * @param address Address of host C
+	 * @param pForHost P(a,b)
+	 * @param beta The transitivity scaling constant
+	 * @param maxOnly If true, the PRoPHETv2 update rule is used
+	 */
+	private void updateTransitive(DTNHost self, PredictabilityTable other,
+			int address, double pForHost, double beta, boolean maxOnly) {
+		DTNHost c = other.hosts[address];
+		if (c == self) {
+			return; // don't add yourself
+		}
+
+		double pOther = other.values[address] * other.scale; // P(b,c)
+		double pOld = get(c); // P(a,c)_old
+		if (maxOnly) {
+			double pNew = pForHost * pOther * beta;
+			if (pNew > pOld) {
+				set(c, pNew);
+			}
+		} else {
+			set(c, pOld + (1 - pOld) * pForHost * pOther * beta);
+		}
+	}
+}
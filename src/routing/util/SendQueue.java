@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import core.Message;
+
+/**
+ * Persistent sending order of the messages a router carries. Every message
+ * gets an order key when it is added to the queue: either an increasing
+ * sequence number (FIFO order) or a random number from a seeded random
+ * number generator (random order). The order of the messages is kept
+ * up to date when messages are added and removed so the messages don't
+ * have to be sorted or shuffled again every time they are tried.
+ * <P>In the random order the queue is circular: after a transfer of a
+ * message has started, the queue starts from the message after it (see
+ * {@link #transferStarted(Message)}) so that every message gets its
+ * turn.</P>
+ */
+public class SendQueue {
+	/** is the order random (or FIFO) */
+	private final boolean randomOrder;
+	/** random number generator for the random order keys */
+	private final Random rng;
+	/** next FIFO order key */
+	private long nextKey;
+	/** the messages by their order keys */
+	private TreeMap<Long, Message> queue;
+	/** order keys of the messages by message IDs */
+	private Map<String, Long> keys;
+	/** order key where the (circular) queue starts */
+	private long cursor;
+
+	/**
+	 * Creates a new, empty, send queue
+	 * @param randomOrder If true, the messages are in a random order; if
+	 * false, in the order they were added
+	 * @param seed Seed for the random order
+	 */
+	public SendQueue(boolean randomOrder, long seed) {
+		this.randomOrder = randomOrder;
+		this.rng = randomOrder ? new Random(seed) : null;
+		this.nextKey = 0;
+		this.queue = new TreeMap<Long, Message>();
+		this.keys = new HashMap<String, Long>();
+		this.cursor = 0;
+	}
+
+	/**
+	 * Adds a message to the end of the queue (FIFO) or to a random place
+	 * in the queue (random order). If the queue already has a message with
+	 * the same ID, that message is removed first.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		remove(m.getId());
+
+		Long key;
+		if (randomOrder) {
+			do {
+				key = rng.nextLong();
+			} while (queue.containsKey(key));
+		}
+		else {
+			key = nextKey++;
+		}
+
+		queue.put(key, m);
+		keys.put(m.getId(), key);
+	}
+
+	/**
+	 * Removes a message from the queue
+	 * @param id ID of the message to remove
+	 */
+	public void remove(String id) {
+		Long key = keys.remove(id);
+		if (key != null) {
+			queue.remove(key);
+		}
+	}
+
+	/**
+	 * Returns the number of messages in the queue
+	 * @return the number of messages
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Informs the queue that a transfer of a message has started. In the
+	 * random order the queue starts from the next message after this.
+	 * @param m The message
+	 */
+	public void transferStarted(Message m) {
+		Long key = keys.get(m.getId());
+		if (randomOrder && key != null) {
+			cursor = key + 1;
+		}
+	}
+
+	/**
+	 * Returns the messages in the queue order
+	 * @return A new list of the messages in the queue order
+	 */
+	public List<Message> getMessages() {
+		List<Message> messages = new ArrayList<Message>(queue.size());
+		messages.addAll(queue.tailMap(cursor).values());
+		messages.addAll(queue.headMap(cursor).values());
+		return messages;
+	}
+
+	/**
+	 * Compares the queue order of two messages. Messages that are not in the
+	 * queue come after the queued ones.
+	 * @param m1 The first message
+	 * @param m2 The second message
+	 * @return -1 if the first message comes first in the queue, 1 if the
+	 * second message comes first, or 0 if neither message is in the queue
+	 */
+	public int compare(Message m1, Message m2) {
+		Long key1 = keys.get(m1.getId());
+		Long key2 = keys.get(m2.getId());
+
+		if (key1 == null || key2 == null) {
+			return key1 != null ? -1 : (key2 != null ? 1 : 0);
+		}
+		/* order of the keys counting from the cursor (with wrap around) */
+		return Long.compareUnsigned(key1 - cursor, key2 - cursor);
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Tests that ActiveRouter skips the routing decisions when nothing that
+ * they depend on has changed and makes them again after changes.
+ */
+public class ActiveRouterTest extends AbstractRouterTest {
+
+	private static int TTL = 300;
+
+	/**
+	 * Epidemic router that counts the routing decisions it makes
+	 */
+	private static class CountingRouter extends EpidemicRouter {
+		private int decisions;
+
+		public CountingRouter(Settings s) {
+			super(s);
+		}
+
+		protected CountingRouter(CountingRouter r) {
+			super(r);
+		}
+
+		@Override
+		protected boolean canStartTransfer() {
+			boolean canStart = super.canStartTransfer();
+			if (canStart) {
+				decisions++;
+			}
+			return canStart;
+		}
+
+		@Override
+		public CountingRouter replicate() {
+			return new CountingRouter(this);
+		}
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.MSG_TTL_S, ""+TTL);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		setRouterProto(new CountingRouter(ts));
+		super.setUp();
+
+		/* h1, h2 and h3 all carry a message for h6 and nothing more can
+		 * be transferred between them */
+		h1.createNewMessage(new Message(h1, h6, msgId1, 1));
+		h1.connect(h2);
+		h1.connect(h3);
+		for (int i=0; i<5; i++) {
+			clock.advance(1);
+			updateAllNodes();
+		}
+		assertTrue(h2.getRouter().hasMessage(msgId1));
+		assertTrue(h3.getRouter().hasMessage(msgId1));
+		mc.reset();
+	}
+
+	private static int decisions(DTNHost host) {
+		return ((CountingRouter)host.getRouter()).decisions;
+	}
+
+	private void advance() {
+		clock.advance(1);
+		updateAllNodes();
+	}
+
+	public void testNothingChanged() {
+		int d1 = decisions(h1);
+		int d2 = decisions(h2);
+		for (int i=0; i<10; i++) {
+			advance();
+		}
+		assertEquals(d1, decisions(h1));
+		assertEquals(d2, decisions(h2));
+		assertFalse(mc.next());
+	}
+
+	public void testConnectionUp() {
+		int d1 = decisions(h1);
+		h1.connect(h4);
+		advance();
+		assertEquals(d1 + 1, decisions(h1));
+
+		checkTransferStart(h1, h4, msgId1);
+	}
+
+	public void testConnectionDown() {
+		int d1 = decisions(h1);
+		disconnect(h3);
+		advance();
+		assertEquals(1, h1.getConnections().size());
+		assertEquals(d1 + 1, decisions(h1));
+
+		advance();
+		assertEquals(d1 + 1, decisions(h1));
+	}
+
+	public void testNewMessage() {
+		int d1 = decisions(h1);
+		int d2 = decisions(h2);
+		h2.createNewMessage(new Message(h2, h6, msgId2, 1));
+		advance();
+		/* both the creator and its peers route again */
+		assertTrue(decisions(h1) > d1);
+		assertTrue(decisions(h2) > d2);
+
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(h2, mc.getLastFrom());
+	}
+
+	public void testAbortedTransfer() {
+		h1.createNewMessage(new Message(h1, h6, msgId2, BUFFER_SIZE / 2));
+		advance();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		DTNHost to = mc.getLastTo();
+		assertFalse(mc.next());
+
+		/* transfer is aborted without the connection going down */
+		Connection con = null;
+		for (Connection c : h1.getConnections()) {
+			if (c.getOtherNode(h1) == to) {
+				con = c;
+			}
+		}
+		con.abortTransfer();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_ABORT, mc.getLastType());
+
+		int d1 = decisions(h1);
+		advance();
+		assertEquals(d1 + 1, decisions(h1));
+		/* h1 tries the message again */
+		checkTransferStart(h1, to, msgId2);
+	}
+}
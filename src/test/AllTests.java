@@ -26,11 +26,16 @@ public class AllTests {
 		suite.addTestSuite(WorldTest.class);
 		suite.addTestSuite(ConnectionTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
+		suite.addTestSuite(BinaryMovementTraceTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
+		suite.addTestSuite(ExternalPathMovementTest.class);
 		suite.addTestSuite(WKTReaderTest.class);
 		suite.addTestSuite(WKTPointReaderTest.class);
+		suite.addTestSuite(WKTParserTest.class);
 		suite.addTestSuite(MapNodeTest.class);
 		suite.addTestSuite(MapBasedMovementTest.class);
+		suite.addTestSuite(PathTest.class);
+		suite.addTestSuite(PathPipelineTest.class);
 		suite.addTestSuite(CoordTest.class);
 		suite.addTestSuite(DistanceDelayReportTest.class);
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
@@ -39,15 +44,28 @@ public class AllTests {
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
+		suite.addTestSuite(ActiveRouterTest.class);
+		suite.addTestSuite(ContactGraphRouterTest.class);
 		suite.addTestSuite(ProphetRouterTest.class);
+		suite.addTestSuite(ProphetDeltaExchangeTest.class);
+		suite.addTestSuite(SprayAndWaitRouterTest.class);
 		suite.addTestSuite(SettingsTest.class);
 		suite.addTestSuite(DijkstraPathFinderTest.class);
+		suite.addTestSuite(ShortestPathCacheTest.class);
+		suite.addTestSuite(MapRouteTest.class);
+		suite.addTestSuite(MapGraphTest.class);
+		suite.addTestSuite(BinaryMapFileTest.class);
 		suite.addTestSuite(PointsOfInterestTest.class);
 		suite.addTestSuite(ActivenessHandlerTest.class);
 		suite.addTestSuite(MaxPropDijkstraTest.class);
+		suite.addTestSuite(MeetingProbabilitySetTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
+		suite.addTestSuite(ContactPlanTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(MessageTransferAcceptPolicyTest.class);
 		suite.addTestSuite(MessageTest.class);
+		suite.addTestSuite(ChangeLogTest.class);
+		suite.addTestSuite(SendQueueTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
 		//$JUnit-END$
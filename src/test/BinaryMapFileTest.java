@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryMapFile;
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.SimMap;
+
+public class BinaryMapFileTest extends TestCase {
+	private static final String WKT =
+		"LINESTRING (1.0 1.0, 2.0 1.0, 3.0 1.5, 4.0 1.0)\n" +
+		"LINESTRING (1.0 1.0, 1.0 2.0)\n" +
+		"LINESTRING (2.0 1.0, 2.0 0.0, 3.0 0.0, 3.0 1.5)\n";
+	private static final String KEY = "test map";
+
+	private File file;
+	private SimMap map;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("BinaryMapFileTest", ".bin");
+		file.deleteOnExit();
+
+		WKTMapReader reader = new WKTMapReader(true);
+		reader.addPaths(new StringReader(WKT), 1);
+		reader.addPaths(new StringReader("LINESTRING (1.0 2.0, 0.5 2.5)"), 2);
+		map = reader.getMap();
+		map.mirror();
+		map.translate(-map.getMinBound().getX(), -map.getMinBound().getY());
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+
+	public void testWriteAndRead() throws Exception {
+		BinaryMapFile.write(file, KEY, map);
+		SimMap read = BinaryMapFile.read(file, KEY);
+
+		assertNotNull(read);
+		assertTrue(read.isMirrored());
+		assertEquals(map.getOffset(), read.getOffset());
+		assertEquals(map.getMinBound(), read.getMinBound());
+		assertEquals(map.getMaxBound(), read.getMaxBound());
+
+		List<MapNode> nodes = map.getNodes();
+		List<MapNode> readNodes = read.getNodes();
+		assertEquals(nodes.size(), readNodes.size());
+		for (int i=0; i<nodes.size(); i++) {
+			MapNode n = nodes.get(i);
+			MapNode r = readNodes.get(i);
+			assertEquals(n.getLocation(), r.getLocation());
+			assertEquals(n.toString(), r.toString()); // location and types
+			assertEquals(n.getNeighbors().size(), r.getNeighbors().size());
+			for (int j=0; j<n.getNeighbors().size(); j++) {
+				assertEquals(n.getNeighbors().get(j).getLocation(),
+						r.getNeighbors().get(j).getLocation());
+			}
+			assertSame(r, read.getNodeByCoord(r.getLocation()));
+		}
+	}
+
+	public void testWrongKey() throws Exception {
+		BinaryMapFile.write(file, KEY, map);
+		assertNull(BinaryMapFile.read(file, "other map"));
+		assertNull(BinaryMapFile.read(new File(file.getPath() + ".none"),
+				KEY));
+	}
+}
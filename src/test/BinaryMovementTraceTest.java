@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryMovementTrace;
+import input.ExternalMovementReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import util.Tuple;
+
+import junit.framework.TestCase;
+import core.Coord;
+
+public class BinaryMovementTraceTest extends TestCase {
+	private static final String INPUT =
+		"5 40 0 150 0 100\n"+
+		"10 1 10 10\n"+
+		"10 2 10 20\n" +
+		"10 3 10 30\n" +
+		"20 3 30 30\n" +
+		"20 1 20 10\n" +
+		"30 2 30 30\n" +
+		"35 1 40 30\n" +
+		"40 1 150 100";
+
+	private File textFile;
+	private File binFile;
+	private BinaryMovementTrace trace;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		textFile = File.createTempFile("BMTTest", ".txt");
+		textFile.deleteOnExit();
+		PrintWriter pw = new PrintWriter(textFile);
+		pw.println(INPUT);
+		pw.close();
+
+		binFile = File.createTempFile("BMTTest", ".bin");
+		binFile.deleteOnExit();
+		BinaryMovementTrace.convert(textFile, binFile);
+		trace = new BinaryMovementTrace(binFile);
+	}
+
+	protected void tearDown() throws Exception {
+		trace.close();
+		super.tearDown();
+	}
+
+	public void testSameAsText() throws IOException {
+		ExternalMovementReader r = new ExternalMovementReader(
+				textFile.getAbsolutePath());
+
+		assertEquals(r.getMinX(), trace.getMinX());
+		assertEquals(r.getMaxX(), trace.getMaxX());
+		assertEquals(r.getMinY(), trace.getMinY());
+		assertEquals(r.getMaxY(), trace.getMaxY());
+		assertEquals(r.getMinTime(), trace.getMinTime());
+		assertEquals(r.getMaxTime(), trace.getMaxTime());
+		assertEquals(3, trace.getNrofIds());
+
+		List<Tuple<String, Coord>> expected = r.readNextMovements();
+		while (expected.size() > 0) {
+			List<Tuple<String, Coord>> moves = trace.readNextMovements();
+			assertEquals(r.getLastTimeStamp(), trace.getLastTimeStamp());
+			assertEquals(expected.size(), moves.size());
+			for (int i=0; i<moves.size(); i++) {
+				assertEquals(expected.get(i).getKey(), moves.get(i).getKey());
+				assertEquals(expected.get(i).getValue(),
+						moves.get(i).getValue());
+			}
+			expected = r.readNextMovements();
+		}
+		assertEquals(0, trace.readNextBlock());
+	}
+
+	public void testSeek() throws IOException {
+		trace.seek(15); // normalized time: 10 -> 5, 20 -> 15, ...
+		assertEquals(2, trace.readNextBlock());
+		assertEquals(15.0, trace.getLastTimeStamp());
+		assertEquals("3", trace.getIdName(trace.getId(0)));
+		assertEquals(30.0, trace.getX(0));
+		assertEquals(10.0, trace.getY(1));
+
+		trace.seek(26);
+		assertEquals(2, trace.readNextBlock()); // includes the last line
+		assertEquals(30.0, trace.getLastTimeStamp());
+
+		trace.seek(-100);
+		assertEquals(3, trace.readNextBlock());
+		assertEquals(5.0, trace.getLastTimeStamp());
+
+		trace.seek(36);
+		assertEquals(0, trace.readNextBlock());
+	}
+
+	public void testNoNormalize() throws IOException {
+		trace.setNormalize(false);
+		trace.seek(31);
+		assertEquals(2, trace.readNextBlock());
+		assertEquals(35.0, trace.getLastTimeStamp());
+		assertEquals(40.0, trace.getX(0));
+		assertEquals(30.0, trace.getY(0));
+	}
+
+	public void testIsBinary() {
+		assertTrue(BinaryMovementTrace.isBinary(binFile));
+		assertFalse(BinaryMovementTrace.isBinary(textFile));
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.ChangeLog;
+
+/**
+ * Tests for the versioned change log of routing state
+ */
+public class ChangeLogTest extends TestCase {
+	private ChangeLog log;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		log = new ChangeLog();
+	}
+
+	/**
+	 * Returns the keys that have changed after a version (each key once)
+	 */
+	private List<Integer> changedAfter(long version) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int i=log.firstAfter(version); i<log.size(); i++) {
+			if (log.isLatest(i)) {
+				keys.add(log.getKey(i));
+			}
+		}
+		return keys;
+	}
+
+	public void testEmpty() {
+		assertEquals(ChangeLog.NO_VERSION, log.getVersion());
+		assertEquals(0, log.size());
+		assertEquals(0, log.firstAfter(ChangeLog.NO_VERSION));
+	}
+
+	public void testFirstAfter() {
+		log.changed(3);
+		log.changed(5);
+		long v = log.getVersion();
+		log.changed(7);
+		log.changed(1);
+
+		assertEquals(4, log.getVersion());
+		assertEquals(0, log.firstAfter(ChangeLog.NO_VERSION));
+		assertEquals(2, log.firstAfter(v));
+		assertEquals(7, log.getKey(log.firstAfter(v)));
+		assertEquals(log.size(), log.firstAfter(log.getVersion()));
+	}
+
+	public void testIsLatest() {
+		log.changed(3);
+		log.changed(5);
+		long v = log.getVersion();
+		log.changed(3);
+
+		assertFalse(log.isLatest(0)); // 3 changed again
+		assertTrue(log.isLatest(1));
+		assertTrue(log.isLatest(2));
+
+		assertEquals(list(5, 3), changedAfter(ChangeLog.NO_VERSION));
+		assertEquals(list(3), changedAfter(v));
+	}
+
+	public void testCompact() {
+		/* keep changing a few keys so that the log fills up with
+		 * superseded entries and gets compacted */
+		for (int i=0; i<1000; i++) {
+			log.changed(i % 4);
+		}
+		assertEquals(1000, log.getVersion());
+		assertTrue("Log wasn't compacted: " + log.size(), log.size() < 100);
+		assertEquals(list(0, 1, 2, 3), changedAfter(ChangeLog.NO_VERSION));
+		assertEquals(list(2, 3), changedAfter(998));
+
+		/* many different keys -> the log grows instead */
+		for (int i=0; i<100; i++) {
+			log.changed(10 + i);
+		}
+		assertEquals(104, changedAfter(ChangeLog.NO_VERSION).size());
+		assertEquals(list(109), changedAfter(log.getVersion() - 1));
+	}
+
+	private static List<Integer> list(int... keys) {
+		List<Integer> list = new ArrayList<Integer>();
+		for (int k : keys) {
+			list.add(k);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import routing.ContactGraphRouter;
+import routing.MessageRouter;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the contact graph router
+ */
+public class ContactGraphRouterTest extends AbstractRouterTest {
+
+	private static int TTL = 300;
+
+	/* contact plan: h1-h2 (0-100), h2-h3 (50-60), h1-h4 (0-1000) and
+	 * h4-h3 (200-300) -> h1's route to h3 is via h2 until 60 and via h4
+	 * after that */
+	private static final String PLAN =
+		"0 CONN h1 h2 up\n" +
+		"0 CONN h1 h4 up\n" +
+		"50 CONN h2 h3 up\n" +
+		"60 CONN h2 h3 down\n" +
+		"100 CONN h1 h2 down\n" +
+		"200 CONN h4 h3 up\n" +
+		"300 CONN h4 h3 down\n" +
+		"1000 CONN h1 h4 down\n";
+
+	@Override
+	public void setUp() throws Exception {
+		File planFile = File.createTempFile("cgrtest", ".tmp");
+		planFile.deleteOnExit();
+		PrintWriter pw = new PrintWriter(planFile);
+		pw.print(PLAN);
+		pw.close();
+
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.MSG_TTL_S, ""+TTL);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(ContactGraphRouter.CGR_NS + "." +
+				ContactGraphRouter.CONTACT_PLAN_FILE_S,
+				planFile.getAbsolutePath());
+		setRouterProto(new ContactGraphRouter(ts));
+		super.setUp();
+	}
+
+	private int nextHop(DTNHost from, DTNHost to) {
+		return ((ContactGraphRouter)from.getRouter()).getRoute(to).getNextHop();
+	}
+
+	/**
+	 * Tests that a message is forwarded only to the next hop of its route
+	 * and that the sender doesn't keep a copy
+	 */
+	public void testForwardToNextHop() {
+		clock.setTime(10);
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		checkCreates(1);
+		assertEquals(h2.getAddress(), nextHop(h1, h3));
+
+		h1.connect(h4);
+		updateAllNodes();
+		assertFalse(mc.next()); // h4 is not the next hop
+
+		h1.connect(h2);
+		updateAllNodes();
+		checkTransferStart(h1, h2, msgId1);
+
+		clock.advance(1);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(h2, mc.getLastTo());
+		assertFalse(mc.getLastFirstDelivery());
+
+		assertFalse(h1.getRouter().hasMessage(msgId1));
+		assertTrue(h2.getRouter().hasMessage(msgId1));
+		assertFalse(h4.getRouter().hasMessage(msgId1));
+
+		/* h2 waits for its contact with h3 */
+		clock.advance(1);
+		updateAllNodes();
+		assertFalse(mc.next());
+	}
+
+	/**
+	 * Tests that the route is computed again when the cached route expires
+	 * even if nothing else changes
+	 */
+	public void testRouteExpiry() {
+		clock.setTime(10);
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		checkCreates(1);
+
+		h1.connect(h4);
+		for (int i=0; i<5; i++) {
+			updateAllNodes();
+			clock.advance(10);
+		}
+		assertEquals(60.0, clock.getTime());
+		updateAllNodes();
+		assertFalse(mc.next()); // route via h2 is still valid
+
+		clock.advance(1);
+		updateAllNodes();
+		checkTransferStart(h1, h4, msgId1);
+		assertEquals(h4.getAddress(), nextHop(h1, h3));
+
+		clock.advance(1);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals(h4, mc.getLastTo());
+		assertFalse(h1.getRouter().hasMessage(msgId1));
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.schedule.ContactPlan;
+import routing.schedule.ContactRoute;
+import routing.schedule.ScheduleOracle;
+import junit.framework.TestCase;
+
+public class ContactPlanTest extends TestCase {
+
+	private void compareRoute(int realPath[], ContactRoute route) {
+		assertEquals(realPath.length, route.size() + 1);
+
+		for (int i=1; i<realPath.length; i++) {
+			assertEquals(realPath[i], route.getHop(i-1));
+		}
+	}
+
+	public void testScheduleOracleRoutes() {
+		ScheduleOracle oracle = new ScheduleOracle();
+		oracle.addEntry(10, 1, 2, 10);
+		oracle.addEntry(20, 1, 3, 10);
+		oracle.addEntry(40, 3, 10, 5);
+		oracle.addEntry(40, 3, 11, 10);
+		oracle.addEntry(60, 10, 20, 10);
+		oracle.addEntry(60, 11, 20, 15);
+		oracle.addEntry(100, 1, 20, 5);
+
+		ContactPlan plan = new ContactPlan(oracle);
+		ContactRoute route = plan.getRoute(1, 20, 0);
+		compareRoute(new int[]{1,3,10,20}, route);
+		assertEquals(70.0, route.getArrivalTime());
+
+		/* misses the first hop to 3, takes direct late */
+		compareRoute(new int[]{1, 20}, plan.getRoute(1, 20, 30));
+
+		assertEquals(ContactRoute.NONE, plan.getRoute(20, 1, 0));
+		assertEquals(-1, plan.getRoute(20, 1, 0).getNextHop());
+	}
+
+	public void testContactIntervals() {
+		ContactPlan plan = new ContactPlan();
+		plan.addContact(0, 1, 0, 100, 0);
+		plan.addContact(1, 2, 50, 60, 0);
+		plan.addContact(1, 2, 200, 300, 0);
+		plan.addContact(0, 2, 250, 260, 0);
+
+		ContactRoute route = plan.getRoute(0, 2, 10);
+		compareRoute(new int[]{0, 1, 2}, route);
+		assertEquals(50.0, route.getArrivalTime());
+		assertEquals(60.0, route.getExpiryTime());
+
+		/* contact 1->2 at 50-60 is still open at 55 */
+		assertEquals(55.0, plan.getRoute(0, 2, 55).getArrivalTime());
+
+		/* first 1->2 contact is over, next one is via 1 at 200 */
+		route = plan.getRoute(0, 2, 61);
+		compareRoute(new int[]{0, 1, 2}, route);
+		assertEquals(200.0, route.getArrivalTime());
+
+		/* no contact 0->1 anymore; direct contact at 250 */
+		route = plan.getRoute(0, 2, 101);
+		compareRoute(new int[]{0, 2}, route);
+		assertEquals(250.0, route.getArrivalTime());
+		assertEquals(260.0, route.getExpiryTime());
+
+		assertEquals(ContactRoute.NONE, plan.getRoute(0, 2, 261));
+	}
+}
@@ -73,6 +73,37 @@ public class DijkstraPathFinderTest extends TestCase {
 		checkPath(getPath(n8,n4), n8, n7, n6, n5, n4);
 	}
 
+	public void testHeuristicPathFinding() {
+		r = new DijkstraPathFinder(null, true);
+		checkPath(getPath(n1,n1), n1);
+		checkPath(getPath(n1,n3), n1, n2, n3);
+		checkPath(getPath(n4,n8), n4, n5, n6, n7, n8);
+		checkPath(getPath(n8,n4), n8, n7, n6, n5, n4);
+
+		/* both n1-n2-n5-n6 and n1-n4-n5-n6 are 25 long */
+		assertEquals(4, getPath(n1,n6).size());
+	}
+
+	public void testOkMapNodes() {
+		n3.addType(2);
+		n6.addType(1);
+		n5.addType(1);
+		n2.addType(1);
+		r = new DijkstraPathFinder(new int[] {1});
+
+		/* n3 is not OK -> the path must go through n6 */
+		checkPath(getPath(n2,n6), n2, n5, n6);
+		assertEquals(0, getPath(n2,n4).size());
+	}
+
+	public void testRepeatedSearches() {
+		for (int i=0; i<3; i++) {
+			checkPath(getPath(n1,n6), n1, n2, n5, n6);
+			checkPath(getPath(n8,n4), n8, n7, n6, n5, n4);
+			assertEquals(1, getPath(n7,n7).size());
+		}
+	}
+
 	private void checkPath(List<MapNode> path, MapNode ... nodes) {
 		assertEquals(nodes.length,path.size());
 
@@ -4,6 +4,7 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
 import core.DTNHost;
@@ -619,4 +620,52 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
+
+	/**
+	 * Tests that batched transfers continue back-to-back on the same update
+	 * interval and the transfers are timed from the end of the previous one
+	 */
+	public void testBatchTransfers() throws Exception {
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S,
+				""+MessageRouter.Q_MODE_FIFO);
+		ts.putSetting(ActiveRouter.BATCH_TRANSFERS_S, "true");
+		this.setUp();
+		ts.putSetting(ActiveRouter.BATCH_TRANSFERS_S, "false");
+
+		for (int i=1; i<=3; i++) {
+			h1.createNewMessage(new Message(h1, h2, "M" + i, 10));
+		}
+		h1.createNewMessage(new Message(h1, h3, "M4", 50));
+		checkCreates(4);
+
+		h1.connect(h2);
+		updateAllNodes();
+		checkTransferStart(h1, h2, "M1");
+		assertFalse(mc.next());
+
+		/* M1..M3 take 1 s each -> all done at 3 s and M4 started at 3 s */
+		clock.advance(5);
+		updateAllNodes();
+		for (int i=1; i<=3; i++) {
+			assertTrue(mc.next());
+			assertEquals(mc.TYPE_RELAY, mc.getLastType());
+			assertEquals("M" + i, mc.getLastMsg().getId());
+			if (i < 3) {
+				checkTransferStart(h1, h2, "M" + (i+1));
+			}
+		}
+		checkTransferStart(h1, h2, "M4");
+		assertFalse(mc.next());
+
+		/* M4 takes 5 s -> done at 8 s, not at 10 s */
+		clock.advance(2.5);
+		updateAllNodes();
+		assertFalse(mc.next());
+		clock.advance(0.6);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertEquals("M4", mc.getLastMsg().getId());
+		assertFalse(mc.next());
+	}
 }
@@ -4,6 +4,8 @@
  */
 package test;
 
+import input.BinaryMovementTrace;
+
 import java.io.File;
 import java.io.PrintWriter;
 
@@ -77,8 +79,14 @@ public class ExternalMovementTest extends TestCase {
 	private SimClock clock;
 
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, false, 0);
+	}
+
+	protected void setUpUsing(String[] input, boolean binary,
+			double startTime) throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
+		SimClock.getInstance().setTime(0);
 		TestSettings ts = new TestSettings();
 		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
 						MovementModel.WORLD_SIZE, "1000,1000");
@@ -92,8 +100,17 @@ public class ExternalMovementTest extends TestCase {
 
 		pw.close();
 
+		if (binary) {
+			File binFile = File.createTempFile("eMovementTest", ".bin");
+			binFile.deleteOnExit();
+			BinaryMovementTrace.convert(outFile, binFile);
+			outFile = binFile;
+		}
+
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
+		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
+				ExternalMovement.START_TIME_S, "" + startTime);
 
 		MovementModel emProto = (MovementModel)
 			ts.createIntializedObject("movement.ExternalMovement");
@@ -108,13 +125,28 @@ public class ExternalMovementTest extends TestCase {
 
 	public void testMovement() throws Exception {
 		setUpUsing(INPUT);
+		checkMovement(0);
+	}
+
+	public void testBinaryMovement() throws Exception {
+		setUpUsing(INPUT, true, 0);
+		checkMovement(0);
+	}
 
+	public void testStartTime() throws Exception {
+		setUpUsing(INPUT, false, 40);
+		checkMovement(3);
+		setUpUsing(INPUT, true, 40);
+		checkMovement(3);
+	}
+
+	private void checkMovement(int firstCoord) {
 		// h3 should not get any fancy coordinates
 		assertEquals(c0, h3.getLocation());
 		assertFalse(h3.isMovementActive());
 
 		// test that h1 and h2 move according to input data
-		for (int i=0; i<INPUT_COORDS[0].length; i++) {
+		for (int i=firstCoord; i<INPUT_COORDS[0].length; i++) {
 			assertEquals((i+1) + ". coord of h1",
 					INPUT_COORDS[0][i], h1.getLocation());
 			assertEquals((i+1) + ". coord of h2",
@@ -142,6 +174,16 @@ public class ExternalMovementTest extends TestCase {
 
 	}
 
+	public void testBinaryStationary() throws Exception {
+		setUpUsing(STATIONARY_INPUT, true, 0);
+		for (int i=0; i<3; i++) {
+			assertEquals(STATIONARY_INPUT_COORDS[0], h1.getLocation());
+			assertEquals(STATIONARY_INPUT_COORDS[1], h2.getLocation());
+			moveAllHosts(CLOCK_STEP);
+			assertFalse(h3.isMovementActive());
+		}
+	}
+
 	public void moveAllHosts(double time) {
 		h1.move(time);
 		h2.move(time);
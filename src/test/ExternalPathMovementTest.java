@@ -0,0 +1,244 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalPathMovementReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+import movement.ExternalPathMovement;
+import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * Tests that the windowed mode of {@link ExternalPathMovement} moves the
+ * nodes the same way as the mode where the whole trace is loaded.
+ */
+public class ExternalPathMovementTest extends TestCase {
+	private static final String NS = "ExternalPathMovementTest";
+	private static final int NROF_HOSTS = 5;
+	private static final double MIN_TIME = 100;
+	private static final double END_TIME = 400;
+
+	private File traceFile;
+	private File zipFile;
+	private File activeFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Random rng = new Random(7);
+
+		/* paths of all nodes sorted by their start times */
+		List<String> lines = new ArrayList<String>();
+		for (int id=0; id<NROF_HOSTS; id++) {
+			double t = MIN_TIME + rng.nextInt(20);
+			double x = rng.nextInt(100);
+			double y = rng.nextInt(100);
+			while (t < MIN_TIME + END_TIME - 50) {
+				StringBuilder sb = new StringBuilder();
+				int nrofPoints = 1 + rng.nextInt(6);
+				for (int i=0; i<nrofPoints; i++) {
+					sb.append(" " + t + "," + x + "," + y);
+					t += 1 + rng.nextInt(5);
+					x += rng.nextInt(1000) / 100.0;
+					y += rng.nextInt(1000) / 100.0;
+				}
+				lines.add(id + sb.toString());
+				t += rng.nextInt(15); // pause between the paths
+			}
+		}
+		Collections.sort(lines, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return Double.compare(startTime(a), startTime(b));
+			}
+		});
+
+		traceFile = File.createTempFile("epmTest", ".txt");
+		traceFile.deleteOnExit();
+		PrintWriter pw = new PrintWriter(traceFile);
+		pw.println((NROF_HOSTS - 1) + " " + MIN_TIME + " " +
+				(MIN_TIME + END_TIME) + " 0 1000 0 1000");
+		for (String line : lines) {
+			pw.println(line);
+		}
+		pw.close();
+
+		zipFile = File.createTempFile("epmTest", ".zip");
+		zipFile.deleteOnExit();
+		ZipOutputStream zout = new ZipOutputStream(
+				new FileOutputStream(zipFile));
+		zout.putNextEntry(new ZipEntry("trace.txt"));
+		pw = new PrintWriter(zout);
+		pw.println((NROF_HOSTS - 1) + " " + MIN_TIME + " " +
+				(MIN_TIME + END_TIME) + " 0 1000 0 1000");
+		for (String line : lines) {
+			pw.println(line);
+		}
+		pw.close();
+
+		activeFile = File.createTempFile("epmTest", ".txt");
+		activeFile.deleteOnExit();
+		pw = new PrintWriter(activeFile);
+		for (int id=0; id<NROF_HOSTS; id++) {
+			pw.println(id + " " + (MIN_TIME + 10 * id) + " " +
+					(MIN_TIME + END_TIME - 20 * id));
+		}
+		pw.close();
+	}
+
+	private static double startTime(String line) {
+		String[] parts = line.split(" ");
+		return Double.parseDouble(parts[1].substring(0,
+				parts[1].indexOf(',')));
+	}
+
+	/**
+	 * Runs the hosts through the trace and returns their locations
+	 */
+	private List<String> run(File trace, double lookahead) {
+		return run(trace, lookahead, false);
+	}
+
+	/**
+	 * Runs the hosts through the trace and returns their locations
+	 */
+	private List<String> run(File trace, double lookahead,
+			boolean dropReplaced) {
+		ExternalPathMovementReader.reset();
+		DTNHost.reset();
+		SimClock.getInstance().setTime(0);
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(NS + "." + ExternalPathMovement.MOVEMENT_FILE_S,
+				trace.getAbsolutePath());
+		ts.putSetting(NS + "." + ExternalPathMovement.ACTIVITY_FILE_S,
+				activeFile.getAbsolutePath());
+		ts.putSetting(NS + "." + ExternalPathMovement.LOOKAHEAD_S,
+				"" + lookahead);
+		ts.putSetting(NS + "." + ExternalPathMovement.DROP_REPLACED_S,
+				"" + dropReplaced);
+		ExternalPathMovement proto =
+			new ExternalPathMovement(new Settings(NS));
+
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts.add(utils.createHost(proto, null));
+		}
+
+		List<String> locations = new ArrayList<String>();
+		while (SimClock.getTime() < END_TIME) {
+			for (DTNHost h : hosts) {
+				h.move(0.5);
+				locations.add(SimClock.getTime() + " " + h + " " +
+						h.getLocation());
+			}
+			SimClock.getInstance().advance(0.5);
+		}
+		return locations;
+	}
+
+	public void testWindowedMatchesFull() {
+		List<String> full = run(traceFile, 0);
+		assertFalse(full.get(0).equals(full.get(full.size() - 1)));
+		assertEquals(full, run(traceFile, 1));
+		assertEquals(full, run(traceFile, 30));
+		assertEquals(full, run(zipFile, 5));
+	}
+
+	public void testDropReplacedPaths() {
+		List<String> full = run(traceFile, 0, true);
+		assertFalse(full.equals(run(traceFile, 0, false)));
+		assertEquals(full, run(traceFile, 1, true));
+		assertEquals(full, run(traceFile, 30, true));
+	}
+
+	public void testZipped() {
+		assertEquals(run(traceFile, 0), run(zipFile, 0));
+	}
+
+	public void testPathWindow() {
+		ExternalPathMovementReader.reset();
+		ExternalPathMovementReader r = ExternalPathMovementReader.getInstance(
+				traceFile.getAbsolutePath(), activeFile.getAbsolutePath(), 10);
+		List<List<ExternalPathMovementReader.Entry>> paths =
+			ExternalPathMovementReader.getInstance(traceFile.getAbsolutePath(),
+					activeFile.getAbsolutePath()).getPaths(2);
+		ExternalPathMovementReader.PathWindow w = r.createPathWindow(2);
+
+		assertEquals(paths.get(0).get(0).x, r.getInitialLocation(2).getX());
+		assertFalse(w.hasPath());
+
+		for (List<ExternalPathMovementReader.Entry> path : paths) {
+			r.advance(path.get(0).time);
+			assertTrue(w.hasPath());
+			assertEquals(path.size(), w.getPathSize());
+			for (int i=0; i<path.size(); i++) {
+				assertEquals(path.get(i).time, w.getTime(i));
+				assertEquals(path.get(i).x, w.getX(i));
+				assertEquals(path.get(i).y, w.getY(i));
+			}
+			w.removePath();
+		}
+		assertFalse(w.hasPath());
+		r.advance(END_TIME);
+		assertEquals(Double.MAX_VALUE, r.getNextPathTime());
+
+		// nodes without a window don't keep any paths
+		assertNull(r.getPathWindow(3));
+	}
+
+	public void testReplacedPathsDropped() {
+		ExternalPathMovementReader.reset();
+		ExternalPathMovementReader r = ExternalPathMovementReader.getInstance(
+				traceFile.getAbsolutePath(), activeFile.getAbsolutePath(), 10);
+		List<List<ExternalPathMovementReader.Entry>> paths =
+			ExternalPathMovementReader.getInstance(traceFile.getAbsolutePath(),
+					activeFile.getAbsolutePath()).getPaths(2);
+		ExternalPathMovementReader.PathWindow w = r.createPathWindow(2);
+		r.setDropReplacedPaths(true);
+
+		/* all the paths have started -> only the last one is left */
+		r.advance(END_TIME);
+		List<ExternalPathMovementReader.Entry> last =
+			paths.get(paths.size() - 1);
+		assertTrue(w.hasPath());
+		assertEquals(last.get(0).time, w.getTime(0));
+		assertEquals(last.size(), w.getPathSize());
+		w.removePath();
+		assertFalse(w.hasPath());
+	}
+
+	public void testUnsortedTrace() throws Exception {
+		File unsorted = File.createTempFile("epmTest", ".txt");
+		unsorted.deleteOnExit();
+		PrintWriter pw = new PrintWriter(unsorted);
+		pw.println("1 0 100 0 100 0 100");
+		pw.println("0 10,1,1 11,2,2");
+		pw.println("1 5,1,1 6,2,2");
+		pw.close();
+
+		ExternalPathMovementReader.reset();
+		try {
+			ExternalPathMovementReader.getInstance(unsorted.getAbsolutePath(),
+					activeFile.getAbsolutePath(), 10);
+			fail("Unsorted trace should have caused a SettingsError");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
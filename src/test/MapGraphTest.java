@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+
+public class MapGraphTest extends TestCase {
+	private SimMap map;
+	private MapNode n1, n2, n3;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Map<Coord, MapNode> nodes = new HashMap<Coord, MapNode>();
+		n1 = new MapNode(new Coord(0, 0));
+		n2 = new MapNode(new Coord(3, 4));
+		n3 = new MapNode(new Coord(3, 0));
+		nodes.put(n1.getLocation(), n1);
+		nodes.put(n2.getLocation(), n2);
+		nodes.put(n3.getLocation(), n3);
+		n1.addNeighbor(n2);
+		n2.addNeighbor(n1);
+		n2.addNeighbor(n3);
+		n3.addNeighbor(n2);
+		map = new SimMap(nodes);
+	}
+
+	public void testGraph() {
+		MapGraph g = map.getGraph();
+		assertEquals(3, g.getNrofNodes());
+		assertEquals(2, g.getMaxDegree());
+
+		for (int i=0; i<g.getNrofNodes(); i++) {
+			MapNode node = map.getNodes().get(i);
+			assertSame(node, g.getNode(i));
+			assertEquals(i, g.indexOf(node));
+			assertEquals(node.getLocation().getX(), g.getX(i));
+			assertEquals(node.getLocation().getY(), g.getY(i));
+
+			assertEquals(node.getNeighbors().size(),
+					g.getLastEdge(i) - g.getFirstEdge(i));
+			for (int e=g.getFirstEdge(i); e<g.getLastEdge(i); e++) {
+				MapNode neighbor = node.getNeighbors().get(e - g.getFirstEdge(i));
+				assertSame(neighbor, g.getNode(g.getTarget(e)));
+				assertEquals(node.getLocation().distance(
+						neighbor.getLocation()), g.getLength(e));
+			}
+		}
+
+		assertEquals(5.0, g.getDistance(g.indexOf(n1), g.indexOf(n2)));
+		assertEquals(-1, g.compare(g.indexOf(n1), g.indexOf(n2)));
+		assertEquals(1, g.compare(g.indexOf(n3), g.indexOf(n1)));
+		assertEquals(-1, g.indexOf(new MapNode(new Coord(0, 0))));
+	}
+
+	public void testTypes() {
+		n1.addType(1);
+		n2.addType(2);
+		MapGraph g = map.getGraph();
+		int mask = MapGraph.getTypeMask(new int[] {1});
+
+		assertTrue(g.isType(g.indexOf(n1), mask));
+		assertFalse(g.isType(g.indexOf(n2), mask));
+		assertFalse(g.isType(g.indexOf(n3), mask));
+		assertTrue(g.isType(g.indexOf(n3), MapGraph.getTypeMask(null)));
+	}
+
+	public void testUpdates() {
+		MapGraph g = map.getGraph();
+		assertSame(g, map.getGraph());
+
+		n3.addNeighbor(n1); // changing the nodes creates a new graph
+		MapGraph g2 = map.getGraph();
+		assertNotSame(g, g2);
+		assertEquals(2, g2.getLastEdge(g2.indexOf(n3)) -
+				g2.getFirstEdge(g2.indexOf(n3)));
+
+		map.translate(1, 1);
+		assertNotSame(g2, map.getGraph());
+		assertEquals(n1.getLocation().getX(),
+				map.getGraph().getX(map.getGraph().indexOf(n1)));
+	}
+
+	public void testUpdatesOfOtherMaps() {
+		MapGraph g = map.getGraph();
+
+		MapNode o1 = new MapNode(new Coord(10, 10));
+		MapNode o2 = new MapNode(new Coord(20, 10));
+		Map<Coord, MapNode> nodes = new HashMap<Coord, MapNode>();
+		nodes.put(o1.getLocation(), o1);
+		nodes.put(o2.getLocation(), o2);
+		SimMap other = new SimMap(nodes);
+		MapGraph og = other.getGraph();
+
+		o1.addNeighbor(o2); // changes only the other map's graph
+		o2.addType(1);
+		assertSame(g, map.getGraph());
+		assertNotSame(og, other.getGraph());
+		MapGraph og2 = other.getGraph();
+		assertEquals(1, og2.getLastEdge(og2.indexOf(o1)) -
+				og2.getFirstEdge(og2.indexOf(o1)));
+	}
+
+	public void testIdReset() {
+		MapGraph g = map.getGraph();
+
+		MapNode.reset(); // as between batch runs
+		MapNode o1 = new MapNode(new Coord(10, 10));
+		MapNode o2 = new MapNode(new Coord(20, 10));
+		assertEquals(0, o1.getId());
+		o1.addNeighbor(o2);
+		o2.addNeighbor(o1);
+		Map<Coord, MapNode> nodes = new HashMap<Coord, MapNode>();
+		nodes.put(o1.getLocation(), o1);
+		nodes.put(o2.getLocation(), o2);
+		MapGraph og = new SimMap(nodes).getGraph();
+
+		/* nodes of different runs can have the same IDs */
+		assertEquals(-1, g.indexOf(o1));
+		assertEquals(-1, og.indexOf(n1));
+		assertSame(o2, og.getNode(og.getTarget(og.getFirstEdge(
+				og.indexOf(o1)))));
+		assertSame(n1, g.getNode(g.indexOf(n1)));
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.MapRoute;
+import movement.map.ShortestPathCache;
+import movement.map.SimMap;
+import core.Coord;
+
+public class MapRouteTest extends TestCase {
+	private MapNode[] nodes;
+	private ShortestPathCache pathFinder;
+	private List<MapNode> stops;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Map<Coord, MapNode> nodeMap = new HashMap<Coord, MapNode>();
+
+		/* a line of 6 nodes with 10 m spacing */
+		nodes = new MapNode[6];
+		for (int i=0; i<nodes.length; i++) {
+			Coord c = new Coord(i * 10, 0);
+			nodes[i] = new MapNode(c);
+			nodeMap.put(c, nodes[i]);
+			if (i > 0) {
+				nodes[i].addNeighbor(nodes[i-1]);
+				nodes[i-1].addNeighbor(nodes[i]);
+			}
+		}
+
+		pathFinder = new ShortestPathCache(new SimMap(nodeMap), null, false,
+				0, 0);
+		stops = new ArrayList<MapNode>();
+		stops.add(nodes[0]);
+		stops.add(nodes[2]);
+		stops.add(nodes[5]);
+	}
+
+	public void testCircularLegs() {
+		MapRoute proto = new MapRoute(MapRoute.CIRCULAR, stops);
+		proto.computeLegs(pathFinder);
+		MapRoute r = proto.replicate();
+
+		MapNode from = r.nextStop();
+		assertNull(r.getLeg(from)); // no previous stop yet
+		for (int i=0; i<6; i++) {
+			MapNode to = r.nextStop();
+			List<MapNode> leg = r.getLeg(from);
+			assertEquals(pathFinder.getShortestPath(from, to), leg);
+			from = to;
+		}
+		assertNull(r.getLeg(nodes[1])); // not starting from the previous stop
+	}
+
+	public void testPingPongLegs() {
+		MapRoute proto = new MapRoute(MapRoute.PINGPONG, stops);
+		proto.computeLegs(pathFinder);
+		MapRoute r = proto.replicate();
+
+		MapNode from = r.nextStop();
+		for (int i=0; i<8; i++) {
+			MapNode to = r.nextStop();
+			List<MapNode> leg = r.getLeg(from);
+			if (leg == null) { // only turning around has no precomputed leg
+				assertSame(from, to);
+			}
+			else {
+				assertEquals(pathFinder.getShortestPath(from, to), leg);
+			}
+			from = to;
+		}
+	}
+
+	public void testNoLegs() {
+		MapRoute r = new MapRoute(MapRoute.CIRCULAR, stops);
+		MapNode from = r.nextStop();
+		r.nextStop();
+		assertNull(r.getLeg(from));
+	}
+}
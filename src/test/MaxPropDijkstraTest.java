@@ -124,6 +124,45 @@ public class MaxPropDijkstraTest extends TestCase {
 	}
 
 
+	public void testCachedCostsAreUpdatedAfterChange() {
+		targets.add(2);
+		targets.add(3);
+		targets.add(4);
+
+		mapping.get(0).updateMeetingProbFor(1);
+		mapping.get(1).updateMeetingProbFor(2);
+		mapping.get(1).updateMeetingProbFor(3);
+		mapping.get(2).updateMeetingProbFor(4);
+
+		assertEquals(0.0, mpd.getCost(0, 1));
+		assertEquals(0.5, mpd.getCost(0, 2));
+		assertEquals(0.5, mpd.getCost(0, 3));
+		assertEquals(0.5, mpd.getCost(0, 4));
+
+		/* changes are not seen before they are reported */
+		mapping.get(1).updateMeetingProbFor(3);
+		assertEquals(0.5, mpd.getCost(0, 2));
+
+		mpd.changed(1);
+		assertEquals(0.75, mpd.getCost(0, 2));
+		assertEquals(0.25, mpd.getCost(0, 3));
+		assertEquals(0.75, mpd.getCost(0, 4));
+		assertEquals(Double.MAX_VALUE, mpd.getCost(3, 0));
+
+		/* a change after the visited part only recalculates the rest */
+		mapping.put(3, new MeetingProbabilitySet(
+				MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0));
+		mapping.get(3).updateMeetingProbFor(4);
+		mpd.changed(3);
+		assertEquals(0.25, mpd.getCost(0, 4));
+		assertEquals(0.75, mpd.getCost(0, 2));
+
+		Map<Integer, Double> result = mpd.getCosts(0, targets);
+		for (Integer t : targets) {
+			assertEquals(result.get(t), mpd.getCost(0, t));
+		}
+	}
+
 	public void testProbabilitySumsToOne() {
 		double total;
 
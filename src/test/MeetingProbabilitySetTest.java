@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Tests for MaxProp's meeting probability set
+ */
+public class MeetingProbabilitySetTest extends TestCase {
+	/* amount of deviation from expected values that is OK */
+	private static final double DELTA = 0.0000001;
+
+	private static double sum(MeetingProbabilitySet mps) {
+		double sum = 0;
+		for (int i=0; i<mps.size(); i++) {
+			sum += mps.getProbFor(mps.getNodeIndex(i));
+		}
+		return sum;
+	}
+
+	public void testUpdate() {
+		MeetingProbabilitySet mps = new MeetingProbabilitySet();
+		mps.updateMeetingProbFor(0);
+		assertEquals(1.0, mps.getProbFor(0));
+		mps.updateMeetingProbFor(1);
+		assertEquals(0.5, mps.getProbFor(0), DELTA);
+		assertEquals(0.5, mps.getProbFor(1), DELTA);
+		mps.updateMeetingProbFor(1);
+		assertEquals(0.25, mps.getProbFor(0), DELTA);
+		assertEquals(0.75, mps.getProbFor(1), DELTA);
+		assertEquals(0.0, mps.getProbFor(2));
+		assertEquals(2, mps.size());
+	}
+
+	public void testEviction() {
+		MeetingProbabilitySet mps = new MeetingProbabilitySet(3, 1);
+		mps.updateMeetingProbFor(0);
+		mps.updateMeetingProbFor(1);
+		mps.updateMeetingProbFor(2);
+
+		/* {0:0.25, 1:0.25, 2:0.5} is full -> the smallest (tie broken by
+		 * the node index) is dropped and the rest normalized */
+		assertEquals(2, mps.size());
+		assertEquals(0.0, mps.getProbFor(0));
+		assertEquals(1.0/3, mps.getProbFor(1), DELTA);
+		assertEquals(2.0/3, mps.getProbFor(2), DELTA);
+
+		/* {1:1/6, 2:1/3, 0:0.5} -> 1 is dropped */
+		mps.updateMeetingProbFor(0);
+		assertEquals(2, mps.size());
+		assertEquals(0.0, mps.getProbFor(1));
+		assertEquals(0.6, mps.getProbFor(0), DELTA);
+		assertEquals(0.4, mps.getProbFor(2), DELTA);
+	}
+
+	public void testSingleEntrySet() {
+		MeetingProbabilitySet mps = new MeetingProbabilitySet(1, 1);
+		mps.updateMeetingProbFor(0);
+		mps.updateMeetingProbFor(1);
+		assertEquals(1, mps.size());
+		assertEquals(1.0, mps.getProbFor(1), DELTA);
+		mps.updateMeetingProbFor(2);
+		assertEquals(1, mps.size());
+		assertEquals(0.0, mps.getProbFor(1));
+		assertEquals(1.0, mps.getProbFor(2), DELTA);
+	}
+
+	/**
+	 * Tests that the values stay correct over enough updates to make the
+	 * scale factor underflow without renormalization
+	 */
+	public void testRenormalization() {
+		checkAgainstReference(MeetingProbabilitySet.INFINITE_SET_SIZE);
+	}
+
+	/**
+	 * Same as {@link #testRenormalization()} but with evictions
+	 */
+	public void testRenormalizationWithEviction() {
+		checkAgainstReference(4);
+	}
+
+	/**
+	 * Updates a set and a straightforward map based reference in the same
+	 * order and checks that they have the same probabilities
+	 */
+	private void checkAgainstReference(int maxSize) {
+		final int nrofNodes = 6;
+		final double alpha = 1;
+		MeetingProbabilitySet mps = new MeetingProbabilitySet(maxSize, alpha);
+		Map<Integer, Double> ref = new HashMap<Integer, Double>();
+
+		for (int i=0; i<3000; i++) {
+			int index = (i * 7 + i / 5) % nrofNodes;
+			mps.updateMeetingProbFor(index);
+
+			if (ref.isEmpty()) {
+				ref.put(index, 1.0);
+				continue;
+			}
+			Double old = ref.get(index);
+			ref.put(index, (old == null ? 0 : old) + alpha);
+			for (Map.Entry<Integer, Double> e : ref.entrySet()) {
+				e.setValue(e.getValue() / (1 + alpha));
+			}
+			if (ref.size() >= maxSize) {
+				Integer smallest = null;
+				for (Map.Entry<Integer, Double> e : ref.entrySet()) {
+					if (smallest == null ||	e.getValue() < ref.get(smallest) ||
+						(e.getValue().equals(ref.get(smallest)) &&
+								e.getKey() < smallest)) {
+						smallest = e.getKey();
+					}
+				}
+				double dropped = ref.remove(smallest);
+				for (Map.Entry<Integer, Double> e : ref.entrySet()) {
+					e.setValue(e.getValue() / (1 - dropped));
+				}
+			}
+
+			assertEquals(ref.size(), mps.size());
+			for (int j=0; j<nrofNodes; j++) {
+				Double p = ref.get(j);
+				assertEquals("Node " + j + " after " + i + " updates",
+						(p == null ? 0 : p), mps.getProbFor(j), DELTA);
+			}
+			assertEquals(1.0, sum(mps), DELTA);
+		}
+	}
+}
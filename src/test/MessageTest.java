@@ -4,6 +4,8 @@
  */
 package test;
 
+import java.util.ArrayList;
+
 import junit.framework.TestCase;
 
 import org.junit.Before;
@@ -11,6 +13,7 @@ import org.junit.Test;
 
 import core.DTNHost;
 import core.Message;
+import core.NetworkInterface;
 import core.SimClock;
 
 public class MessageTest extends TestCase {
@@ -60,5 +63,77 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicatePropertiesAreCopiedOnWrite() {
+		msg.addProperty("foo", "value1");
+		Message copy = msg.replicate();
+		assertEquals("value1", copy.getProperty("foo"));
+
+		copy.updateProperty("foo", "value2");
+		copy.addProperty("bar", "value3");
+		assertEquals("value2", copy.getProperty("foo"));
+		assertEquals("value1", msg.getProperty("foo"));
+		assertNull(msg.getProperty("bar"));
+
+		msg.updateProperty("foo", "value4");
+		assertEquals("value2", copy.getProperty("foo"));
+		assertEquals("value4", msg.replicate().getProperty("foo"));
+	}
+
+	@Test
+	public void testReplicatePath() {
+		DTNHost h1 = new TestDTNHost(new ArrayList<NetworkInterface>(), null, null);
+		DTNHost h2 = new TestDTNHost(new ArrayList<NetworkInterface>(), null, null);
+		Message copy = msg.replicate();
+		copy.addNodeOnPath(h1);
+		msg.addNodeOnPath(h2);
+
+		assertEquals(1, copy.getHopCount());
+		assertEquals(h1, copy.getHops().get(1));
+		assertTrue(copy.hasPassed(h1));
+		assertFalse(copy.hasPassed(h2));
+		assertEquals(h2, msg.getHops().get(1));
+		assertEquals(msg.getId(), copy.getId());
+		assertEquals(msg.getCreationTime(), copy.getCreationTime());
+	}
 
+	@Test
+	public void testTypedProperties() {
+		int slot = Message.registerIntProperty("MessageTest.int");
+		int slot2 = Message.registerIntProperty("MessageTest.int2");
+		int dSlot = Message.registerDoubleProperty("MessageTest.double");
+		assertEquals(slot, Message.registerIntProperty("MessageTest.int"));
+
+		assertEquals(Message.UNSET_INT, msg.getIntProperty(slot));
+		msg.setIntProperty(slot2, 0);
+		assertEquals(Message.UNSET_INT, msg.getIntProperty(slot));
+		assertEquals(0, msg.getIntProperty(slot2));
+		msg.setIntProperty(slot, 5);
+		msg.setDoubleProperty(dSlot, 0.5);
+		Message copy = msg.replicate();
+		copy.setIntProperty(slot, 2);
+
+		assertEquals(5, msg.getIntProperty(slot));
+		assertEquals(2, copy.getIntProperty(slot));
+		assertEquals(0.5, copy.getDoubleProperty(dSlot));
+	}
+
+	@Test
+	public void testUnsetTypedProperties() {
+		int lSlot = Message.registerLongProperty("MessageTest.long");
+		int lSlot2 = Message.registerLongProperty("MessageTest.long2");
+		int dSlot = Message.registerDoubleProperty("MessageTest.double");
+		int dSlot2 = Message.registerDoubleProperty("MessageTest.double2");
+
+		assertEquals(Message.UNSET_LONG, msg.getLongProperty(lSlot));
+		assertEquals(Message.UNSET_DOUBLE, msg.getDoubleProperty(dSlot), 0);
+
+		/* setting a later slot doesn't set the earlier ones */
+		msg.setLongProperty(lSlot2, 0);
+		msg.setDoubleProperty(dSlot2, 0);
+		assertEquals(Message.UNSET_LONG, msg.getLongProperty(lSlot));
+		assertEquals(0, msg.getLongProperty(lSlot2));
+		assertEquals(Message.UNSET_DOUBLE, msg.getDoubleProperty(dSlot), 0);
+		assertEquals(0, msg.getDoubleProperty(dSlot2), 0);
+	}
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.MessageTransferAcceptPolicy;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for the MessageTransferAcceptPolicy
+ */
+public class MessageTransferAcceptPolicyTest extends TestCase {
+	private static final String POLICY_NS = "testPolicy";
+
+	private TestUtils utils;
+	private DTNHost[] hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		core.DTNHost.reset();
+		MessageTransferAcceptPolicy.reset();
+		TestSettings ts = new TestSettings();
+		this.utils = new TestUtils(null, null, ts);
+		this.hosts = new DTNHost[5];
+		for (int i=0; i<hosts.length; i++) {
+			hosts[i] = utils.createHost();
+		}
+	}
+
+	private MessageTransferAcceptPolicy createPolicy(String setting,
+			String value) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MessageTransferAcceptPolicy.MTA_POLICY_NS, POLICY_NS);
+		ts.putSetting(POLICY_NS + "." + setting, value);
+		return new MessageTransferAcceptPolicy(ts);
+	}
+
+	public void testDefaultPolicy() {
+		MessageTransferAcceptPolicy p =
+			new MessageTransferAcceptPolicy(new TestSettings());
+		Message m = new Message(hosts[0], hosts[1], "M", 1);
+
+		assertTrue(p.acceptSending(hosts[0], hosts[2], null, m));
+		assertTrue(p.acceptReceiving(hosts[0], hosts[2], m));
+		assertEquals(1, p.getNrofSendAccepted());
+		assertEquals(1, p.getNrofReceiveAccepted());
+		assertEquals(0, MessageTransferAcceptPolicy.getPolicies().size());
+	}
+
+	public void testToReceivePolicy() {
+		MessageTransferAcceptPolicy p = createPolicy(
+				MessageTransferAcceptPolicy.TO_RPOLICY_S, "2-3,-1");
+
+		for (int to=0; to<hosts.length; to++) {
+			Message m = new Message(hosts[0], hosts[to], "M" + to, 1);
+			/* twice to check the cached results too */
+			for (int i=0; i<2; i++) {
+				/* host 1 is the receiver so it's also accepted */
+				assertEquals("to " + to, to >= 1 && to <= 3,
+						p.acceptReceiving(hosts[0], hosts[1], m));
+				/* "-1" accepts messages to the receiving host */
+				assertTrue(p.acceptReceiving(hosts[0], hosts[to], m));
+			}
+		}
+
+		assertEquals(16, p.getNrofReceiveAccepted());
+		assertEquals(4, p.getNrofReceiveDenied());
+		assertEquals(0, p.getNrofSendAccepted() + p.getNrofSendDenied());
+		assertEquals(POLICY_NS, p.getName());
+		assertSame(p, MessageTransferAcceptPolicy.getPolicies().get(0));
+	}
+
+	public void testHopCountSendPolicy() {
+		MessageTransferAcceptPolicy p = createPolicy(
+				MessageTransferAcceptPolicy.HOPCOUNT_SPOLICY_S, "<1");
+		Message m = new Message(hosts[0], hosts[4], "M", 1);
+
+		assertTrue(p.acceptSending(hosts[0], hosts[1], null, m));
+		m.addNodeOnPath(hosts[1]);
+		assertFalse(p.acceptSending(hosts[1], hosts[2], null, m));
+		/* delivery to the final destination is always accepted */
+		assertTrue(p.acceptSending(hosts[1], hosts[4], null, m));
+
+		assertEquals(2, p.getNrofSendAccepted());
+		assertEquals(1, p.getNrofSendDenied());
+	}
+}
@@ -10,7 +10,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import core.ModuleCommunicationBus;
+import core.ModuleCommunicationDoubleListener;
+import core.ModuleCommunicationKey;
 import core.ModuleCommunicationListener;
+import core.SimError;
 
 public class ModuleCommunicationBusTest extends TestCase {
 
@@ -103,4 +106,48 @@ public class ModuleCommunicationBusTest extends TestCase {
 		assertEquals(-16.7, b.getDouble(key, -1.0));
 	}
 
+	@Test
+	public void testTypedKeys() {
+		final ModuleCommunicationKey key =
+			ModuleCommunicationKey.getKey("typedtst");
+		final double[] notified = {0};
+
+		assertSame(key, ModuleCommunicationKey.getKey("typedtst"));
+		assertEquals(-1.0, b.getDouble(key, -1.0));
+
+		b.addDouble(key, 2.5);
+		ModuleCommunicationDoubleListener dl =
+			new ModuleCommunicationDoubleListener() {
+			public void moduleValueChanged(ModuleCommunicationKey k,
+					double newValue) {
+				assertSame(key, k);
+				notified[0] = newValue;
+			}
+		};
+		b.subscribeDouble(key, dl);
+		b.subscribe("typedtst", mcl);
+
+		assertEquals(3.5, b.updateDouble(key, 1.0));
+		assertEquals(3.5, notified[0]);
+		assertEquals(3.5, notifyValue);
+		assertEquals("typedtst", notifyKey);
+
+		/* String and typed access refer to the same value */
+		assertEquals(3.5, b.getDouble("typedtst", -1.0));
+		b.updateProperty("typedtst", 7.0);
+		assertEquals(7.0, b.getDouble(key, -1.0));
+		assertEquals(7.0, notified[0]);
+
+		b.unsubscribeDouble(key, dl);
+		b.updateDouble(key, 1.0);
+		assertEquals(7.0, notified[0]);
+		assertEquals(8.0, notifyValue);
+
+		try {
+			b.addDouble(key, 1.0);
+			fail("Adding a value twice should fail");
+		} catch (SimError e) {
+			/* expected */
+		}
+	}
 }
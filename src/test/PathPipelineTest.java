@@ -0,0 +1,92 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import movement.PathPipeline;
+import movement.RandomWaypoint;
+
+public class PathPipelineTest extends TestCase {
+	private static final int NROF_PATHS = 20;
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		PathPipeline.reset();
+	}
+
+	private void setThreads(int nrofThreads, int queueSize) {
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				PathPipeline.NROF_THREADS_S, "" + nrofThreads);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				PathPipeline.QUEUE_SIZE_S, "" + queueSize);
+		PathPipeline.reset();
+		MovementModel.reset();
+	}
+
+	/**
+	 * Returns the waypoints, speeds and wait times of the first paths of a
+	 * model with a pipeline
+	 */
+	private List<Double> getPaths(MovementModel model, int id) {
+		List<Double> values = new ArrayList<Double>();
+		PathPipeline pipeline = PathPipeline.create(model, id);
+		assertNotNull(pipeline);
+
+		values.add(model.getInitialLocation().getX());
+		pipeline.start();
+		for (int i=0; i<NROF_PATHS; i++) {
+			Path p = pipeline.getPath();
+			while (p.hasNext()) {
+				p.nextWaypoint();
+				values.add(p.getWaypointX());
+				values.add(p.getWaypointY());
+				values.add(p.getSpeed());
+			}
+			values.add(pipeline.nextPathAvailable());
+		}
+
+		return values;
+	}
+
+	public void testDisabled() {
+		setThreads(0, 4);
+		assertNull(PathPipeline.create(new RandomWaypoint(ts), 0));
+	}
+
+	public void testNotPrecomputable() {
+		setThreads(2, 4);
+		assertNull(PathPipeline.create(new StationaryMovement(null), 0));
+	}
+
+	public void testSamePathsWithAnyThreads() {
+		setThreads(1, 1);
+		MovementModel proto = new RandomWaypoint(ts);
+		List<Double> paths1 = getPaths(proto.replicate(), 1);
+		List<Double> paths2 = getPaths(proto.replicate(), 2);
+
+		setThreads(3, 5);
+		proto = new RandomWaypoint(ts);
+		/* other models using the pipeline don't change the paths */
+		MovementModel other = proto.replicate();
+		PathPipeline otherPipeline = PathPipeline.create(other, 2);
+		other.getInitialLocation();
+		otherPipeline.start();
+
+		assertEquals(paths2, getPaths(proto.replicate(), 2));
+		assertEquals(paths1, getPaths(proto.replicate(), 1));
+		assertFalse(paths1.equals(paths2));
+	}
+}
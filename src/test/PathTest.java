@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.Path;
+import core.Coord;
+
+public class PathTest extends TestCase {
+
+	public void testConstantSpeed() {
+		Path p = new Path(2.5);
+		for (int i=0; i<20; i++) { // more than the initial capacity
+			p.addWaypoint(new Coord(i, i * 2));
+		}
+
+		assertEquals(20, p.getNrofWaypoints());
+		for (int i=0; i<20; i++) {
+			assertTrue(p.hasNext());
+			p.nextWaypoint();
+			assertEquals((double)i, p.getWaypointX());
+			assertEquals(i * 2.0, p.getWaypointY());
+			assertEquals(2.5, p.getSpeed());
+		}
+		assertFalse(p.hasNext());
+	}
+
+	public void testVariableSpeeds() {
+		Path p = new Path();
+		p.addWaypoint(new Coord(1, 1), 1.0);
+		p.addWaypoint(2, 2, 2.0);
+		p.addWaypoint(3, 3, 3.0);
+
+		assertEquals(new Coord(1, 1), p.getNextWaypoint());
+		assertEquals(1.0, p.getSpeed());
+		assertEquals(new Coord(2, 2), p.getNextWaypoint());
+		assertEquals(2.0, p.getSpeed());
+		assertEquals(new Coord(3, 3), p.getNextWaypoint());
+		assertEquals(3.0, p.getSpeed());
+		assertEquals(3, p.getSpeeds().size());
+	}
+
+	public void testCopyAndCoords() {
+		Path p = new Path(1);
+		Coord c = new Coord(1, 2);
+		p.addWaypoint(c);
+		p.addWaypoint(3, 4);
+		c.setLocation(0, 0); // the path has a copy of the values
+
+		Path copy = new Path(p);
+		p.addWaypoint(5, 6);
+		p.nextWaypoint();
+
+		List<Coord> coords = copy.getCoords();
+		assertEquals(2, coords.size());
+		assertEquals(new Coord(1, 2), coords.get(0));
+		assertEquals(new Coord(3, 4), coords.get(1));
+		assertEquals(3, p.getNrofWaypoints());
+		assertEquals(1.0, p.getWaypointX());
+		assertEquals(new Coord(1, 2), copy.getNextWaypoint());
+		assertEquals(1.0, copy.getSpeed());
+	}
+}
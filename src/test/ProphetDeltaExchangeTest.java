@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.MessageRouter;
+import routing.ProphetRouter;
+
+/**
+ * Tests for PRoPHET router's delta exchange of delivery predictabilities
+ */
+public class ProphetDeltaExchangeTest extends AbstractRouterTest {
+
+	private static int SECONDS_IN_TIME_UNIT = 60;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(ProphetRouter.PROPHET_NS + "." +
+				ProphetRouter.SECONDS_IN_UNIT_S , SECONDS_IN_TIME_UNIT+"");
+		ts.putSetting(ProphetRouter.PROPHET_NS + "." +
+				ProphetRouter.DELTA_EXCHANGE_S, "true");
+		setRouterProto(new ProphetRouter(ts));
+		super.setUp();
+	}
+
+	/**
+	 * Tests that a router updates the transitive predictabilities only for
+	 * the entries that the other router has changed since they last met
+	 */
+	public void testDeltaExchange() {
+		ProphetRouter r1 = (ProphetRouter)h1.getRouter();
+		double beta = ProphetRouter.DEFAULT_BETA;
+		double pInit = ProphetRouter.P_INIT;
+
+		h2.connect(h3);
+		disconnect(h3);
+		h2.connect(h1); // h1 gets all the entries of h2
+		disconnect(h1);
+
+		double p13 = pInit * pInit * beta;
+		assertEquals(p13, r1.getPredFor(h3));
+		assertEquals(0.0, r1.getPredFor(h4));
+
+		h2.connect(h4); // only h4's entry of h2's table changes
+		disconnect(h4);
+		h1.connect(h2);
+
+		double p12 = pInit + (1 - pInit) * pInit;
+		assertEquals(p12, r1.getPredFor(h2));
+		assertEquals(p12 * pInit * beta, r1.getPredFor(h4));
+		// a full exchange would have increased P(h1,h3) too
+		assertEquals(p13, r1.getPredFor(h3));
+	}
+}
@@ -21,6 +21,8 @@ public class ProphetRouterTest extends AbstractRouterTest {
 		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
 		ts.putSetting(ProphetRouter.PROPHET_NS + "." +
 				ProphetRouter.SECONDS_IN_UNIT_S , SECONDS_IN_TIME_UNIT+"");
+		ts.putSetting(ProphetRouter.PROPHET_NS + "." +
+				ProphetRouter.DELTA_EXCHANGE_S, "false");
 		setRouterProto(new ProphetRouter(ts));
 		super.setUp();
 	}
@@ -4,6 +4,8 @@
  */
 package test;
 
+import input.ExternalEvent;
+import input.HostUpdateEvent;
 import input.ScheduledUpdatesQueue;
 import junit.framework.TestCase;
 import core.SimClock;
@@ -107,4 +109,31 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
 	}
+
+	public void testHostUpdates() {
+		suq.addUpdate(2.0, 5);
+		suq.addUpdate(1.0, 3);
+		suq.addUpdate(2.0, 1);
+		suq.addUpdate(2.0, 5); // merged to the first request for host 5
+		suq.addUpdate(3.0, 1);
+		suq.addUpdate(3.0); // update of all hosts covers host 1's update
+
+		ExternalEvent ee = suq.nextEvent();
+		assertEquals(1.0, ee.getTime());
+		assertFalse(ee.updatesAllHosts());
+		assertEquals(3, ((HostUpdateEvent)ee).getAddress());
+
+		ee = suq.nextEvent();
+		assertEquals(2.0, ee.getTime());
+		assertEquals(1, ((HostUpdateEvent)ee).getAddress());
+		ee = suq.nextEvent();
+		assertEquals(2.0, ee.getTime());
+		assertEquals(5, ((HostUpdateEvent)ee).getAddress());
+
+		ee = suq.nextEvent();
+		assertEquals(3.0, ee.getTime());
+		assertTrue(ee.updatesAllHosts());
+
+		assertEquals(MAX, suq.nextEventsTime());
+	}
 }
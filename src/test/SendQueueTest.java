@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import routing.util.SendQueue;
+import core.Message;
+
+/**
+ * Tests for the send queue order of messages
+ */
+public class SendQueueTest extends TestCase {
+	private static final int NROF_MSGS = 20;
+	private List<Message> msgs;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		msgs = new ArrayList<Message>();
+		for (int i=0; i<NROF_MSGS; i++) {
+			Message m = new Message(null, null, "M" + i, 100);
+			m.setReceiveTime(10 * i);
+			msgs.add(m);
+		}
+	}
+
+	private SendQueue fill(boolean randomOrder) {
+		SendQueue q = new SendQueue(randomOrder, 42);
+		for (Message m : msgs) {
+			q.add(m);
+		}
+		return q;
+	}
+
+	/**
+	 * Checks that compare() gives the same order as getMessages()
+	 */
+	private void checkCompareOrder(SendQueue q) {
+		List<Message> order = q.getMessages();
+		for (int i=0; i<order.size(); i++) {
+			for (int j=0; j<order.size(); j++) {
+				int c = q.compare(order.get(i), order.get(j));
+				assertEquals("Wrong order of " + order.get(i) + " and " +
+						order.get(j), Integer.signum(i - j), c);
+			}
+		}
+	}
+
+	public void testFifoOrder() {
+		SendQueue q = fill(false);
+		assertEquals(NROF_MSGS, q.size());
+		assertEquals(msgs, q.getMessages());
+
+		/* re-adding moves the message to the end of the queue */
+		q.add(msgs.get(0));
+		assertEquals(NROF_MSGS, q.size());
+		assertEquals(msgs.get(1), q.getMessages().get(0));
+		assertEquals(msgs.get(0), q.getMessages().get(NROF_MSGS - 1));
+
+		/* transfers don't change the FIFO order */
+		q.transferStarted(msgs.get(5));
+		assertEquals(msgs.get(1), q.getMessages().get(0));
+		checkCompareOrder(q);
+	}
+
+	public void testRandomOrder() {
+		SendQueue q = fill(true);
+		List<Message> order = q.getMessages();
+		assertEquals(NROF_MSGS, order.size());
+		assertFalse(msgs.equals(order));
+		assertTrue(order.containsAll(msgs));
+
+		/* same seed -> same order */
+		assertEquals(order, fill(true).getMessages());
+		/* the order is persistent, not shuffled again on every call */
+		assertEquals(order, q.getMessages());
+		checkCompareOrder(q);
+	}
+
+	public void testCursorWrapAround() {
+		SendQueue q = fill(true);
+		List<Message> order = q.getMessages();
+
+		/* the queue continues after the last started transfer and wraps
+		 * around to the start */
+		for (int i=0; i<NROF_MSGS; i++) {
+			q.transferStarted(order.get(i));
+			List<Message> expected = new ArrayList<Message>();
+			expected.addAll(order.subList(i + 1, NROF_MSGS));
+			expected.addAll(order.subList(0, i + 1));
+			assertEquals(expected, q.getMessages());
+			checkCompareOrder(q);
+		}
+	}
+
+	public void testNotQueued() {
+		SendQueue q = fill(false);
+		Message other = new Message(null, null, "X", 100);
+
+		assertEquals(-1, q.compare(msgs.get(0), other));
+		assertEquals(1, q.compare(other, msgs.get(0)));
+		assertEquals(0, q.compare(other, other));
+
+		q.remove(msgs.get(0).getId());
+		assertEquals(1, q.compare(msgs.get(0), msgs.get(1)));
+		q.transferStarted(other); // no effect
+		assertEquals(msgs.subList(1, NROF_MSGS), q.getMessages());
+	}
+
+	public void testRemoveDuringIteration() {
+		SendQueue q = fill(true);
+		List<Message> order = q.getMessages();
+		q.transferStarted(order.get(NROF_MSGS / 2));
+
+		List<Message> remaining = q.getMessages();
+		int i = 0;
+		for (Message m : q.getMessages()) {
+			if (i++ % 2 == 0) {
+				q.remove(m.getId());
+				remaining.remove(m);
+			}
+		}
+		assertEquals(NROF_MSGS / 2, q.size());
+		assertEquals(remaining, q.getMessages());
+		checkCompareOrder(q);
+	}
+
+	/**
+	 * The FIFO queue gives the same order as sorting by the receive time
+	 * when the messages are added in the order they are received
+	 */
+	public void testFifoEqualsReceiveTimeOrder() {
+		final SendQueue q = fill(false);
+
+		List<Message> sorted = new ArrayList<Message>(msgs);
+		Collections.shuffle(sorted, new Random(1));
+		Collections.sort(sorted, new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				double diff = m1.getReceiveTime() - m2.getReceiveTime();
+				if (diff == 0) {
+					return 0;
+				}
+				return (diff < 0 ? -1 : 1);
+			}
+		});
+
+		assertEquals(sorted, q.getMessages());
+
+		List<Message> byQueue = new ArrayList<Message>(msgs);
+		Collections.shuffle(byQueue, new Random(2));
+		Collections.sort(byQueue, new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				return q.compare(m1, m2);
+			}
+		});
+		assertEquals(sorted, byQueue);
+	}
+}
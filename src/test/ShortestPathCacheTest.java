@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.ShortestPathCache;
+import movement.map.SimMap;
+import core.Coord;
+
+public class ShortestPathCacheTest extends TestCase {
+	private SimMap map;
+	private MapNode[] nodes;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Map<Coord, MapNode> nodeMap = new HashMap<Coord, MapNode>();
+
+		/* 5x5 grid with 10 m spacing */
+		nodes = new MapNode[25];
+		for (int i=0; i<nodes.length; i++) {
+			Coord c = new Coord((i % 5) * 10, (i / 5) * 10);
+			nodes[i] = new MapNode(c);
+			nodeMap.put(c, nodes[i]);
+		}
+		for (int i=0; i<nodes.length; i++) {
+			if (i % 5 < 4) {
+				connect(nodes[i], nodes[i+1]);
+			}
+			if (i < 20) {
+				connect(nodes[i], nodes[i+5]);
+			}
+		}
+
+		map = new SimMap(nodeMap);
+	}
+
+	private void connect(MapNode n1, MapNode n2) {
+		n1.addNeighbor(n2);
+		n2.addNeighbor(n1);
+	}
+
+	public void testCaching() {
+		ShortestPathCache c = new ShortestPathCache(map, null, false, 2, 0);
+
+		List<MapNode> p1 = c.getShortestPath(nodes[0], nodes[24]);
+		assertEquals(9, p1.size());
+		assertEquals(nodes[0], p1.get(0));
+		assertEquals(nodes[24], p1.get(8));
+		assertSame(p1, c.getShortestPath(nodes[0], nodes[24]));
+		assertEquals(1, c.getNrofHits());
+		assertEquals(1, c.getNrofMisses());
+
+		/* the reverse path is a different path */
+		c.getShortestPath(nodes[24], nodes[0]);
+		assertEquals(2, c.getNrofMisses());
+
+		/* the cache holds two paths -> the least recently used (24->0) is
+		 * evicted */
+		c.getShortestPath(nodes[0], nodes[24]);
+		c.getShortestPath(nodes[4], nodes[20]);
+		assertSame(p1, c.getShortestPath(nodes[0], nodes[24]));
+		assertEquals(3, c.getNrofMisses());
+		c.getShortestPath(nodes[24], nodes[0]);
+		assertEquals(4, c.getNrofMisses());
+	}
+
+	public void testSharedPerMap() {
+		ShortestPathCache c = map.getShortestPathCache(null, false, 10, 0);
+		assertSame(c, map.getShortestPathCache(null, false, 10, 0));
+		assertNotSame(c, map.getShortestPathCache(new int[] {1}, false,
+				10, 0));
+	}
+
+	public void testLandmarks() {
+		ShortestPathCache plain = new ShortestPathCache(map, null, false,
+				0, 0);
+		ShortestPathCache alt = new ShortestPathCache(map, null, false,
+				0, 4);
+
+		for (int i=0; i<nodes.length; i++) {
+			for (int j=0; j<nodes.length; j++) {
+				List<MapNode> p1 = plain.getShortestPath(nodes[i], nodes[j]);
+				List<MapNode> p2 = alt.getShortestPath(nodes[i], nodes[j]);
+				assertEquals(length(p1), length(p2), 0.0001);
+				assertEquals(nodes[i], p2.get(0));
+				assertEquals(nodes[j], p2.get(p2.size() - 1));
+			}
+		}
+	}
+
+	private double length(List<MapNode> path) {
+		double len = 0;
+		for (int i=1; i<path.size(); i++) {
+			len += path.get(i-1).getLocation().distance(
+					path.get(i).getLocation());
+		}
+		return len;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import routing.MessageRouter;
+import routing.SprayAndWaitRouter;
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Tests for Spray and Wait router in the standard (non-binary) mode
+ */
+public class SprayAndWaitRouterTest extends AbstractRouterTest {
+
+	private static final int NROF_COPIES = 2;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(SprayAndWaitRouter.SPRAYANDWAIT_NS + "." +
+				SprayAndWaitRouter.NROF_COPIES, ""+NROF_COPIES);
+		ts.putSetting(SprayAndWaitRouter.SPRAYANDWAIT_NS + "." +
+				SprayAndWaitRouter.BINARY_MODE, "false");
+		setRouterProto(new SprayAndWaitRouter(ts));
+		super.setUp();
+	}
+
+	/**
+	 * Returns the number of copies a host has left of a message
+	 */
+	private int copies(DTNHost host, String msgId) {
+		int slot = Message.registerIntProperty(
+				SprayAndWaitRouter.MSG_COUNT_PROPERTY);
+		for (Message m : host.getRouter().getMessageCollection()) {
+			if (m.getId().equals(msgId)) {
+				return m.getIntProperty(slot);
+			}
+		}
+		fail(host + " didn't have message " + msgId);
+		return -1;
+	}
+
+	/**
+	 * Tests that a message whose copies were used up by a relay and a direct
+	 * delivery stays in the buffer and doesn't prevent relaying other
+	 * messages
+	 */
+	public void testRelayAfterDirectDelivery() {
+		Message m1 = new Message(h1, h2, msgId1, 1);
+		h1.createNewMessage(m1);
+		checkCreates(1);
+
+		h1.connect(h3);
+		deliverMessage(h1, h3, msgId1, 1, false);
+		assertEquals(1, copies(h3, msgId1));
+		assertEquals(1, copies(h1, msgId1));
+		disconnect(h3);
+
+		h1.connect(h2);
+		deliverMessage(h1, h2, msgId1, 1, false);
+		assertTrue(mc.getLastFirstDelivery());
+		assertEquals(0, copies(h1, msgId1));
+		disconnect(h2);
+
+		Message m2 = new Message(h1, h5, msgId2, 1);
+		h1.createNewMessage(m2);
+		checkCreates(1);
+
+		h1.connect(h4);
+		deliverMessage(h1, h4, msgId2, 1, false);
+		assertEquals(1, copies(h4, msgId2));
+
+		// no copies of msgId1 left to give to h4
+		clock.advance(1);
+		updateAllNodes();
+		assertFalse(mc.next());
+		assertFalse(h4.getRouter().hasMessage(msgId1));
+	}
+}
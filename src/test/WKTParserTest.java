@@ -0,0 +1,141 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+import input.WKTParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import core.Coord;
+
+public class WKTParserTest extends TestCase {
+
+	private WKTParser parser(String data) throws IOException {
+		return WKTParser.open(new StringReader(data));
+	}
+
+	public void testTypesAndContents() throws IOException {
+		WKTParser p = parser("POINT (1 2)\r\n\tLINESTRING (1.5 2.5 9, " +
+				"-3e2 4E-1)\n");
+
+		assertEquals("POINT", p.nextType());
+		p.skipContents();
+		assertEquals("LINESTRING", p.nextType());
+		p.readContents();
+		assertEquals(1, p.getNrofLines());
+		assertEquals(2, p.getNrofCoords());
+		assertEquals(1.5, p.getX(0));
+		assertEquals(2.5, p.getY(0));
+		assertEquals(-300.0, p.getX(1));
+		assertEquals(0.4, p.getY(1));
+		assertNull(p.nextType());
+
+		p = parser("MULTILINESTRING ((1 1, 2 2), (3 3,4 4, 5 5))");
+		assertEquals("MULTILINESTRING", p.nextType());
+		p.readContents();
+		assertEquals(2, p.getNrofLines());
+		assertEquals(0, p.getLineStart(0));
+		assertEquals(2, p.getLineEnd(0));
+		assertEquals(2, p.getLineStart(1));
+		assertEquals(5, p.getLineEnd(1));
+		assertEquals(5.0, p.getY(4));
+		assertNull(p.nextType());
+	}
+
+	public void testNumbersMatchParseDouble() throws IOException {
+		Random rng = new Random(42);
+		List<String> values = new ArrayList<String>();
+		String[] special = {"0", "-0", "0.0", "-0.0", "007.50", "1e22",
+				"1e23", "1.7976931348623157E308", "4.9E-324", "1e-400",
+				"123456789012345678901234567890", "0.30000000000000004",
+				"2552448.388211649", "6673384.4020657055", ".5", "5.", "+1"};
+		for (String s : special) {
+			values.add(s);
+		}
+		for (int i=0; i<1000; i++) {
+			values.add(Double.toString(rng.nextDouble() * 1e7));
+			values.add(Double.toString(-rng.nextDouble()));
+			values.add(String.format("%.3f", rng.nextDouble() * 10000));
+		}
+
+		StringBuilder sb = new StringBuilder("LINESTRING (");
+		for (int i=0; i<values.size(); i++) {
+			sb.append(i > 0 ? ", " : "").append(values.get(i)).append(" 0");
+		}
+		WKTParser p = parser(sb.append(")").toString());
+		p.nextType();
+		p.readContents();
+
+		assertEquals(values.size(), p.getNrofCoords());
+		for (int i=0; i<values.size(); i++) {
+			double expected = Double.parseDouble(values.get(i));
+			assertEquals(values.get(i), Double.doubleToRawLongBits(expected),
+					Double.doubleToRawLongBits(p.getX(i)));
+		}
+	}
+
+	public void testBadValue() throws IOException {
+		WKTParser p = parser("LINESTRING (1.0 x, 2.0 3.0)");
+		p.nextType();
+		try {
+			p.readContents();
+			fail("Bad value should have caused an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testParallelFiles() throws IOException {
+		String[] data = {"LINESTRING (1 1, 2 1, 3 1)",
+				"MULTILINESTRING ((2 1, 2 2), (3 1, 3 2))",
+				"LINESTRING (3 2, 2 2, 1 2)"};
+		List<File> files = new ArrayList<File>();
+		for (String d : data) {
+			File f = File.createTempFile("WKTParserTest", ".wkt");
+			f.deleteOnExit();
+			PrintWriter pw = new PrintWriter(f);
+			pw.println(d);
+			pw.close();
+			files.add(f);
+		}
+
+		WKTMapReader parallel = new WKTMapReader(true);
+		parallel.addPaths(files, 1);
+		WKTMapReader sequential = new WKTMapReader(true);
+		for (int i=0; i<files.size(); i++) {
+			sequential.addPaths(files.get(i), i + 1);
+		}
+
+		List<MapNode> pNodes = new ArrayList<MapNode>(parallel.getNodes());
+		List<MapNode> sNodes = new ArrayList<MapNode>(sequential.getNodes());
+		assertEquals(6, pNodes.size());
+		assertEquals(sNodes.size(), pNodes.size());
+		for (int i=0; i<pNodes.size(); i++) {
+			MapNode pn = pNodes.get(i);
+			MapNode sn = sNodes.get(i);
+			assertEquals(sn.getLocation(), pn.getLocation());
+			assertEquals(sn.toString(), pn.toString()); // includes the types
+			assertEquals(sn.getNeighbors().size(), pn.getNeighbors().size());
+			for (int j=0; j<pn.getNeighbors().size(); j++) {
+				assertEquals(sn.getNeighbors().get(j).getLocation(),
+						pn.getNeighbors().get(j).getLocation());
+			}
+		}
+
+		MapNode n = parallel.getNodesHash().get(new Coord(2, 2));
+		assertTrue(n.isType(2));
+		assertTrue(n.isType(3));
+		assertFalse(n.isType(1));
+	}
+}